@@ -1,51 +1,88 @@
 package se.solrike.sonarlint;
 
 import java.io.File;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 import org.gradle.api.GradleException;
 import org.gradle.api.NamedDomainObjectContainer;
+import org.gradle.api.Project;
 import org.gradle.api.artifacts.result.ResolvedArtifactResult;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.file.FileTree;
+import org.gradle.api.file.FileType;
 import org.gradle.api.file.ProjectLayout;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.logging.Logger;
+import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.plugins.JavaPluginExtension;
+import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.MapProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.provider.Provider;
 import org.gradle.api.provider.ProviderFactory;
 import org.gradle.api.provider.SetProperty;
+import org.gradle.api.tasks.CacheableTask;
 import org.gradle.api.tasks.Classpath;
 import org.gradle.api.tasks.CompileClasspath;
+import org.gradle.api.tasks.IgnoreEmptyDirectories;
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.InputFiles;
 import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Optional;
-import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.OutputFile;
 import org.gradle.api.tasks.PathSensitive;
 import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.SkipWhenEmpty;
 import org.gradle.api.tasks.SourceTask;
 import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.FileChange;
+import org.gradle.work.Incremental;
+import org.gradle.work.InputChanges;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
 import org.sonarsource.sonarlint.core.commons.IssueSeverity;
 
+import se.solrike.sonarlint.impl.AnalysisDaemon;
+import se.solrike.sonarlint.impl.Baseline;
+import se.solrike.sonarlint.impl.BinaryIssueStore;
+import se.solrike.sonarlint.impl.ClasspathSlimmer;
+import se.solrike.sonarlint.impl.EnginePool;
+import se.solrike.sonarlint.impl.GitChangedFiles;
 import se.solrike.sonarlint.impl.IssueEx;
+import se.solrike.sonarlint.impl.IssueSink;
 import se.solrike.sonarlint.impl.ReportAction;
 import se.solrike.sonarlint.impl.SonarlintAction;
+import se.solrike.sonarlint.impl.SonarlintEngineService;
+import se.solrike.sonarlint.impl.SonarlintWorkAction;
+import se.solrike.sonarlint.impl.SourceFileFilter;
+import se.solrike.sonarlint.impl.TaskMetrics;
 
 /**
  * Gradle task to execute sonarlint stand alone code analysis.
+ * <p>
+ * The task is cacheable. The output that is cached is the issues file which only contains paths relative to the
+ * project directory. The reports are not cached since they contain absolute paths, instead they are generated from
+ * the issues file by the finalizer task {@link SonarlintReports} when the output is taken from the cache.
  *
  * @author Lucas Persson
  */
+@CacheableTask
 public abstract class Sonarlint extends SourceTask {
 
   private FileCollection mCompileClasspath;
   private FileCollection mClassFiles;
+  private final FileCollection mStableSources;
   private final SonarlintAction mAction;
 
   /**
@@ -86,6 +123,95 @@ public abstract class Sonarlint extends SourceTask {
   @Optional
   public abstract Property<Integer> getMaxIssues();
 
+  /**
+   * File with the accepted issues, see {@link Baseline}. Only issues not in the baseline are reported and counted
+   * against maxIssues.
+   *
+   * @return the baseline file
+   */
+  @Internal
+  public abstract RegularFileProperty getBaselineFile();
+
+  /**
+   * The baseline file when it is read, i.e. when it exists and isn't written.
+   *
+   * @return the baseline file or no value
+   */
+  @InputFile
+  @Optional
+  @PathSensitive(PathSensitivity.NONE)
+  public Provider<RegularFile> getBaselineInputFile() {
+    return getBaselineFile()
+        .map(file -> !getWriteBaseline().getOrElse(Boolean.FALSE) && file.getAsFile().isFile() ? file : null);
+  }
+
+  /**
+   * The baseline file when it is written, so it is also restored from the build cache.
+   *
+   * @return the baseline file or no value
+   */
+  @OutputFile
+  @Optional
+  public Provider<RegularFile> getBaselineOutputFile() {
+    return getBaselineFile().map(file -> getWriteBaseline().getOrElse(Boolean.FALSE) ? file : null);
+  }
+
+  /**
+   * Whether all issues found shall be written to the baseline file instead of being reported.
+   *
+   * @return true if the baseline shall be written
+   */
+  @Input
+  @Optional
+  public abstract Property<Boolean> getWriteBaseline();
+
+  /**
+   * Git ref, e.g. <code>origin/main</code>. If set only the source files that have changed since the merge base of the
+   * ref and <code>HEAD</code> are analysed, see {@link GitChangedFiles}.
+   *
+   * @return the git ref
+   */
+  @Input
+  @Optional
+  public abstract Property<String> getChangedSince();
+
+  /**
+   * Whether generated, minified and too large source files shall be skipped, see {@link SourceFileFilter}.
+   *
+   * @return true if the files shall be skipped
+   */
+  @Input
+  @Optional
+  public abstract Property<Boolean> getAutoExcludeSources();
+
+  /**
+   * Glob patterns, relative to the project directory, of generated source files that shall be skipped.
+   *
+   * @return the patterns
+   */
+  @Input
+  @Optional
+  public abstract ListProperty<String> getGeneratedSourcePatterns();
+
+  /**
+   * Max size in KB of a source file to be analysed.
+   *
+   * @return the max size
+   */
+  @Input
+  @Optional
+  public abstract Property<Integer> getMaxFileSizeKb();
+
+  /**
+   * Whether the jars on the compile classpath that the Java sources don't use shall be removed from the classpath
+   * given to the Java analyzer, see {@link ClasspathSlimmer}.
+   *
+   * @return true if the classpath shall be slimmed
+   */
+  @Input
+  @Optional
+  public abstract Property<Boolean> getSlimClasspath();
+
   /**
    * The minimum issue severity that are tolerated before breaking the build or setting the failure property. Issue
    * severity is defined at org.sonarsource.sonarlint.core.commons.IssueSeverity.
@@ -120,10 +246,152 @@ public abstract class Sonarlint extends SourceTask {
    *
    * @return the directory
    */
-  @OutputDirectory
-  @Optional
+  // not an output since the reports are generated from the issues file, see SonarlintReports
+  @Internal
   public abstract DirectoryProperty getReportsDir();
 
+  /**
+   * Whether the metrics of the task, see {@link TaskMetrics}, shall be written to
+   * &lt;reportsDir&gt;/&lt;task name&gt;-metrics.json.
+   *
+   * @return true if the metrics shall be written
+   */
+  // not an input since the metrics don't affect the issues
+  @Internal
+  public abstract Property<Boolean> getMetricsEnabled();
+
+  /**
+   * Directory where the metrics of the task are written in the Prometheus text format, to
+   * sonarlint_&lt;task path&gt;.prom, e.g. sonarlint_app_sonarlintMain.prom for :app:sonarlintMain.
+   *
+   * @return the directory
+   */
+  @Internal
+  public abstract DirectoryProperty getMetricsPrometheusDir();
+
+  /**
+   * The file where the issues are stored between executions so only changed files have to be analysed again. Defaults
+   * to build/sonarlint/&lt;task name&gt;/issues.ser
+   *
+   * @return the file
+   */
+  @OutputFile
+  public abstract RegularFileProperty getIssuesFile();
+
+  /**
+   * Compact binary file with the issues that other tasks and tools can memory map to query the issues by file or rule,
+   * see {@link BinaryIssueStore}. Only written if {@link #getIssuesStoreEnabled()}. Defaults to
+   * build/sonarlint/&lt;task name&gt;/issues.bin
+   *
+   * @return the file
+   */
+  @OutputFile
+  public abstract RegularFileProperty getIssuesStoreFile();
+
+  /**
+   * Whether the issues shall also be written to {@link #getIssuesStoreFile()}.
+   *
+   * @return true if the file shall be written
+   */
+  @Input
+  public abstract Property<Boolean> getIssuesStoreEnabled();
+
+  /**
+   * Whether the issues per file shall be cached between builds so unchanged files don't have to be analysed again.
+   *
+   * @return true if the analysis cache shall be used
+   */
+  @Internal
+  public abstract Property<Boolean> getAnalysisCacheEnabled();
+
+  /**
+   * Directory of the local analysis cache.
+   *
+   * @return the directory
+   */
+  @Internal
+  public abstract DirectoryProperty getAnalysisCacheDir();
+
+  /**
+   * Max size in MB of the local analysis cache before the least recently used entries are removed.
+   *
+   * @return the max size
+   */
+  @Internal
+  public abstract Property<Integer> getAnalysisCacheMaxSizeMb();
+
+  /**
+   * URL to a HTTP cache that shall be used as a second level analysis cache, e.g. shared between CI agents.
+   *
+   * @return the URL
+   */
+  @Internal
+  public abstract Property<String> getAnalysisCacheUrl();
+
+  /**
+   * Max number of shards the source files are split into and analysed concurrently, each by its own engine.
+   *
+   * @return the parallelism
+   */
+  @Internal
+  public abstract Property<Integer> getParallelism();
+
+  /**
+   * Whether the issues shall be written to the reports that support it as soon as they are found.
+   *
+   * @return true if the issues shall be streamed
+   */
+  @Internal
+  public abstract Property<Boolean> getStreamIssues();
+
+  /**
+   * Whether the analysis shall run in a separate worker process instead of in the Gradle daemon.
+   *
+   * @return true if the analysis shall run in a worker process
+   */
+  @Internal
+  public abstract Property<Boolean> getProcessIsolation();
+
+  /**
+   * Whether the engines shall be kept warm between builds, see {@link AnalysisDaemon}.
+   *
+   * @return true if the analysis daemon shall be used
+   */
+  @Internal
+  public abstract Property<Boolean> getAnalysisDaemon();
+
+  /**
+   * Minutes an engine in the analysis daemon can be idle before it is stopped.
+   *
+   * @return the idle timeout
+   */
+  @Internal
+  public abstract Property<Integer> getAnalysisDaemonIdleTimeout();
+
+  /**
+   * Percent of the max heap that when exceeded after an analysis stops the idle engines of the analysis daemon.
+   *
+   * @return the max heap usage in percent
+   */
+  @Internal
+  public abstract Property<Integer> getAnalysisDaemonMaxHeapUsage();
+
+  /**
+   * Max heap size of the worker process, e.g. '1g'.
+   *
+   * @return the max heap size
+   */
+  @Internal
+  public abstract Property<String> getWorkerMaxHeapSize();
+
+  /**
+   * JVM arguments for the worker process.
+   *
+   * @return the JVM arguments
+   */
+  @Internal
+  public abstract ListProperty<String> getWorkerJvmArgs();
+
   /**
    * Map of rule parameters for customizing the rules. E.g. regex for parameter names. The key is the rule name. In the
    * inner map the key is the parameter name, e.g. 'Exclude'. Note the parameter names are case sensitive.
@@ -133,6 +401,15 @@ public abstract class Sonarlint extends SourceTask {
   @Input
   public abstract MapProperty<String, Map<String, String>> getRuleParameters();
 
+  /**
+   * The Java version of the source code. Defaults to the sourceCompatibility of the Java plugin.
+   *
+   * @return the Java version
+   */
+  @Input
+  @Optional
+  public abstract Property<String> getJavaSource();
+
   @CompileClasspath
   @Optional
   public FileCollection getCompileClasspath() {
@@ -143,7 +420,9 @@ public abstract class Sonarlint extends SourceTask {
     mCompileClasspath = fileCollection;
   }
 
+  // a change in the class files is a result of a change in the source so it doesn't require a full analysis
   @Classpath
+  @Incremental
   @Optional
   public FileCollection getClassFiles() {
     return mClassFiles;
@@ -153,16 +432,28 @@ public abstract class Sonarlint extends SourceTask {
     mClassFiles = sourceSetOutput;
   }
 
+  @Override
+  @Internal
+  public FileTree getSource() {
+    return super.getSource();
+  }
+
   /**
    * The sources for this task are relatively relocatable even though it produces output that includes absolute paths.
    * This is a compromise made to ensure that results can be reused between different builds. The downside is that
    * up-to-date results, or results loaded from cache can show different absolute paths than would be produced if the
    * task was executed.
+   * <p>
+   * Same as {@link #getSource()} but the same instance is always returned so the changed files can be queried.
+   *
+   * @return the sources
    */
-  @Override
+  @SkipWhenEmpty
+  @IgnoreEmptyDirectories
+  @InputFiles
   @PathSensitive(PathSensitivity.RELATIVE)
-  public FileTree getSource() {
-    return super.getSource();
+  public FileCollection getStableSources() {
+    return mStableSources;
   }
 
   @Inject
@@ -171,37 +462,164 @@ public abstract class Sonarlint extends SourceTask {
   @Inject
   protected abstract ProviderFactory getProjectProvider();
 
+  @Inject
+  protected abstract ObjectFactory getObjectFactory();
+
+  @Inject
+  protected abstract WorkerExecutor getWorkerExecutor();
+
+  /**
+   * The Sonarlint plugins. A change of the plugins will trigger a full analysis.
+   *
+   * @return the plugin jars
+   */
+  @Classpath
+  public abstract SetProperty<File> getSonarlintConfiguration();
+
+  /**
+   * Shared build service holding warm Sonarlint engines. If not set the task will create its own engine.
+   *
+   * @return the engine service
+   */
+  @Internal
+  public abstract Property<SonarlintEngineService> getEngineService();
+
+  /**
+   * Directory of the caches shared by all projects and builds, e.g. the engine work directories. Defaults to
+   * &lt;gradle user home&gt;/caches/sonarlint.
+   *
+   * @return the directory
+   */
   @Internal
-  protected abstract SetProperty<File> getSonarlintConfiguration();
+  public abstract DirectoryProperty getSharedCacheDir();
+
+  /**
+   * The node executable downloaded by the node plugin, if any. Used by the JavaScript and TypeScript analysis.
+   *
+   * @return path of the executable
+   */
+  @Internal
+  public abstract Property<String> getNodeExec();
+
+  /**
+   * Version of the node executable. An input since the JavaScript and TypeScript analysis depends on it.
+   *
+   * @return the version
+   */
+  @Input
+  @Optional
+  public abstract Property<String> getNodeVersion();
 
   @SuppressWarnings("java:S5993")
   public Sonarlint() {
-    mAction = new SonarlintAction(this);
+    mAction = new SonarlintAction();
+    mStableSources = getProjectLayout().files((Callable<FileTree>) this::getSource);
+    getIssuesFile().convention(getProjectLayout().getBuildDirectory().file("sonarlint/" + getName() + "/issues.ser"));
+    getIssuesStoreFile()
+        .convention(getProjectLayout().getBuildDirectory().file("sonarlint/" + getName() + "/issues.bin"));
+    // the changed files depend on the git repository which isn't an input of the task
+    getOutputs().upToDateWhen(t -> !getChangedSince().isPresent());
+    getOutputs().doNotCacheIf("changedSince is set", t -> getChangedSince().isPresent());
+    // Java sourceCompatibility needs to be read lazily so project is actually configured
+    Project project = getProject();
+    getJavaSource().convention(getProjectProvider().provider(() -> {
+      JavaPluginExtension javaExtension = project.getExtensions().findByType(JavaPluginExtension.class);
+      return javaExtension != null ? javaExtension.getSourceCompatibility().toString() : null;
+    }));
     Provider<Set<ResolvedArtifactResult>> artifactProvider = getProject().getConfigurations()
         .named(SonarlintPlugin.PLUGINS_CONFIG_NAME)
         .flatMap(c -> c.getIncoming().getArtifacts().getResolvedArtifacts());
     getSonarlintConfiguration()
         .set(artifactProvider.map(p -> p.stream().map(ResolvedArtifactResult::getFile).collect(Collectors.toSet())));
+    // resolved at configuration time since the project isn't available when the task is executed
+    configureSharedConventions(project, getSharedCacheDir(), getNodeExec(), getNodeVersion());
   }
 
   /**
-   * Execute the Sonarlint analysis on the source code.
+   * Set the conventions of the shared cache directory and the node settings that are read from the project.
+   */
+  static void configureSharedConventions(Project project, DirectoryProperty sharedCacheDir, Property<String> nodeExec,
+      Property<String> nodeVersion) {
+    File cacheDir = SonarlintPlugin.getCacheDir(project);
+    ProviderFactory providers = project.getProviders();
+    sharedCacheDir.convention(project.getLayout().dir(providers.provider(() -> cacheDir)));
+    // the node extension is configured after the task is created
+    Provider<SonarlintAction> nodeSettings = providers.provider(() -> new SonarlintAction(project));
+    nodeExec.convention(nodeSettings.map(a -> a.getNodeExec() != null ? a.getNodeExec().toString() : null));
+    nodeVersion.convention(nodeSettings.map(SonarlintAction::getNodeVersion));
+  }
+
+  /**
+   * Execute the Sonarlint analysis on the source code. All source files are analysed.
    */
-  @TaskAction
   public void run() {
+    run(null);
+  }
+
+  /**
+   * Execute the Sonarlint analysis on the source code. Only the added and modified files are analysed if the rules,
+   * plugins and classpath are the same as the last execution.
+   *
+   * @param inputChanges
+   *          - changes since last execution
+   */
+  @TaskAction
+  public void run(InputChanges inputChanges) {
     Logger logger = getLogger();
 
     logTaskParameters();
 
-    List<IssueEx> issues = mAction.run(this, getSonarlintConfiguration(), getProjectLayout());
+    File issuesFile = getIssuesFile().get().getAsFile();
+    ReportAction reportAction = new ReportAction(getName(), getReports().getAsMap(), getReportsDir(), logger,
+        getProjectLayout(), getProjectProvider());
+    List<IssueEx> issues;
+    if (Boolean.TRUE.equals(getProcessIsolation().getOrElse(Boolean.FALSE))) {
+      // the worker also generates the reports since it has the rule details
+      WorkQueue workQueue = getWorkerExecutor().processIsolation(spec -> spec.forkOptions(options -> {
+        if (getWorkerMaxHeapSize().isPresent()) {
+          options.setMaxHeapSize(getWorkerMaxHeapSize().get());
+        }
+        options.jvmArgs(getWorkerJvmArgs().get());
+      }));
+      workQueue.submit(SonarlintWorkAction.class, params -> configureParameters(params, inputChanges));
+      workQueue.await();
+      issues = mAction.readIssues(issuesFile, getProjectLayout().getProjectDirectory().getAsFile());
+      issues = mAction.applyBaseline(issues, getBaselineFile().getAsFile().getOrNull(), logger);
+    }
+    else {
+      TaskMetrics metrics = new TaskMetrics();
+      metrics.start();
+      SonarlintWorkAction.Params params = getObjectFactory().newInstance(SonarlintWorkAction.Params.class);
+      configureParameters(params, inputChanges);
+      reportAction.setMarkdownCacheDir(params.getMarkdownCacheDir().get().getAsFile());
+      reportAction.setMetrics(metrics);
+      mAction.setMetrics(metrics);
+      boolean isAnalysisDaemon = Boolean.TRUE.equals(getAnalysisDaemon().getOrElse(Boolean.FALSE));
+      EnginePool enginePool = null;
+      if (isAnalysisDaemon) {
+        enginePool = AnalysisDaemon.getPool(params.getWorkDir().get().getAsFile().toPath(),
+            params.getUserHome().get().getAsFile().toPath(),
+            getAnalysisDaemonIdleTimeout().getOrElse(AnalysisDaemon.DEFAULT_IDLE_TIMEOUT_MINUTES));
+      }
+      else if (getEngineService().isPresent()) {
+        enginePool = getEngineService().get().getPool();
+      }
+      try (IssueSink sink = getStreamIssues().getOrElse(Boolean.FALSE) ? reportAction.openStreamingReports() : null) {
+        issues = mAction.run(params, enginePool, sink, logger);
+      }
+      reportAction.report(issues);
+      reportAction.writeStamp(issuesFile);
+      mAction.writeMetrics(params, metrics, logger);
+      if (isAnalysisDaemon) {
+        AnalysisDaemon.checkHeapUsage(logger,
+            getAnalysisDaemonMaxHeapUsage().getOrElse(AnalysisDaemon.DEFAULT_MAX_HEAP_USAGE_PERCENT));
+      }
+    }
 
     String resultMessage = String.format("%d SonarLint issue(s) were found. Max issue(s) allowed: %d.", issues.size(),
         getMaxIssues().getOrElse(0));
     logger.error(resultMessage);
 
-    ReportAction reportAction = new ReportAction(this, logger, getProjectLayout(), getProjectProvider());
-    reportAction.report(issues);
-
     // optionally generate console info
     if (Boolean.TRUE.equals(getShowIssues().getOrElse(Boolean.TRUE)) && logger.isErrorEnabled()) {
       for (IssueEx issue : issues) {
@@ -219,6 +637,106 @@ public abstract class Sonarlint extends SourceTask {
 
   }
 
+  protected void configureParameters(SonarlintWorkAction.Params params, @Nullable InputChanges inputChanges) {
+    ProjectLayout layout = getProjectLayout();
+    Path projectDir = layout.getProjectDirectory().getAsFile().toPath();
+    params.getProjectDir().set(layout.getProjectDirectory());
+    params.getIssuesFile().set(getIssuesFile());
+    if (getIssuesStoreEnabled().getOrElse(Boolean.FALSE)) {
+      params.getIssuesStoreFile().set(getIssuesStoreFile());
+    }
+    boolean isIncremental = inputChanges != null && inputChanges.isIncremental();
+    if (getChangedSince().isPresent()) {
+      Set<File> changedFiles = new GitChangedFiles(projectDir.toFile()).filter(getSource().getFiles(),
+          getChangedSince().get());
+      getLogger().lifecycle("{} source file(s) have changed since {}", changedFiles.size(), getChangedSince().get());
+      params.getSourceFiles().from(changedFiles);
+      // the analysed files are given by git and not by the changes since the last execution
+      isIncremental = false;
+    }
+    else {
+      params.getSourceFiles().from(getSource());
+    }
+    params.getIncremental().set(isIncremental);
+    if (isIncremental) {
+      for (FileChange change : inputChanges.getFileChanges(getStableSources())) {
+        if (change.getFileType() != FileType.DIRECTORY) {
+          params.getChangedFiles().add(projectDir.relativize(change.getFile().toPath()).toString());
+        }
+      }
+    }
+    params.getIncludeRules().set(getIncludeRules());
+    params.getExcludeRules().set(getExcludeRules());
+    params.getRuleParameters().set(getRuleParameters());
+    params.getIsTestSource().set(getIsTestSource());
+    params.getJavaSource().set(getJavaSource());
+    params.getMinSeverity().set(getMinSeverity());
+    if (getCompileClasspath() != null) {
+      params.getCompileClasspath().from(getCompileClasspath());
+    }
+    if (getClassFiles() != null) {
+      params.getClassFiles().from(getClassFiles());
+    }
+    params.getPlugins().from(getSonarlintConfiguration());
+    configureEngineParameters(params, getEngineService(), getSharedCacheDir(), getNodeExec(), getNodeVersion());
+    params.getParallelism().set(getParallelism());
+    params.getStreamIssues().set(getStreamIssues());
+    params.getMaxIssues().set(getMaxIssues());
+    params.getIgnoreFailures().set(getIgnoreFailures());
+    params.getBaselineFile().set(getBaselineFile());
+    params.getWriteBaseline().set(getWriteBaseline());
+    params.getAnalysisDaemon().set(getAnalysisDaemon());
+    params.getAnalysisDaemonIdleTimeout().set(getAnalysisDaemonIdleTimeout());
+    params.getAnalysisDaemonMaxHeapUsage().set(getAnalysisDaemonMaxHeapUsage());
+    params.getAutoExcludeSources().set(getAutoExcludeSources());
+    params.getGeneratedSourcePatterns().set(getGeneratedSourcePatterns());
+    params.getMaxFileSizeKb().set(getMaxFileSizeKb());
+    params.getSlimClasspath().set(getSlimClasspath());
+    params.getAnalysisCacheEnabled().set(getAnalysisCacheEnabled());
+    params.getAnalysisCacheDir().set(getAnalysisCacheDir());
+    params.getAnalysisCacheMaxSizeMb().set(getAnalysisCacheMaxSizeMb());
+    params.getAnalysisCacheUrl().set(getAnalysisCacheUrl());
+    params.getReports().set(ReportAction.getEnabledReports(getName(), getReports().getAsMap(), getReportsDir()));
+    SonarlintReport sarif = getReports().findByName("sarif");
+    if (sarif != null) {
+      params.getSarifMaxResults().set(sarif.getMaxResults());
+      params.getSarifMaxSizeMb().set(sarif.getMaxSizeMb());
+    }
+    params.getTaskPath().set(getPath());
+    if (getMetricsEnabled().getOrElse(Boolean.FALSE)) {
+      params.getMetricsFile().set(getReportsDir().file(getName() + "-metrics.json"));
+    }
+    if (getMetricsPrometheusDir().isPresent()) {
+      // one file per task since the textfile collector reads all .prom files in the directory
+      String fileName = ("sonarlint" + getPath()).replaceAll("[^A-Za-z0-9]+", "_") + ".prom";
+      params.getPrometheusFile().set(getMetricsPrometheusDir().file(fileName));
+    }
+  }
+
+  /**
+   * Set the parameters needed to create an engine, the same as the engine service if there is one, and the shared
+   * cache directories.
+   */
+  static void configureEngineParameters(SonarlintWorkAction.Params params,
+      Property<SonarlintEngineService> engineService, DirectoryProperty sharedCacheDir, Provider<String> nodeExec,
+      Provider<String> nodeVersion) {
+    if (nodeExec.isPresent()) {
+      params.getNodeExec().set(nodeExec);
+      params.getNodeVersion().set(nodeVersion);
+    }
+    if (engineService.isPresent()) {
+      SonarlintEngineService.Params serviceParams = engineService.get().getParameters();
+      params.getWorkDir().set(serviceParams.getWorkDir());
+      params.getUserHome().set(serviceParams.getUserHome());
+    }
+    else {
+      params.getWorkDir().set(sharedCacheDir.dir("work"));
+      params.getUserHome().set(sharedCacheDir.dir("home"));
+    }
+    params.getMarkdownCacheDir().set(sharedCacheDir.dir("markdown"));
+    params.getClasspathCacheDir().set(sharedCacheDir.dir("classpath"));
+  }
+
   private void logTaskParameters() {
     if (getLogger().isDebugEnabled()) {
       getLogger().debug(">>> SonarLint task " + getName());
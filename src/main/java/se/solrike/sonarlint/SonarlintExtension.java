@@ -4,6 +4,8 @@ import java.util.Map;
 
 import org.gradle.api.NamedDomainObjectContainer;
 import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.MapProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.provider.SetProperty;
@@ -43,6 +45,70 @@ public interface SonarlintExtension {
    */
   Property<Integer> getMaxIssues();
 
+  /**
+   * File with accepted issues, e.g. in legacy code, so only new issues are reported and counted against
+   * <code>maxIssues</code>. An issue in the baseline is still matched if lines are added above it. Each task needs its
+   * own file, e.g. <code>file("sonarlint-baseline-${name}.txt")</code> in a <code>tasks.withType(Sonarlint)</code>
+   * block, or the same file can be used if only one task is run. Issues are reported as usual if the file doesn't
+   * exist.
+   *
+   * @return the baseline file
+   */
+  RegularFileProperty getBaselineFile();
+
+  /**
+   * Whether all issues found shall be written to <code>baselineFile</code> instead of being reported, e.g.
+   * <code>writeBaseline = project.hasProperty('sonarlintWriteBaseline')</code>. Defaults to <code>false</code>.
+   *
+   * @return true if the baseline shall be written
+   */
+  Property<Boolean> getWriteBaseline();
+
+  /**
+   * Git ref, e.g. <code>origin/main</code>. If set only the source files that have changed since the merge base of the
+   * ref and <code>HEAD</code> are analysed, including uncommitted and untracked files. The classpath and class files
+   * are still used for the analysis. Only the local git repository is read. E.g.
+   * <code>changedSince = providers.gradleProperty('sonarlintChangedSince')</code>. Defaults to not set.
+   *
+   * @return the git ref
+   */
+  Property<String> getChangedSince();
+
+  /**
+   * Whether source files that aren't worth analysing shall be skipped: generated files, found by
+   * <code>generatedSourcePatterns</code>, by a <code>@Generated</code> annotation or by markers like
+   * <code>DO NOT EDIT</code> in the leading comments of the file, minified JavaScript and CSS files and files larger
+   * than <code>maxFileSizeKb</code>. A summary of the skipped files is logged. Defaults to <code>false</code>.
+   *
+   * @return true if the files shall be skipped
+   */
+  Property<Boolean> getAutoExcludeSources();
+
+  /**
+   * Glob patterns, relative to the project directory, of generated source files. Defaults to
+   * <code>['**&#47;generated/**', '**&#47;generated-sources/**', '**&#47;generated-src/**']</code>.
+   *
+   * @return the patterns
+   */
+  ListProperty<String> getGeneratedSourcePatterns();
+
+  /**
+   * Max size in KB of a source file to be analysed. Defaults to <code>1024</code>.
+   *
+   * @return the max size
+   */
+  Property<Integer> getMaxFileSizeKb();
+
+  /**
+   * Whether the jars on the compile classpath that the Java sources don't use shall be removed from the classpath given
+   * to the Java analyzer. The used packages are found from the imports in the sources and the references in the
+   * compiled classes. Speeds up the analysis of modules with large classpaths. The result is cached per classpath and
+   * used packages. Defaults to <code>false</code>.
+   *
+   * @return true if the classpath shall be slimmed
+   */
+  Property<Boolean> getSlimClasspath();
+
   /**
    * The minimum issue severity that are tolerated before breaking the build or setting the failure property. Issue
    * severity is defined at org.sonarsource.sonarlint.core.commons.IssueSeverity.
@@ -58,6 +124,133 @@ public interface SonarlintExtension {
    */
   DirectoryProperty getReportsDir();
 
+  /**
+   * Whether each Sonarlint task shall write its metrics to &lt;reportsDir&gt;/&lt;task name&gt;-metrics.json: the
+   * wall and CPU time of the plugin loading, engine creation, analysis, rule details lookup and each report, the
+   * number of files and bytes analysed, the issues found per second and the peak heap usage of the process. Defaults
+   * to <code>false</code>.
+   *
+   * @return true if the metrics shall be written
+   */
+  Property<Boolean> getMetricsEnabled();
+
+  /**
+   * Directory where each Sonarlint task writes its metrics in the Prometheus text format, e.g. the directory of the
+   * textfile collector of the node exporter. The file is named sonarlint_&lt;task path&gt;.prom. Defaults to not set.
+   *
+   * @return the directory
+   */
+  DirectoryProperty getMetricsPrometheusDir();
+
+  /**
+   * Whether each Sonarlint task shall also write its issues to a compact binary file, build/sonarlint/&lt;task
+   * name&gt;/issues.bin, that other tasks and tools can memory map to query the issues by file or rule. Defaults to
+   * <code>false</code>.
+   *
+   * @return true if the file shall be written
+   */
+  Property<Boolean> getIssuesStoreEnabled();
+
+  /**
+   * Whether the issues per file shall be cached between builds so unchanged files don't have to be analysed again,
+   * e.g. after <code>clean</code> or when switching branch. Defaults to <code>false</code>.
+   *
+   * @return true if the analysis cache shall be used
+   */
+  Property<Boolean> getAnalysisCacheEnabled();
+
+  /**
+   * Directory of the local analysis cache. Defaults to &lt;gradle user home&gt;/caches/sonarlint/analysis.
+   *
+   * @return the directory
+   */
+  DirectoryProperty getAnalysisCacheDir();
+
+  /**
+   * Max size in MB of the local analysis cache before the least recently used entries are removed. Defaults to
+   * <code>512</code>.
+   *
+   * @return the max size
+   */
+  Property<Integer> getAnalysisCacheMaxSizeMb();
+
+  /**
+   * URL to a HTTP cache that shall be used as a second level analysis cache, e.g. shared between CI agents. Entries are
+   * read with GET and stored with PUT. Defaults to not set.
+   *
+   * @return the URL
+   */
+  Property<String> getAnalysisCacheUrl();
+
+  /**
+   * Max number of shards the source files of a task are split into and analysed concurrently. Each shard is analysed
+   * by its own Sonarlint engine so the memory usage grows with the parallelism. The issues are the same regardless of
+   * the parallelism. Defaults to <code>1</code>.
+   *
+   * @return the parallelism
+   */
+  Property<Integer> getParallelism();
+
+  /**
+   * Whether the issues shall be written to the reports as soon as they are found instead of when the analysis is done.
+   * Supported by the text, XML, SARIF and NDJSON reports, the HTML report is generated when the analysis is done. The
+   * issues in the streamed reports are in the order they were found. If the build will fail on <code>maxIssues</code>
+   * the analysis is stopped as soon as there are too many issues. Defaults to <code>false</code>.
+   *
+   * @return true if the issues shall be streamed
+   */
+  Property<Boolean> getStreamIssues();
+
+  /**
+   * Whether the analysis shall run in a separate worker process instead of in the Gradle daemon. Useful for large
+   * projects where the analysis otherwise competes with the rest of the build for the daemon heap. The number of
+   * concurrent analyses is limited by <code>--max-workers</code>. Defaults to <code>false</code>.
+   *
+   * @return true if the analysis shall run in a worker process
+   */
+  Property<Boolean> getProcessIsolation();
+
+  /**
+   * Whether the Sonarlint engines shall be kept warm between builds as long as the Gradle daemon lives, so the plugins
+   * don't have to be loaded again and the analyzers stay JIT compiled. Idle engines are stopped after
+   * analysisDaemonIdleTimeout minutes or when the heap usage is above analysisDaemonMaxHeapUsage. If processIsolation
+   * is also true the engines are only kept in the worker process which Gradle stops at the end of the build. Defaults
+   * to <code>false</code>.
+   *
+   * @return true if the analysis daemon shall be used
+   */
+  Property<Boolean> getAnalysisDaemon();
+
+  /**
+   * Minutes an engine in the analysis daemon can be idle before it is stopped. Defaults to <code>30</code>.
+   *
+   * @return the idle timeout
+   */
+  Property<Integer> getAnalysisDaemonIdleTimeout();
+
+  /**
+   * Percent of the max heap of the process that when exceeded after an analysis stops the idle engines of the analysis
+   * daemon. Defaults to <code>75</code>.
+   *
+   * @return the max heap usage in percent
+   */
+  Property<Integer> getAnalysisDaemonMaxHeapUsage();
+
+  /**
+   * Max heap size of the worker process, e.g. '1g'. Only used if processIsolation is true.
+   * Defaults to the Gradle default for worker processes.
+   *
+   * @return the max heap size
+   */
+  Property<String> getWorkerMaxHeapSize();
+
+  /**
+   * JVM arguments for the worker process. Only used if processIsolation is true.
+   *
+   * @return the JVM arguments
+   */
+  ListProperty<String> getWorkerJvmArgs();
+
   /**
    * Map of rule parameters for customizing the rules. E.g. regex for parameter names. The key is the rule name. In the
    * inner map the key is the parameter name, e.g. 'Exclude'. Note the parameter names are case sensitive.
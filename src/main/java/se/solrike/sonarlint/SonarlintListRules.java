@@ -21,6 +21,7 @@ import org.sonarsource.sonarlint.core.commons.Language;
 import org.sonarsource.sonarlint.core.commons.Version;
 
 import se.solrike.sonarlint.impl.GradleClientLogOutput;
+import se.solrike.sonarlint.impl.SonarlintEngineService.EngineKey;
 import se.solrike.sonarlint.impl.util.NodePluginUtil;
 
 /**
@@ -51,13 +52,15 @@ public class SonarlintListRules extends DefaultTask {
 
     Configuration pluginConfiguration = getProject().getConfigurations().getByName(SonarlintPlugin.PLUGINS_CONFIG_NAME);
     Path[] plugins = pluginConfiguration.getFiles().stream().map(File::toPath).toArray(Path[]::new);
+    Path workDir = new EngineKey(Set.of(plugins), null, null)
+        .getWorkDir(SonarlintPlugin.getCacheDir(getProject(), "work").toPath());
 
     Builder builder = StandaloneGlobalConfiguration.builder()
         .addEnabledLanguages(Language.values())
         .addPlugins(plugins)
         .setLogOutput(new GradleClientLogOutput(logger))
-        .setWorkDir(getProject().getBuildDir().toPath().resolve("sonarlint"))
-        .setSonarLintUserHome(getProject().getProjectDir().toPath());
+        .setWorkDir(workDir)
+        .setSonarLintUserHome(SonarlintPlugin.getCacheDir(getProject(), "home").toPath());
 
     if (getProject().getExtensions().findByName("node") != null) {
       NodePluginUtil nodeUtil = new NodePluginUtil();
@@ -1,7 +1,10 @@
 package se.solrike.sonarlint;
 
+import java.io.File;
 import java.util.List;
 
+import javax.annotation.Nullable;
+
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.Configuration;
@@ -9,6 +12,8 @@ import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.plugins.JavaBasePlugin;
 import org.gradle.api.plugins.JavaPluginExtension;
 import org.gradle.api.plugins.ReportingBasePlugin;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.provider.ProviderFactory;
 import org.gradle.api.reporting.ReportingExtension;
 import org.gradle.api.tasks.SourceSet;
 import org.gradle.api.tasks.SourceSetContainer;
@@ -18,6 +23,12 @@ import org.gradle.util.GradleVersion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import se.solrike.sonarlint.impl.AnalysisDaemon;
+import se.solrike.sonarlint.impl.ReportAction;
+import se.solrike.sonarlint.impl.SonarlintAction;
+import se.solrike.sonarlint.impl.SonarlintEngineService;
+import se.solrike.sonarlint.impl.SourceFileFilter;
+
 /**
  * @author Lucas Persson
  */
@@ -31,6 +42,8 @@ public class SonarlintPlugin implements Plugin<Project> {
   public static final String EXTENSION_NAME = "sonarlint";
   public static final String TASK_NAME = "sonarlint";
   public static final String REPORTS_SUBDIR = "sonarlint";
+  // shared by all projects and builds, relative to the Gradle user home
+  public static final String CACHE_DIR = "caches/sonarlint";
 
   @Override
   public void apply(Project project) {
@@ -41,9 +54,29 @@ public class SonarlintPlugin implements Plugin<Project> {
     SonarlintExtension extension = createExtension(project, reportsBaseDir);
     createConfiguration(project);
     createPluginConfiguration(project);
+    registerEngineService(project);
     createTasks(project, extension);
   }
 
+  // one service for the whole build so all projects' tasks can share the warm engines
+  private void registerEngineService(Project project) {
+    Provider<SonarlintEngineService> engineService = project.getGradle()
+        .getSharedServices()
+        .registerIfAbsent(SonarlintEngineService.SERVICE_NAME, SonarlintEngineService.class, spec -> {
+          spec.getParameters().getWorkDir().set(getCacheDir(project, "work"));
+          spec.getParameters().getUserHome().set(getCacheDir(project, "home"));
+        });
+    // also tasks created manually in the build script
+    project.getTasks().withType(Sonarlint.class).configureEach(task -> {
+      task.getEngineService().set(engineService);
+      task.usesService(engineService);
+    });
+    project.getTasks().withType(SonarlintReports.class).configureEach(task -> {
+      task.getEngineService().set(engineService);
+      task.usesService(engineService);
+    });
+  }
+
   private void createConfiguration(Project project) {
     project.getConfigurations()
         .create(CONFIG_NAME)
@@ -65,7 +98,23 @@ public class SonarlintPlugin implements Plugin<Project> {
 
     extension.getIgnoreFailures().set(Boolean.FALSE);
     extension.getMaxIssues().set(0);
+    extension.getWriteBaseline().set(Boolean.FALSE);
+    extension.getAutoExcludeSources().set(Boolean.FALSE);
+    extension.getGeneratedSourcePatterns().set(SourceFileFilter.DEFAULT_GENERATED_SOURCE_PATTERNS);
+    extension.getMaxFileSizeKb().set(SourceFileFilter.DEFAULT_MAX_FILE_SIZE_KB);
+    extension.getSlimClasspath().set(Boolean.FALSE);
+    extension.getMetricsEnabled().set(Boolean.FALSE);
+    extension.getIssuesStoreEnabled().set(Boolean.FALSE);
     extension.getShowIssues().set(Boolean.TRUE);
+    extension.getAnalysisCacheEnabled().set(Boolean.FALSE);
+    extension.getAnalysisCacheDir().set(getCacheDir(project, "analysis"));
+    extension.getAnalysisCacheMaxSizeMb().set(SonarlintAction.DEFAULT_ANALYSIS_CACHE_MAX_SIZE_MB);
+    extension.getParallelism().set(1);
+    extension.getStreamIssues().set(false);
+    extension.getProcessIsolation().set(Boolean.FALSE);
+    extension.getAnalysisDaemon().set(Boolean.FALSE);
+    extension.getAnalysisDaemonIdleTimeout().set(AnalysisDaemon.DEFAULT_IDLE_TIMEOUT_MINUTES);
+    extension.getAnalysisDaemonMaxHeapUsage().set(AnalysisDaemon.DEFAULT_MAX_HEAP_USAGE_PERCENT);
 
     DirectoryProperty sonarlintReportsDirectory = project.getObjects()
         .directoryProperty()
@@ -79,8 +128,8 @@ public class SonarlintPlugin implements Plugin<Project> {
     // get all sources for the source set including any language and resources
     task.setSource(sourceSet.getAllSource());
     task.setCompileClasspath(sourceSet.getCompileClasspath());
-    // list of directories, all output directories (compiled classes, processed resources, etc.)
-    task.setClassFiles(sourceSet.getOutput());
+    // list of directories with compiled classes, the processed resources are of no use to the analyzer
+    task.setClassFiles(sourceSet.getOutput().getClassesDirs());
     // if the source set is "test" or "testFixtures" or any with test in the name consider it as test source
     task.getIsTestSource().set(sourceSet.getName().contains(SourceSet.TEST_SOURCE_SET_NAME));
   }
@@ -119,20 +168,99 @@ public class SonarlintPlugin implements Plugin<Project> {
       task.getExcludeRules().set(extension.getExcludeRules());
       task.getIncludeRules().set(extension.getIncludeRules());
       task.getMaxIssues().set(extension.getMaxIssues());
+      task.getBaselineFile().set(extension.getBaselineFile());
+      task.getWriteBaseline().set(extension.getWriteBaseline());
+      task.getChangedSince().set(extension.getChangedSince());
+      task.getAutoExcludeSources().set(extension.getAutoExcludeSources());
+      task.getGeneratedSourcePatterns().set(extension.getGeneratedSourcePatterns());
+      task.getMaxFileSizeKb().set(extension.getMaxFileSizeKb());
+      task.getSlimClasspath().set(extension.getSlimClasspath());
       task.getMinSeverity().set(extension.getMinSeverity());
       task.getIgnoreFailures().set(extension.getIgnoreFailures());
       task.getRuleParameters().set(extension.getRuleParameters());
       task.getShowIssues().set(extension.getShowIssues());
       task.getReportsDir().set(extension.getReportsDir());
+      task.getMetricsEnabled().set(extension.getMetricsEnabled());
+      task.getMetricsPrometheusDir().set(extension.getMetricsPrometheusDir());
+      task.getIssuesStoreEnabled().set(extension.getIssuesStoreEnabled());
+      task.getAnalysisCacheEnabled().set(extension.getAnalysisCacheEnabled());
+      task.getAnalysisCacheDir().set(extension.getAnalysisCacheDir());
+      task.getAnalysisCacheMaxSizeMb().set(extension.getAnalysisCacheMaxSizeMb());
+      task.getAnalysisCacheUrl().set(extension.getAnalysisCacheUrl());
+      task.getParallelism().set(extension.getParallelism());
+      task.getStreamIssues().set(extension.getStreamIssues());
+      task.getProcessIsolation().set(extension.getProcessIsolation());
+      task.getAnalysisDaemon().set(extension.getAnalysisDaemon());
+      task.getAnalysisDaemonIdleTimeout().set(extension.getAnalysisDaemonIdleTimeout());
+      task.getAnalysisDaemonMaxHeapUsage().set(extension.getAnalysisDaemonMaxHeapUsage());
+      task.getWorkerMaxHeapSize().set(extension.getWorkerMaxHeapSize());
+      task.getWorkerJvmArgs().set(extension.getWorkerJvmArgs());
       extension.getReports().whenObjectAdded(report -> task.getReports().add(report));
     });
 
+    // generates the reports when the issues of the sonarlint task are taken from the build cache
+    TaskProvider<SonarlintReports> reportsTaskProvider = project.getTasks()
+        .register(taskName + "Reports", SonarlintReports.class, task -> {
+          Sonarlint sonarlintTask = taskProvider.get();
+          task.setDescription(String.format("Generate the reports for '%s' if not already done", taskName));
+          task.getAnalysisTaskName().set(taskName);
+          task.getIssuesFile().set(sonarlintTask.getIssuesFile());
+          task.getSourceFiles().from(sonarlintTask.getSource());
+          task.getBaselineFile().set(sonarlintTask.getBaselineFile());
+          task.getReportsDir().set(sonarlintTask.getReportsDir());
+          task.getSonarlintConfiguration().set(sonarlintTask.getSonarlintConfiguration());
+          task.getSharedCacheDir().set(sonarlintTask.getSharedCacheDir());
+          task.getNodeExec().set(sonarlintTask.getNodeExec());
+          task.getNodeVersion().set(sonarlintTask.getNodeVersion());
+          // only the values so the task doesn't refer to the Sonarlint task, e.g. in the configuration cache
+          ProviderFactory providers = project.getProviders();
+          task.getEnabledReports()
+              .set(providers.provider(() -> ReportAction.getEnabledReports(taskName,
+                  sonarlintTask.getReports().getAsMap(), sonarlintTask.getReportsDir())));
+          task.getSarifMaxResults().set(providers.provider(() -> getSarifReport(sonarlintTask))
+              .flatMap(SonarlintReport::getMaxResults));
+          task.getSarifMaxSizeMb().set(providers.provider(() -> getSarifReport(sonarlintTask))
+              .flatMap(SonarlintReport::getMaxSizeMb));
+        });
+    taskProvider.configure(task -> task.finalizedBy(reportsTaskProvider));
+
     // let "check" task depend on sonarlint so it gets run automatically
     project.getTasks().named(JavaBasePlugin.CHECK_TASK_NAME).configure(t -> t.dependsOn(taskProvider));
 
     return taskProvider;
   }
 
+  @Nullable
+  private static SonarlintReport getSarifReport(Sonarlint task) {
+    return task.getReports().findByName("sarif");
+  }
+
+  /**
+   * Directory under the Gradle user home shared by all projects and builds.
+   *
+   * @param project
+   *          - any project
+   * @param name
+   *          - name of the directory, e.g. 'plugins'
+   *
+   * @return the directory
+   */
+  static File getCacheDir(Project project, String name) {
+    return new File(getCacheDir(project), name);
+  }
+
+  /**
+   * Directory under the Gradle user home with all caches shared by all projects and builds.
+   *
+   * @param project
+   *          - any project
+   *
+   * @return the directory
+   */
+  static File getCacheDir(Project project) {
+    return new File(project.getGradle().getGradleUserHomeDir(), CACHE_DIR);
+  }
+
   private SourceSetContainer getJavaSourceSetContainer(Project project) {
     return project.getExtensions().getByType(JavaPluginExtension.class).getSourceSets();
   }
@@ -4,6 +4,7 @@ import org.gradle.api.Named;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Optional;
 
 /**
  * The reporting configuration for the {@link Sonarlint} task.
@@ -11,11 +12,16 @@ import org.gradle.api.tasks.Input;
  * One of
  * <ul>
  * <li>html
+ * <li>ndjson, one JSON object per issue and line
  * <li>sarif
  * <li>text
  * <li>xml
  * </ul>
  * <p>
+ * If the file name of a report ends with <code>.gz</code> the report is gzipped. The sarif report can be split into
+ * several files, see {@link #getMaxResults()} and {@link #getMaxSizeMb()}. The first file has the configured name and
+ * the others get a number, e.g. <code>sonarlintMain-2.sarif</code>.
+ * <p>
  * The reporting aspects of a {@link Sonarlint} task can be configured as such:
  *
  * <pre>
@@ -47,4 +53,24 @@ public interface SonarlintReport extends Named {
   @Input
   RegularFileProperty getOutputLocation();
 
+  /**
+   * Max number of results in a SARIF file. If there are more the report is split into several files, each with only
+   * the rules of its own results. Only used by the sarif report.
+   *
+   * @return the max number of results
+   */
+  @Input
+  @Optional
+  Property<Integer> getMaxResults();
+
+  /**
+   * Max size in MB of a SARIF file, before compression. If the report is larger it is split into several files, each
+   * with only the rules of its own results. Only used by the sarif report.
+   *
+   * @return the max size
+   */
+  @Input
+  @Optional
+  Property<Integer> getMaxSizeMb();
+
 }
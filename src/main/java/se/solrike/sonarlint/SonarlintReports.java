@@ -0,0 +1,190 @@
+package se.solrike.sonarlint;
+
+import java.io.File;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.ProjectLayout;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.ProviderFactory;
+import org.gradle.api.provider.SetProperty;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+
+import se.solrike.sonarlint.impl.EnginePool;
+import se.solrike.sonarlint.impl.IssueEx;
+import se.solrike.sonarlint.impl.ReportAction;
+import se.solrike.sonarlint.impl.SonarlintAction;
+import se.solrike.sonarlint.impl.SonarlintEngineService;
+import se.solrike.sonarlint.impl.SonarlintWorkAction;
+
+/**
+ * Finalizer task of {@link Sonarlint} that generates the reports from the issues file when the reports are not
+ * generated from it already. That happens when the output of the Sonarlint task was taken from the build cache, the
+ * project has been moved or the report settings have changed.
+ *
+ * @author Lucas Persson
+ */
+public abstract class SonarlintReports extends DefaultTask {
+
+  private final SonarlintAction mAction;
+
+  /**
+   * Name of the Sonarlint task which issues the reports are generated from.
+   *
+   * @return the task name
+   */
+  @Internal
+  public abstract Property<String> getAnalysisTaskName();
+
+  /**
+   * The issues file written by the Sonarlint task.
+   *
+   * @return the file
+   */
+  @Internal
+  public abstract RegularFileProperty getIssuesFile();
+
+  /**
+   * The source files of the Sonarlint task, their languages select the plugins like in the analysis so the engine of
+   * the analysis can be reused.
+   *
+   * @return the source files
+   */
+  @Internal
+  public abstract ConfigurableFileCollection getSourceFiles();
+
+  /**
+   * The baseline file of the Sonarlint task, the issues in it are not reported.
+   *
+   * @return the file
+   */
+  @Internal
+  public abstract RegularFileProperty getBaselineFile();
+
+  /**
+   * The directory where reports will be default generated.
+   *
+   * @return the directory
+   */
+  @Internal
+  public abstract DirectoryProperty getReportsDir();
+
+  /**
+   * The Sonarlint plugins, needed for the rule descriptions in the reports.
+   *
+   * @return the plugin jars
+   */
+  @Internal
+  public abstract SetProperty<File> getSonarlintConfiguration();
+
+  /**
+   * Shared build service holding warm Sonarlint engines. If not set the task will create its own engine.
+   *
+   * @return the engine service
+   */
+  @Internal
+  public abstract Property<SonarlintEngineService> getEngineService();
+
+  /**
+   * Directory of the caches shared by all projects and builds, see {@link Sonarlint#getSharedCacheDir()}.
+   *
+   * @return the directory
+   */
+  @Internal
+  public abstract DirectoryProperty getSharedCacheDir();
+
+  /**
+   * The node executable, see {@link Sonarlint#getNodeExec()}.
+   *
+   * @return path of the executable
+   */
+  @Internal
+  public abstract Property<String> getNodeExec();
+
+  /**
+   * Version of the node executable.
+   *
+   * @return the version
+   */
+  @Internal
+  public abstract Property<String> getNodeVersion();
+
+  /**
+   * The enabled reports of the Sonarlint task. Key is the report name and value is the report file, see
+   * {@link ReportAction#getEnabledReports(String, java.util.Map, DirectoryProperty)}.
+   *
+   * @return the reports
+   */
+  @Internal
+  public abstract MapProperty<String, File> getEnabledReports();
+
+  /**
+   * Max number of results per SARIF file, see {@link SonarlintReport#getMaxResults()}.
+   *
+   * @return the max number of results
+   */
+  @Internal
+  public abstract Property<Integer> getSarifMaxResults();
+
+  /**
+   * Max size in MB per SARIF file, see {@link SonarlintReport#getMaxSizeMb()}.
+   *
+   * @return the max size
+   */
+  @Internal
+  public abstract Property<Integer> getSarifMaxSizeMb();
+
+  @Inject
+  protected abstract ProjectLayout getProjectLayout();
+
+  @Inject
+  protected abstract ProviderFactory getProjectProvider();
+
+  @Inject
+  protected abstract ObjectFactory getObjectFactory();
+
+  @SuppressWarnings("java:S5993")
+  public SonarlintReports() {
+    mAction = new SonarlintAction();
+    Sonarlint.configureSharedConventions(getProject(), getSharedCacheDir(), getNodeExec(), getNodeVersion());
+    onlyIf(t -> getIssuesFile().get().getAsFile().isFile());
+  }
+
+  @TaskAction
+  public void run() {
+    Logger logger = getLogger();
+    File issuesFile = getIssuesFile().get().getAsFile();
+    ReportAction reportAction = new ReportAction(getEnabledReports().get(),
+        getProjectLayout().getProjectDirectory().getAsFile(), logger);
+    reportAction.setSarifSplit(getSarifMaxResults().getOrNull(), getSarifMaxSizeMb().getOrNull());
+    if (reportAction.isStampValid(issuesFile)) {
+      logger.info("Reports are already generated from {}", issuesFile);
+      return;
+    }
+    SonarlintWorkAction.Params params = getObjectFactory().newInstance(SonarlintWorkAction.Params.class);
+    params.getProjectDir().set(getProjectLayout().getProjectDirectory());
+    params.getIssuesFile().set(getIssuesFile());
+    params.getSourceFiles().from(getSourceFiles());
+    params.getBaselineFile().set(getBaselineFile());
+    params.getPlugins().from(getSonarlintConfiguration());
+    params.getReports().set(getEnabledReports());
+    Sonarlint.configureEngineParameters(params, getEngineService(), getSharedCacheDir(), getNodeExec(),
+        getNodeVersion());
+    reportAction.setMarkdownCacheDir(params.getMarkdownCacheDir().get().getAsFile());
+    EnginePool enginePool = getEngineService().isPresent() ? getEngineService().get().getPool() : null;
+    List<IssueEx> issues = mAction.loadIssues(params, enginePool, logger);
+    logger.lifecycle("{} SonarLint issue(s) were found by {}.", issues.size(), getAnalysisTaskName().get());
+    reportAction.report(issues);
+    reportAction.writeStamp(issuesFile);
+  }
+
+}
@@ -0,0 +1,36 @@
+package se.solrike.sonarlint.impl;
+
+/**
+ * Backend for storing analysis results. The keys are hex strings and the values are opaque.
+ *
+ * @author Lucas Persson
+ */
+public interface AnalysisCache {
+
+  /**
+   * Load an entry.
+   *
+   * @param key
+   *          - the key
+   *
+   * @return the value or null if there is no entry for the key
+   */
+  byte[] load(String key);
+
+  /**
+   * Store an entry. Failures shall not break the build since the entry can always be recreated.
+   *
+   * @param key
+   *          - the key
+   * @param value
+   *          - the value
+   */
+  void store(String key, byte[] value);
+
+  /**
+   * Called when the task is done using the cache.
+   */
+  default void close() {
+  }
+
+}
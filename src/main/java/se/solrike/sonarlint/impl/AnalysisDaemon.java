@@ -0,0 +1,114 @@
+package se.solrike.sonarlint.impl;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+/**
+ * Keeps warm Sonarlint engines in the long-lived process, i.e. the Gradle daemon, between builds. Gradle keeps the
+ * class loader of the plugin as long as the plugin classpath is the same. So the engines, the loaded plugins, the node
+ * bridge and the JIT compiled code survive between builds. When used in a worker process the engines are only kept
+ * for the build since Gradle stops the worker processes at the end of the build.
+ * <p>
+ * The engines are stopped when they have been idle longer than the idle timeout, or when the heap usage of the
+ * process is above the max heap usage after an analysis. A change of the plugins or of the node runtime gives a new
+ * engine and the engine for the old configuration is stopped when it has been idle long enough. A new version of this
+ * Gradle plugin gives a new class loader and hence new engines. The thread that stops the idle engines ends when there
+ * are no engines left and is started again by the next analysis.
+ *
+ * @author Lucas Persson
+ */
+public final class AnalysisDaemon {
+
+  public static final int DEFAULT_MAX_HEAP_USAGE_PERCENT = 75;
+  public static final int DEFAULT_IDLE_TIMEOUT_MINUTES = 30;
+
+  private static final Logger sLogger = Logging.getLogger(AnalysisDaemon.class);
+  // work dir and user home : pool
+  private static final Map<List<Path>, EnginePool> sPools = new HashMap<>();
+  private static ScheduledExecutorService sIdleChecker;
+  private static long sIdleTimeoutMillis = TimeUnit.MINUTES.toMillis(DEFAULT_IDLE_TIMEOUT_MINUTES);
+
+  private AnalysisDaemon() {
+  }
+
+  /**
+   * Get the pool of warm engines for the work directory and user home.
+   *
+   * @param workDir
+   *          - work directory for the engines
+   * @param userHome
+   *          - Sonarlint user home for the engines
+   * @param idleTimeoutMinutes
+   *          - engines idle longer than this are stopped
+   *
+   * @return the pool
+   */
+  public static synchronized EnginePool getPool(Path workDir, Path userHome, int idleTimeoutMinutes) {
+    sIdleTimeoutMillis = TimeUnit.MINUTES.toMillis(idleTimeoutMinutes);
+    startIdleChecker();
+    return sPools.computeIfAbsent(List.of(workDir, userHome), k -> new EnginePool(workDir, userHome, sLogger));
+  }
+
+  /**
+   * Stop all idle engines if the heap usage is above the max heap usage. Shall be called when an analysis is done.
+   *
+   * @param logger
+   *          - the logger
+   * @param maxHeapUsagePercent
+   *          - percent of the max heap
+   */
+  public static void checkHeapUsage(Logger logger, int maxHeapUsagePercent) {
+    synchronized (AnalysisDaemon.class) {
+      // the checker might have stopped while the engines were borrowed
+      startIdleChecker();
+    }
+    Runtime runtime = Runtime.getRuntime();
+    long used = runtime.totalMemory() - runtime.freeMemory();
+    if (used * 100 > runtime.maxMemory() * maxHeapUsagePercent) {
+      int stopped = 0;
+      synchronized (AnalysisDaemon.class) {
+        for (EnginePool pool : sPools.values()) {
+          stopped += pool.stopIdleEngines(0);
+        }
+      }
+      logger.info("Heap usage {} MB of {} MB, stopped {} idle sonarlint engine(s)", used >> 20,
+          runtime.maxMemory() >> 20, stopped);
+    }
+  }
+
+  private static void startIdleChecker() {
+    if (sIdleChecker == null) {
+      sIdleChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sonarlint-idle-engines");
+        thread.setDaemon(true);
+        return thread;
+      });
+      sIdleChecker.scheduleWithFixedDelay(AnalysisDaemon::stopIdleEngines, 1, 1, TimeUnit.MINUTES);
+    }
+  }
+
+  private static synchronized void stopIdleEngines() {
+    int remaining = 0;
+    for (EnginePool pool : sPools.values()) {
+      int stopped = pool.stopIdleEngines(sIdleTimeoutMillis);
+      if (stopped > 0) {
+        sLogger.info("Stopped {} idle sonarlint engine(s)", stopped);
+      }
+      remaining += pool.size();
+    }
+    if (remaining == 0) {
+      // nothing to stop so the thread doesn't have to live as long as the Gradle daemon
+      sIdleChecker.shutdown();
+      sIdleChecker = null;
+    }
+  }
+
+}
@@ -0,0 +1,270 @@
+package se.solrike.sonarlint.impl;
+
+import static se.solrike.sonarlint.impl.util.ChecksumUtil.checksum;
+import static se.solrike.sonarlint.impl.util.ChecksumUtil.getFileChecksum;
+import static se.solrike.sonarlint.impl.util.ChecksumUtil.hashFile;
+import static se.solrike.sonarlint.impl.util.ChecksumUtil.newDigest;
+import static se.solrike.sonarlint.impl.util.ChecksumUtil.toHex;
+import static se.solrike.sonarlint.impl.util.ChecksumUtil.update;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import org.gradle.api.logging.Logger;
+import org.sonarsource.sonarlint.core.client.api.common.analysis.Issue;
+
+/**
+ * Cache of the issues found per file. The key is the hash of the file content and path together with a fingerprint
+ * of everything else that affects the result, i.e. the rules, the rule parameters, the plugins, the content of the Java
+ * libraries, the Java version and the node version. The task's own compiled classes are not part of the fingerprint
+ * since they change with every edit of the sources. Only the files that are not in the cache needs to be analysed.
+ * <p>
+ * The global issues, which don't belong to a file, are stored under the fingerprint by each analysis and are restored
+ * when all files are in the cache. If they aren't cached all files are analysed again.
+ *
+ * @author Lucas Persson
+ */
+public class AnalysisResultCache {
+
+  // bump if the format of the entries changes
+  private static final String VERSION = "3";
+
+  private final List<AnalysisCache> mBackends;
+  private final Path mBaseDir;
+  private final String mFingerprint;
+  private final Logger mLogger;
+  // relative path : key, for the files that have to be analysed
+  private final Map<String, String> mMissedKeys = new HashMap<>();
+  private boolean mAnalysed;
+  private int mHits;
+
+  /**
+   * @param backends
+   *          - the backends to use, the first is looked up first. A hit in a later backend is also stored in the
+   *          earlier ones.
+   * @param baseDir
+   *          - the project directory
+   * @param fingerprint
+   *          - fingerprint of the analysis settings, see {@link #fingerprint}
+   * @param logger
+   *          - the task logger
+   */
+  public AnalysisResultCache(List<AnalysisCache> backends, Path baseDir, String fingerprint, Logger logger) {
+    mBackends = backends;
+    mBaseDir = baseDir;
+    mFingerprint = fingerprint;
+    mLogger = logger;
+  }
+
+  public static String fingerprint(Set<String> includeRules, Set<String> excludeRules,
+      Map<String, Map<String, String>> ruleParameters, Collection<Path> plugins, Collection<File> classpath,
+      String javaSource, String nodeVersion, boolean isTestSource) {
+    MessageDigest digest = newDigest();
+    update(digest, VERSION);
+    update(digest, new TreeSet<>(includeRules).toString());
+    update(digest, new TreeSet<>(excludeRules).toString());
+    Map<String, Map<String, String>> sortedParameters = new TreeMap<>();
+    ruleParameters.forEach((rule, params) -> sortedParameters.put(rule, new TreeMap<>(params)));
+    update(digest, sortedParameters.toString());
+    Set<String> pluginChecksums = new TreeSet<>();
+    plugins.forEach(plugin -> pluginChecksums.add(getFileChecksum(plugin.toFile())));
+    update(digest, pluginChecksums.toString());
+    // the order of the classpath matters
+    for (File file : classpath) {
+      updateClasspathEntry(digest, file);
+    }
+    update(digest, String.valueOf(javaSource));
+    update(digest, String.valueOf(nodeVersion));
+    update(digest, String.valueOf(isTestSource));
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Add the cached issues for the files to the issue store.
+   *
+   * @param files
+   *          - the files to analyse
+   * @param issueStore
+   *          - where to add the cached issues
+   *
+   * @return the files that were not in the cache and hence have to be analysed
+   */
+  public Set<File> loadCachedResults(Set<File> files, IssueStore issueStore) {
+    Set<File> missedFiles = new LinkedHashSet<>();
+    Map<String, String> hitKeys = new HashMap<>();
+    List<IssueRecord> cachedIssues = new ArrayList<>();
+    for (File file : files) {
+      String relativePath = mBaseDir.relativize(file.toPath()).toString();
+      String key = getKey(file, relativePath);
+      List<IssueRecord> issues = key != null ? load(key) : null;
+      if (issues != null) {
+        cachedIssues.addAll(issues);
+        hitKeys.put(relativePath, key);
+      }
+      else {
+        missedFiles.add(file);
+        if (key != null) {
+          mMissedKeys.put(relativePath, key);
+        }
+      }
+    }
+    if (missedFiles.isEmpty() && !files.isEmpty()) {
+      List<IssueRecord> globalIssues = load(getGlobalKey());
+      if (globalIssues != null) {
+        cachedIssues.addAll(globalIssues);
+      }
+      else {
+        mLogger.info("Sonarlint analysis cache: the global issues aren't cached, all files are analysed");
+        missedFiles.addAll(files);
+        mMissedKeys.putAll(hitKeys);
+        hitKeys.clear();
+        cachedIssues.clear();
+      }
+    }
+    issueStore.addAll(cachedIssues);
+    mHits += hitKeys.size();
+    mAnalysed = !missedFiles.isEmpty();
+    mLogger.info("Sonarlint analysis cache: {} hit(s), {} miss(es)", mHits, missedFiles.size());
+    return missedFiles;
+  }
+
+  /**
+   * Store the issues for all the files that weren't found in the cache. Files without issues are stored too. The
+   * global issues replace the cached ones if any file was analysed.
+   *
+   * @param issues
+   *          - the issues found by the analysis
+   */
+  public void storeResults(Collection<? extends Issue> issues) {
+    Map<String, ArrayList<IssueRecord>> issuesPerFile = new HashMap<>();
+    mMissedKeys.keySet().forEach(path -> issuesPerFile.put(path, new ArrayList<>()));
+    ArrayList<IssueRecord> globalIssues = new ArrayList<>();
+    for (Issue issue : issues) {
+      if (issue.getInputFile() == null) {
+        globalIssues.add(issue instanceof IssueRecord ? (IssueRecord) issue : new IssueRecord(issue));
+      }
+      else {
+        ArrayList<IssueRecord> fileIssues = issuesPerFile.get(issue.getInputFile().relativePath());
+        if (fileIssues != null) {
+          fileIssues.add(issue instanceof IssueRecord ? (IssueRecord) issue : new IssueRecord(issue));
+        }
+      }
+    }
+    issuesPerFile.forEach((path, fileIssues) -> {
+      byte[] value = serialize(fileIssues);
+      mBackends.forEach(backend -> backend.store(mMissedKeys.get(path), value));
+    });
+    if (mAnalysed) {
+      byte[] value = serialize(globalIssues);
+      mBackends.forEach(backend -> backend.store(getGlobalKey(), value));
+    }
+    mMissedKeys.clear();
+    mAnalysed = false;
+  }
+
+  public void close() {
+    mBackends.forEach(AnalysisCache::close);
+  }
+
+  public int getHits() {
+    return mHits;
+  }
+
+  protected List<IssueRecord> load(String key) {
+    for (int i = 0; i < mBackends.size(); i++) {
+      byte[] value = mBackends.get(i).load(key);
+      List<IssueRecord> issues = value != null ? deserialize(value) : null;
+      if (issues != null) {
+        // populate the faster backends
+        for (int j = 0; j < i; j++) {
+          mBackends.get(j).store(key, value);
+        }
+        return issues;
+      }
+    }
+    return null;
+  }
+
+  protected String getGlobalKey() {
+    return checksum(mFingerprint, "global issues");
+  }
+
+  protected String getKey(File file, String relativePath) {
+    MessageDigest digest = newDigest();
+    update(digest, mFingerprint);
+    update(digest, relativePath);
+    try {
+      update(digest, hashFile(file));
+    }
+    catch (IOException e) {
+      mLogger.debug("Could not hash {}", file, e);
+      return null;
+    }
+    return toHex(digest.digest());
+  }
+
+  @SuppressWarnings("unchecked")
+  protected List<IssueRecord> deserialize(byte[] value) {
+    // the entry might come from a shared HTTP cache so only the classes of the records are allowed
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(value))) {
+      in.setObjectInputFilter(IssueRecord.getSerialFilter());
+      return (List<IssueRecord>) in.readObject();
+    }
+    catch (IOException | ClassNotFoundException | ClassCastException e) {
+      // an InvalidClassException if the filter rejected the entry
+      mLogger.debug("Invalid Sonarlint analysis cache entry", e);
+      return null;
+    }
+  }
+
+  protected byte[] serialize(ArrayList<IssueRecord> issues) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(issues);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  // checksum of a jar or the relative path and checksum of each file in a directory of classes. No absolute paths so
+  // the entries can be shared between workspaces.
+  private static void updateClasspathEntry(MessageDigest digest, File file) {
+    if (file.isFile()) {
+      update(digest, getFileChecksum(file));
+    }
+    else if (file.isDirectory()) {
+      Path dir = file.toPath();
+      try (Stream<Path> paths = Files.walk(dir)) {
+        paths.filter(Files::isRegularFile).sorted().forEach(path -> {
+          File classFile = path.toFile();
+          update(digest, dir.relativize(path).toString().replace(File.separatorChar, '/') + ":"
+              + getFileChecksum(classFile));
+        });
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,271 @@
+package se.solrike.sonarlint.impl;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+
+import org.sonarsource.sonarlint.core.analysis.api.ClientInputFile;
+import org.sonarsource.sonarlint.core.client.api.common.analysis.Issue;
+
+import se.solrike.sonarlint.impl.util.ChecksumUtil;
+
+/**
+ * Issues that are accepted, e.g. in legacy code, so only new issues are reported and counted against
+ * <code>maxIssues</code>. An issue is identified by a fingerprint of the rule key, the path of the file and the content
+ * of the line the issue starts on with the whitespace removed. So the issue is still matched if lines are added or
+ * removed above it or the code is re-indented. If the same fingerprint is in the baseline twice then two such issues
+ * are accepted. The line is hashed by the {@link LineHasher} when the issue is found so matching doesn't read the
+ * source files.
+ * <p>
+ * The baseline is a text file with one issue per line, sorted so it can be reviewed and diffed in version control:
+ *
+ * <pre>
+ * # Sonarlint baseline 1
+ * &lt;rule key&gt; &lt;path&gt; &lt;line hash&gt; &lt;message&gt;
+ * </pre>
+ *
+ * The columns are separated by tab. The message is just for reading and is not part of the fingerprint.
+ *
+ * @author Lucas Persson
+ */
+public class Baseline {
+
+  private static final String HEADER = "# Sonarlint baseline 1";
+  private static final char SEPARATOR = '\t';
+
+  // fingerprint : number of issues with the fingerprint
+  private final Map<String, Integer> mFingerprints;
+
+  protected Baseline(Map<String, Integer> fingerprints) {
+    mFingerprints = fingerprints;
+  }
+
+  /**
+   * Read a baseline written by {@link #write(File, Collection)}.
+   *
+   * @param file
+   *          - the baseline file
+   *
+   * @return the baseline
+   *
+   * @throws IllegalArgumentException
+   *           if the file isn't a baseline
+   */
+  public static Baseline read(File file) {
+    Map<String, Integer> fingerprints = new HashMap<>();
+    try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      if (!HEADER.equals(reader.readLine())) {
+        throw new IllegalArgumentException(file + " is not a Sonarlint baseline");
+      }
+      String line;
+      while ((line = reader.readLine()) != null) {
+        // the fingerprint is all columns but the message
+        int end = nthIndexOf(line, SEPARATOR, 3);
+        if (end > 0) {
+          fingerprints.merge(line.substring(0, end), 1, Integer::sum);
+        }
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return new Baseline(fingerprints);
+  }
+
+  /**
+   * Write the issues as a new baseline.
+   *
+   * @param file
+   *          - the baseline file
+   * @param issues
+   *          - the issues
+   */
+  public static void write(File file, Collection<IssueEx> issues) {
+    List<String> lines = new ArrayList<>(issues.size());
+    for (IssueEx issue : issues) {
+      lines.add(getFingerprint(issue) + SEPARATOR + clean(issue.getMessage()));
+    }
+    lines.sort(null);
+    try {
+      Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+      try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+        writer.write(HEADER);
+        writer.write('\n');
+        for (String line : lines) {
+          writer.write(line);
+          writer.write('\n');
+        }
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * @return number of issues in the baseline
+   */
+  public int size() {
+    return mFingerprints.values().stream().mapToInt(Integer::intValue).sum();
+  }
+
+  /**
+   * Create a matcher that tells which issues are new. Each issue in the baseline can only match one issue.
+   *
+   * @return the matcher
+   */
+  public Matcher matcher() {
+    return new Matcher();
+  }
+
+  /**
+   * The issues not in the baseline.
+   *
+   * @param issues
+   *          - the issues
+   *
+   * @return the new issues, in the same order
+   */
+  public List<IssueEx> getNewIssues(List<IssueEx> issues) {
+    Matcher matcher = matcher();
+    List<IssueEx> newIssues = new ArrayList<>();
+    for (IssueEx issue : issues) {
+      if (matcher.isNew(issue)) {
+        newIssues.add(issue);
+      }
+    }
+    return newIssues;
+  }
+
+  /**
+   * Matches issues against the baseline.
+   */
+  public class Matcher {
+    private final Map<String, Integer> mRemaining = new HashMap<>(mFingerprints);
+
+    /**
+     * @param issue
+     *          - the issue
+     *
+     * @return true if the issue isn't in the baseline or all issues in the baseline with the same fingerprint have
+     *         already been matched
+     */
+    public synchronized boolean isNew(IssueEx issue) {
+      String fingerprint = getFingerprint(issue);
+      Integer count = mRemaining.get(fingerprint);
+      if (count == null) {
+        return true;
+      }
+      if (count == 1) {
+        mRemaining.remove(fingerprint);
+      }
+      else {
+        mRemaining.put(fingerprint, count - 1);
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Hashes the line an issue starts on when the issue is found, from the content the engine has read, so the source
+   * files don't have to be read again when the issues are matched against the baseline. The lines of the last few files
+   * are kept since the issues of a file are mostly found together. Not thread safe.
+   */
+  public static class LineHasher {
+    private static final int MAX_FILES = 8;
+    // uri : lines, in access order
+    private final Map<URI, List<String>> mLines = new LinkedHashMap<>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<URI, List<String>> eldest) {
+        return size() > MAX_FILES;
+      }
+    };
+
+    /**
+     * @param issue
+     *          - the issue found by the engine
+     *
+     * @return hash of the line the issue starts on or null if the issue has no file or line
+     */
+    @Nullable
+    public String getLineHash(Issue issue) {
+      ClientInputFile inputFile = issue.getInputFile();
+      Integer startLine = issue.getStartLine();
+      if (inputFile == null || startLine == null) {
+        return null;
+      }
+      List<String> lines = mLines.computeIfAbsent(inputFile.uri(), uri -> readLines(inputFile));
+      int index = startLine - 1;
+      return hashLine(index >= 0 && index < lines.size() ? lines.get(index) : "");
+    }
+
+    protected List<String> readLines(ClientInputFile inputFile) {
+      try {
+        return inputFile.contents().lines().collect(Collectors.toList());
+      }
+      catch (IOException e) {
+        // e.g. the file has been removed
+        return List.of();
+      }
+    }
+  }
+
+  // hash of the line so the baseline doesn't contain the code
+  protected static String hashLine(String line) {
+    return ChecksumUtil.checksum(normalize(line)).substring(0, 16);
+  }
+
+  protected static String getFingerprint(IssueEx issue) {
+    String path = issue.getInputFileRelativePath();
+    String lineHash = issue.getLineHash();
+    if (lineHash == null) {
+      lineHash = hashLine("");
+    }
+    return issue.getRuleKey() + SEPARATOR + (path != null ? clean(path) : "") + SEPARATOR + lineHash;
+  }
+
+  // the line with all whitespace removed
+  protected static String normalize(String line) {
+    StringBuilder normalized = new StringBuilder(line.length());
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (!Character.isWhitespace(c)) {
+        normalized.append(c);
+      }
+    }
+    return normalized.toString();
+  }
+
+  // so a value can't break the columns
+  private static String clean(String value) {
+    return value == null ? "" : value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+  }
+
+  private static int nthIndexOf(String value, char c, int n) {
+    int index = -1;
+    for (int i = 0; i < n; i++) {
+      index = value.indexOf(c, index + 1);
+      if (index < 0) {
+        return -1;
+      }
+    }
+    return index;
+  }
+
+}
@@ -0,0 +1,408 @@
+package se.solrike.sonarlint.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.Nullable;
+
+import org.sonarsource.sonarlint.core.commons.IssueSeverity;
+import org.sonarsource.sonarlint.core.commons.RuleType;
+import org.sonarsource.sonarlint.core.commons.TextRange;
+
+/**
+ * Compact binary file with the issues of a task that is memory mapped when read, so other tasks and tools can query the
+ * issues by file or rule without parsing a report. The rule keys, paths, messages, severities and types are stored once
+ * in a dictionary and each issue is a row of fixed width int columns, so any issue can be read directly by its index.
+ * The dictionary is sorted on the UTF-8 bytes so a string is found by binary search, and for each rule and path the
+ * indexes of its issues are stored next to each other so they are found without reading the columns.
+ * <p>
+ * The layout, all ints are big endian:
+ *
+ * <pre>
+ * magic, version, number of issues (n), number of strings (s), number of issues with a path (p)
+ * string offsets     int[s + 1], offsets into the string data
+ * rule key           int[n], index of the string
+ * path               int[n], index of the string or -1 for global issues
+ * message            int[n]
+ * severity           int[n]
+ * type               int[n]
+ * start line         int[n], 0 if the issue has no text range
+ * start line offset  int[n]
+ * end line           int[n]
+ * end line offset    int[n]
+ * rule index         int[s + 1], offsets into the issues per rule, by index of the string
+ * issues per rule    int[n], indexes of the issues sorted on rule and issue
+ * path index         int[s + 1], offsets into the issues per path, by index of the string
+ * issues per path    int[p], indexes of the issues sorted on path and issue
+ * string data        UTF-8, sorted
+ * </pre>
+ *
+ * The issues are in the order of the {@link IssueStore} so the issues of a file are next to each other.
+ *
+ * @author Lucas Persson
+ */
+public class BinaryIssueStore implements AutoCloseable {
+
+  private static final int MAGIC = 0x534c4953; // SLIS
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = 5 * Integer.BYTES;
+  private static final int COLUMNS = 9;
+  private static final int RULE_KEY = 0;
+  private static final int PATH = 1;
+  private static final int MESSAGE = 2;
+  private static final int SEVERITY = 3;
+  private static final int TYPE = 4;
+  private static final int START_LINE = 5;
+  private static final int START_LINE_OFFSET = 6;
+  private static final int END_LINE = 7;
+  private static final int END_LINE_OFFSET = 8;
+
+  private final ByteBuffer mBuffer;
+  private final int mSize;
+  private final int mStringCount;
+  private final int mColumnsStart;
+  private final int mRuleIndexStart;
+  private final int mPathIndexStart;
+  private final int mStringsStart;
+  // decoded strings, decoded when first used
+  private final String[] mStrings;
+
+  protected BinaryIssueStore(ByteBuffer buffer) {
+    mBuffer = buffer;
+    if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+      throw new IllegalArgumentException("Not a Sonarlint issue store or written by another version");
+    }
+    mSize = buffer.getInt(8);
+    mStringCount = buffer.getInt(12);
+    int pathCount = buffer.getInt(16);
+    mColumnsStart = HEADER_SIZE + (mStringCount + 1) * Integer.BYTES;
+    mRuleIndexStart = mColumnsStart + COLUMNS * mSize * Integer.BYTES;
+    mPathIndexStart = mRuleIndexStart + (mStringCount + 1 + mSize) * Integer.BYTES;
+    mStringsStart = mPathIndexStart + (mStringCount + 1 + pathCount) * Integer.BYTES;
+    mStrings = new String[mStringCount];
+  }
+
+  /**
+   * Write the issues to a file.
+   *
+   * @param file
+   *          - the file
+   * @param issues
+   *          - the issues
+   */
+  public static void write(File file, Collection<IssueRecord> issues) {
+    // string : index
+    Map<String, Integer> dictionary = new LinkedHashMap<>();
+    int[][] columns = new int[COLUMNS][issues.size()];
+    int row = 0;
+    for (IssueRecord issue : issues) {
+      columns[RULE_KEY][row] = index(dictionary, issue.getRuleKey());
+      columns[PATH][row] = index(dictionary, issue.getRelativePath());
+      columns[MESSAGE][row] = index(dictionary, issue.getMessage());
+      columns[SEVERITY][row] = index(dictionary, String.valueOf(issue.getSeverity()));
+      columns[TYPE][row] = index(dictionary, String.valueOf(issue.getType()));
+      TextRange textRange = issue.getTextRange();
+      if (textRange != null) {
+        columns[START_LINE][row] = textRange.getStartLine();
+        columns[START_LINE_OFFSET][row] = textRange.getStartLineOffset();
+        columns[END_LINE][row] = textRange.getEndLine();
+        columns[END_LINE_OFFSET][row] = textRange.getEndLineOffset();
+      }
+      row++;
+    }
+    // sort the strings so they can be found by binary search and renumber the string columns
+    List<byte[]> strings = new ArrayList<>(dictionary.size());
+    dictionary.keySet().forEach(string -> strings.add(string.getBytes(StandardCharsets.UTF_8)));
+    Integer[] order = new Integer[strings.size()];
+    Arrays.setAll(order, i -> i);
+    Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(strings.get(a), strings.get(b)));
+    int[] sortedIndex = new int[order.length];
+    List<byte[]> sortedStrings = new ArrayList<>(strings.size());
+    for (int i = 0; i < order.length; i++) {
+      sortedIndex[order[i]] = i;
+      sortedStrings.add(strings.get(order[i]));
+    }
+    for (int column = RULE_KEY; column <= TYPE; column++) {
+      for (int i = 0; i < row; i++) {
+        if (columns[column][i] >= 0) {
+          columns[column][i] = sortedIndex[columns[column][i]];
+        }
+      }
+    }
+    int[][] ruleIndex = createIndex(columns[RULE_KEY], sortedStrings.size());
+    int[][] pathIndex = createIndex(columns[PATH], sortedStrings.size());
+
+    try {
+      Files.createDirectories(file.getParentFile().toPath());
+      try (DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(Files.newOutputStream(file.toPath()), 64 * 1024))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(issues.size());
+        out.writeInt(sortedStrings.size());
+        out.writeInt(pathIndex[1].length);
+        int offset = 0;
+        for (byte[] string : sortedStrings) {
+          out.writeInt(offset);
+          offset += string.length;
+        }
+        out.writeInt(offset);
+        for (int[] column : columns) {
+          writeInts(out, column);
+        }
+        for (int[][] index : List.of(ruleIndex, pathIndex)) {
+          writeInts(out, index[0]);
+          writeInts(out, index[1]);
+        }
+        for (byte[] string : sortedStrings) {
+          out.write(string);
+        }
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Memory map a file written by {@link #write(File, Collection)}.
+   *
+   * @param file
+   *          - the file
+   *
+   * @return the store
+   *
+   * @throws IOException
+   *           if the file can't be read
+   * @throws IllegalArgumentException
+   *           if the file isn't an issue store of this version
+   */
+  public static BinaryIssueStore open(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      // the mapping is valid after the channel is closed
+      return new BinaryIssueStore(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * @return number of issues
+   */
+  public int size() {
+    return mSize;
+  }
+
+  public String getRuleKey(int issue) {
+    return getString(get(RULE_KEY, issue));
+  }
+
+  /**
+   * @param issue
+   *          - index of the issue
+   *
+   * @return path of the file relative to the project directory or null if the issue is global
+   */
+  @Nullable
+  public String getRelativePath(int issue) {
+    return getString(get(PATH, issue));
+  }
+
+  public String getMessage(int issue) {
+    return getString(get(MESSAGE, issue));
+  }
+
+  public IssueSeverity getSeverity(int issue) {
+    return IssueSeverity.valueOf(getString(get(SEVERITY, issue)));
+  }
+
+  public RuleType getType(int issue) {
+    return RuleType.valueOf(getString(get(TYPE, issue)));
+  }
+
+  /**
+   * @param issue
+   *          - index of the issue
+   *
+   * @return the text range or null if the issue is on the file level
+   */
+  @Nullable
+  public TextRange getTextRange(int issue) {
+    int startLine = get(START_LINE, issue);
+    if (startLine == 0) {
+      return null;
+    }
+    return new TextRange(startLine, get(START_LINE_OFFSET, issue), get(END_LINE, issue), get(END_LINE_OFFSET, issue));
+  }
+
+  /**
+   * Find the issues of a file.
+   *
+   * @param relativePath
+   *          - path of the file relative to the project directory
+   *
+   * @return indexes of the issues
+   */
+  public int[] findByFile(String relativePath) {
+    return find(mPathIndexStart, relativePath);
+  }
+
+  /**
+   * Find the issues of a rule.
+   *
+   * @param ruleKey
+   *          - the rule key
+   *
+   * @return indexes of the issues
+   */
+  public int[] findByRule(String ruleKey) {
+    return find(mRuleIndexStart, ruleKey);
+  }
+
+  /**
+   * @return rule key : number of issues, sorted on the rule key
+   */
+  public Map<String, Integer> getIssueCountPerRule() {
+    Map<String, Integer> countPerRule = new TreeMap<>();
+    for (int i = 0; i < mStringCount; i++) {
+      int count = getIndexOffset(mRuleIndexStart, i + 1) - getIndexOffset(mRuleIndexStart, i);
+      if (count > 0) {
+        countPerRule.put(getString(i), count);
+      }
+    }
+    return countPerRule;
+  }
+
+  @Override
+  public void close() {
+    // the mapping is released when the buffer is garbage collected
+  }
+
+  // the issues of the string from the index that starts at the position
+  protected int[] find(int indexStart, String value) {
+    int index = indexOf(value);
+    if (index < 0) {
+      return new int[0];
+    }
+    int start = getIndexOffset(indexStart, index);
+    int[] found = new int[getIndexOffset(indexStart, index + 1) - start];
+    int issuesStart = indexStart + (mStringCount + 1) * Integer.BYTES;
+    for (int i = 0; i < found.length; i++) {
+      found[i] = mBuffer.getInt(issuesStart + (start + i) * Integer.BYTES);
+    }
+    return found;
+  }
+
+  // binary search of the sorted strings, comparing the bytes so no strings need to be decoded
+  protected int indexOf(String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    int low = 0;
+    int high = mStringCount - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int compare = compare(mid, bytes);
+      if (compare < 0) {
+        low = mid + 1;
+      }
+      else if (compare > 0) {
+        high = mid - 1;
+      }
+      else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  // compares the string with the index to the bytes, unsigned like Arrays.compareUnsigned
+  private int compare(int index, byte[] bytes) {
+    int start = mBuffer.getInt(HEADER_SIZE + index * Integer.BYTES);
+    int length = mBuffer.getInt(HEADER_SIZE + (index + 1) * Integer.BYTES) - start;
+    for (int i = 0; i < Math.min(length, bytes.length); i++) {
+      int compare = Byte.compareUnsigned(mBuffer.get(mStringsStart + start + i), bytes[i]);
+      if (compare != 0) {
+        return compare;
+      }
+    }
+    return Integer.compare(length, bytes.length);
+  }
+
+  private int getIndexOffset(int indexStart, int index) {
+    return mBuffer.getInt(indexStart + index * Integer.BYTES);
+  }
+
+  private int get(int column, int issue) {
+    if (issue < 0 || issue >= mSize) {
+      throw new IndexOutOfBoundsException("Issue " + issue + " of " + mSize);
+    }
+    return mBuffer.getInt(mColumnsStart + (column * mSize + issue) * Integer.BYTES);
+  }
+
+  private String getString(int index) {
+    if (index < 0) {
+      return null;
+    }
+    String string = mStrings[index];
+    if (string == null) {
+      int start = mBuffer.getInt(HEADER_SIZE + index * Integer.BYTES);
+      int end = mBuffer.getInt(HEADER_SIZE + (index + 1) * Integer.BYTES);
+      byte[] bytes = new byte[end - start];
+      ByteBuffer buffer = mBuffer.duplicate();
+      buffer.position(mStringsStart + start);
+      buffer.get(bytes);
+      string = new String(bytes, StandardCharsets.UTF_8);
+      mStrings[index] = string;
+    }
+    return string;
+  }
+
+  // offsets by string index and the issues sorted on the string, by counting the issues of each string
+  private static int[][] createIndex(int[] column, int stringCount) {
+    int[] offsets = new int[stringCount + 1];
+    int count = 0;
+    for (int value : column) {
+      if (value >= 0) {
+        offsets[value + 1]++;
+        count++;
+      }
+    }
+    for (int i = 0; i < stringCount; i++) {
+      offsets[i + 1] += offsets[i];
+    }
+    int[] issues = new int[count];
+    int[] next = Arrays.copyOf(offsets, stringCount);
+    for (int issue = 0; issue < column.length; issue++) {
+      if (column[issue] >= 0) {
+        issues[next[column[issue]]++] = issue;
+      }
+    }
+    return new int[][] { offsets, issues };
+  }
+
+  private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+    for (int value : values) {
+      out.writeInt(value);
+    }
+  }
+
+  private static int index(Map<String, Integer> dictionary, @Nullable String string) {
+    if (string == null) {
+      return -1;
+    }
+    return dictionary.computeIfAbsent(string, s -> dictionary.size());
+  }
+
+}
@@ -0,0 +1,418 @@
+package se.solrike.sonarlint.impl;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.annotation.Nullable;
+
+import org.gradle.api.logging.Logger;
+
+import se.solrike.sonarlint.impl.util.ChecksumUtil;
+
+/**
+ * Removes the jars from the classpath of the Java analyzer that the sources don't use, since the analyzer spends much
+ * of its time indexing the jars. The packages used by the sources are taken from the imports of the Java sources and
+ * from the class references in the compiled classes. A jar is kept if it has a class in a used package. Since the
+ * analyzer needs the whole type hierarchy the packages of the super classes and interfaces of the classes in a kept jar
+ * are also used, until no more jars are kept.
+ * <p>
+ * The packages of each jar are kept in memory and the result is cached on disk by a fingerprint of the classpath and
+ * the used packages.
+ *
+ * @author Lucas Persson
+ */
+public class ClasspathSlimmer {
+
+  private static final int MAGIC = 0xCAFEBABE;
+  private static final Pattern IMPORT = Pattern.compile("^\\s*import\\s+(?:static\\s+)?([\\w.]+)(?:\\.\\*)?\\s*;");
+  private static final Pattern TYPE_DECLARATION = Pattern
+      .compile("^\\s*(?:public\\s+|final\\s+|abstract\\s+)*(?:class|interface|enum|record|@interface)\\s");
+  // a class in a descriptor or signature, e.g. Ljava/util/List;
+  private static final Pattern DESCRIPTOR_CLASS = Pattern.compile("L([\\w/$]+)[;<]");
+  // the indexes are kept between builds in the daemon, so only the most recently used ones are kept
+  private static final int MAX_JAR_INDEXES = 2_000;
+  // jar file, size and last modified : index, in access order
+  private static final Map<String, JarIndex> sJarIndexes = new LinkedHashMap<>(16, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, JarIndex> eldest) {
+      return size() > MAX_JAR_INDEXES;
+    }
+  };
+
+  @Nullable
+  private final File mCacheDir;
+  private final Logger mLogger;
+
+  /**
+   * @param cacheDir
+   *          - directory where the results are cached or null to not cache them
+   * @param logger
+   *          - the logger
+   */
+  public ClasspathSlimmer(@Nullable File cacheDir, Logger logger) {
+    mCacheDir = cacheDir;
+    mLogger = logger;
+  }
+
+  /**
+   * Remove the jars that aren't used. Directories and other files on the classpath are always kept.
+   *
+   * @param classpath
+   *          - the compile classpath
+   * @param classDirs
+   *          - the directories with the compiled classes of the sources
+   * @param sourceFiles
+   *          - the source files
+   *
+   * @return the classpath without the unused jars, in the same order
+   */
+  public List<File> slim(Collection<File> classpath, Collection<File> classDirs, Collection<File> sourceFiles) {
+    Set<String> usedPackages = getUsedPackages(classDirs, sourceFiles);
+    List<String> fingerprint = new ArrayList<>();
+    for (File file : classpath) {
+      fingerprint.add(file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified());
+    }
+    fingerprint.addAll(usedPackages);
+    String key = ChecksumUtil.checksum(fingerprint.toArray(String[]::new));
+
+    List<File> slimmed = readCache(key);
+    if (slimmed == null) {
+      slimmed = slim(classpath, usedPackages);
+      writeCache(key, slimmed);
+    }
+    else {
+      mLogger.info("The slimmed classpath was taken from the cache");
+    }
+    mLogger.info("{} of {} classpath entries are used by the sources", slimmed.size(), classpath.size());
+    return slimmed;
+  }
+
+  protected List<File> slim(Collection<File> classpath, Set<String> usedPackages) {
+    Map<File, JarIndex> jars = new LinkedHashMap<>();
+    for (File file : classpath) {
+      if (isJar(file)) {
+        jars.put(file, getJarIndex(file));
+      }
+    }
+    Set<String> packages = new HashSet<>(usedPackages);
+    Set<File> usedJars = new HashSet<>();
+    boolean isChanged = true;
+    while (isChanged) {
+      isChanged = false;
+      for (Map.Entry<File, JarIndex> jar : jars.entrySet()) {
+        if (!usedJars.contains(jar.getKey()) && jar.getValue().hasAnyPackage(packages)) {
+          usedJars.add(jar.getKey());
+          packages.addAll(jar.getValue().getSupertypePackages());
+          isChanged = true;
+        }
+      }
+    }
+    return classpath.stream().filter(f -> !isJar(f) || usedJars.contains(f)).collect(Collectors.toList());
+  }
+
+  /**
+   * The packages used by the sources, with '/' as separator.
+   */
+  protected Set<String> getUsedPackages(Collection<File> classDirs, Collection<File> sourceFiles) {
+    Set<String> packages = new TreeSet<>();
+    for (File sourceFile : sourceFiles) {
+      if (sourceFile.getName().endsWith(".java")) {
+        addImportedPackages(sourceFile, packages);
+      }
+    }
+    for (File classDir : classDirs) {
+      if (!classDir.isDirectory()) {
+        continue;
+      }
+      try (Stream<Path> files = Files.walk(classDir.toPath())) {
+        for (Path classFile : (Iterable<Path>) files.filter(p -> p.toString().endsWith(".class"))::iterator) {
+          try (InputStream in = Files.newInputStream(classFile)) {
+            readClass(in, packages, null);
+          }
+        }
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return packages;
+  }
+
+  // the imports are before the first type declaration
+  protected static void addImportedPackages(File sourceFile, Set<String> packages) {
+    try (BufferedReader reader = Files.newBufferedReader(sourceFile.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null && !TYPE_DECLARATION.matcher(line).find()) {
+        Matcher matcher = IMPORT.matcher(line);
+        if (matcher.find()) {
+          packages.add(getImportedPackage(matcher.group(1)));
+        }
+      }
+    }
+    catch (IOException e) {
+      // e.g. not UTF-8, the references in the compiled classes are used
+    }
+  }
+
+  // the package is the names before the first name that starts with upper case, e.g. a.b for a.b.C.D
+  protected static String getImportedPackage(String name) {
+    StringBuilder packageName = new StringBuilder();
+    for (String part : name.split("\\.")) {
+      if (!part.isEmpty() && Character.isUpperCase(part.charAt(0))) {
+        break;
+      }
+      if (packageName.length() > 0) {
+        packageName.append('/');
+      }
+      packageName.append(part);
+    }
+    return packageName.toString();
+  }
+
+  /**
+   * Read the packages of the classes referenced by a class file.
+   *
+   * @param in
+   *          - the class file
+   * @param packages
+   *          - where the referenced packages are added
+   * @param supertypePackages
+   *          - where the packages of the super class and interfaces are added or null
+   */
+  protected static void readClass(InputStream in, Set<String> packages, @Nullable Set<String> supertypePackages)
+      throws IOException {
+    DataInputStream data = new DataInputStream(in);
+    if (data.readInt() != MAGIC) {
+      return;
+    }
+    data.readUnsignedShort(); // minor
+    data.readUnsignedShort(); // major
+    int count = data.readUnsignedShort();
+    String[] utf8 = new String[count];
+    int[] classNames = new int[count];
+    for (int i = 1; i < count; i++) {
+      int tag = data.readUnsignedByte();
+      switch (tag) {
+        case 1: // Utf8
+          utf8[i] = data.readUTF();
+          break;
+        case 7: // Class
+          classNames[i] = data.readUnsignedShort();
+          break;
+        case 8: // String
+        case 16: // MethodType
+        case 19: // Module
+        case 20: // Package
+          data.readUnsignedShort();
+          break;
+        case 15: // MethodHandle
+          data.readUnsignedByte();
+          data.readUnsignedShort();
+          break;
+        case 3: // Integer
+        case 4: // Float
+        case 9: // Fieldref
+        case 10: // Methodref
+        case 11: // InterfaceMethodref
+        case 12: // NameAndType
+        case 17: // Dynamic
+        case 18: // InvokeDynamic
+          data.readInt();
+          break;
+        case 5: // Long
+        case 6: // Double
+          data.readLong();
+          i++;
+          break;
+        default:
+          throw new IOException("Unknown constant pool tag " + tag);
+      }
+    }
+    for (int i = 1; i < count; i++) {
+      if (classNames[i] > 0) {
+        addPackage(utf8[classNames[i]], packages);
+      }
+      else if (utf8[i] != null && utf8[i].indexOf('L') >= 0) {
+        // descriptors and signatures, e.g. the type of a field
+        Matcher matcher = DESCRIPTOR_CLASS.matcher(utf8[i]);
+        while (matcher.find()) {
+          addPackage(matcher.group(1), packages);
+        }
+      }
+    }
+    if (supertypePackages != null) {
+      data.readUnsignedShort(); // access flags
+      data.readUnsignedShort(); // this class
+      int superClass = data.readUnsignedShort();
+      if (superClass > 0) {
+        addPackage(utf8[classNames[superClass]], supertypePackages);
+      }
+      int interfaces = data.readUnsignedShort();
+      for (int i = 0; i < interfaces; i++) {
+        addPackage(utf8[classNames[data.readUnsignedShort()]], supertypePackages);
+      }
+    }
+  }
+
+  private static void addPackage(@Nullable String className, Set<String> packages) {
+    if (className == null) {
+      return;
+    }
+    // arrays, e.g. [Ljava/lang/String;
+    String name = className.startsWith("[") ? className.replaceAll("^\\[+L?|;$", "") : className;
+    int slash = name.lastIndexOf('/');
+    packages.add(slash > 0 ? name.substring(0, slash) : "");
+  }
+
+  protected static JarIndex getJarIndex(File jar) {
+    String key = jar.getAbsolutePath() + ":" + jar.length() + ":" + jar.lastModified();
+    synchronized (sJarIndexes) {
+      JarIndex jarIndex = sJarIndexes.get(key);
+      if (jarIndex != null) {
+        return jarIndex;
+      }
+    }
+    // the jar is read without holding the lock so other tasks aren't blocked
+    JarIndex jarIndex = new JarIndex(jar);
+    synchronized (sJarIndexes) {
+      sJarIndexes.put(key, jarIndex);
+    }
+    return jarIndex;
+  }
+
+  private static boolean isJar(File file) {
+    return file.isFile() && file.getName().endsWith(".jar");
+  }
+
+  @Nullable
+  private List<File> readCache(String key) {
+    if (mCacheDir == null) {
+      return null;
+    }
+    Path file = mCacheDir.toPath().resolve(key + ".txt");
+    try {
+      if (Files.isRegularFile(file)) {
+        return Files.readAllLines(file, StandardCharsets.UTF_8)
+            .stream()
+            .filter(line -> !line.isEmpty())
+            .map(File::new)
+            .collect(Collectors.toList());
+      }
+    }
+    catch (IOException e) {
+      mLogger.info("Could not read the slimmed classpath from {}", file);
+    }
+    return null;
+  }
+
+  private void writeCache(String key, List<File> classpath) {
+    if (mCacheDir == null) {
+      return;
+    }
+    try {
+      Files.createDirectories(mCacheDir.toPath());
+      Path file = mCacheDir.toPath().resolve(key + ".txt");
+      Path tmpFile = Files.createTempFile(mCacheDir.toPath(), key, ".tmp");
+      Files.write(tmpFile, classpath.stream().map(File::getAbsolutePath).collect(Collectors.toList()),
+          StandardCharsets.UTF_8);
+      Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (IOException e) {
+      mLogger.info("Could not cache the slimmed classpath in {}", mCacheDir);
+    }
+  }
+
+  /**
+   * The packages of the classes in a jar. The packages of the super types are only read if the jar is used.
+   */
+  protected static class JarIndex {
+    private final File mJar;
+    private final Set<String> mPackages = new HashSet<>();
+    private Set<String> mSupertypePackages;
+
+    protected JarIndex(File jar) {
+      mJar = jar;
+      try (ZipFile zipFile = new ZipFile(jar)) {
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+          String name = getClassName(entries.nextElement());
+          if (name != null) {
+            addPackage(name, mPackages);
+          }
+        }
+      }
+      catch (IOException e) {
+        // not a valid jar, keep it so the analyzer can report it
+        mPackages.add("");
+      }
+    }
+
+    protected boolean hasAnyPackage(Set<String> packages) {
+      return mPackages.contains("") || mPackages.stream().anyMatch(packages::contains);
+    }
+
+    protected synchronized Set<String> getSupertypePackages() {
+      if (mSupertypePackages == null) {
+        Set<String> supertypePackages = new HashSet<>();
+        Set<String> referencedPackages = new HashSet<>();
+        try (ZipFile zipFile = new ZipFile(mJar)) {
+          Enumeration<? extends ZipEntry> entries = zipFile.entries();
+          while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            if (getClassName(entry) != null) {
+              try (InputStream in = zipFile.getInputStream(entry)) {
+                readClass(in, referencedPackages, supertypePackages);
+              }
+            }
+          }
+        }
+        catch (IOException e) {
+          // the packages read so far are used
+        }
+        mSupertypePackages = supertypePackages;
+      }
+      return mSupertypePackages;
+    }
+
+    // class name without .class, null if not a class
+    @Nullable
+    private static String getClassName(ZipEntry entry) {
+      String name = entry.getName();
+      if (entry.isDirectory() || !name.endsWith(".class") || name.endsWith("module-info.class")) {
+        return null;
+      }
+      if (name.startsWith("META-INF/versions/")) {
+        // multi release jar, e.g. META-INF/versions/11/a/B.class
+        int start = name.indexOf('/', "META-INF/versions/".length());
+        name = start > 0 ? name.substring(start + 1) : name;
+      }
+      return name.substring(0, name.length() - ".class".length());
+    }
+  }
+
+}
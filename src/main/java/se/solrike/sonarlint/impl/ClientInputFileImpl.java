@@ -7,6 +7,8 @@ import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
+import javax.annotation.Nullable;
+
 import org.sonarsource.sonarlint.core.analysis.api.ClientInputFile;
 
 /**
@@ -18,12 +20,24 @@ public class ClientInputFileImpl implements ClientInputFile {
   private final boolean mTest;
   private final Charset mCharset;
   private final Path mBaseDir;
+  @Nullable
+  private final SourceContentCache mContentCache;
 
   public ClientInputFileImpl(Path baseDir, Path path, boolean test, Charset charset) {
+    this(baseDir, path, test, charset, null);
+  }
+
+  /**
+   * @param contentCache
+   *          - cache of the file content shared by the sensors or null to read the file each time
+   */
+  public ClientInputFileImpl(Path baseDir, Path path, boolean test, Charset charset,
+      @Nullable SourceContentCache contentCache) {
     mBaseDir = baseDir;
     mPath = path;
     mTest = test;
     mCharset = charset;
+    mContentCache = contentCache;
   }
 
   @SuppressWarnings("all")
@@ -53,11 +67,17 @@ public class ClientInputFileImpl implements ClientInputFile {
 
   @Override
   public InputStream inputStream() throws IOException {
+    if (mContentCache != null) {
+      return mContentCache.inputStream(mPath);
+    }
     return Files.newInputStream(mPath);
   }
 
   @Override
   public String contents() throws IOException {
+    if (mContentCache != null) {
+      return mContentCache.contents(mPath, mCharset);
+    }
     return new String(Files.readAllBytes(mPath), mCharset);
   }
 
@@ -0,0 +1,167 @@
+package se.solrike.sonarlint.impl;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.gradle.api.logging.Logger;
+import org.sonarsource.sonarlint.core.StandaloneSonarLintEngineImpl;
+import org.sonarsource.sonarlint.core.client.api.standalone.StandaloneGlobalConfiguration;
+import org.sonarsource.sonarlint.core.client.api.standalone.StandaloneGlobalConfiguration.Builder;
+import org.sonarsource.sonarlint.core.client.api.standalone.StandaloneSonarLintEngine;
+import org.sonarsource.sonarlint.core.commons.Language;
+import org.sonarsource.sonarlint.core.commons.Version;
+
+import se.solrike.sonarlint.impl.SonarlintEngineService.EngineKey;
+
+/**
+ * Pool of warm Sonarlint engines keyed by the plugin set and the node runtime. An engine is borrowed for the duration
+ * of an analysis and given back when done. If several analyses run in parallel with the same key they will get one
+ * engine each since the engine can only run one analysis at a time.
+ *
+ * @author Lucas Persson
+ */
+public class EnginePool implements AutoCloseable {
+
+  private final Path mWorkDir;
+  private final Path mUserHome;
+  private final Logger mLogger;
+  private final Map<EngineKey, Deque<IdleEngine>> mIdleEngines = new HashMap<>();
+  private final List<StandaloneSonarLintEngine> mAllEngines = new ArrayList<>();
+
+  /**
+   * @param workDir
+   *          - work directory for the engines
+   * @param userHome
+   *          - Sonarlint user home for the engines
+   * @param logger
+   *          - the logger for the engines
+   */
+  public EnginePool(Path workDir, Path userHome, Logger logger) {
+    mWorkDir = workDir;
+    mUserHome = userHome;
+    mLogger = logger;
+  }
+
+  /**
+   * Borrow an engine for the given plugins and node runtime. A new engine is created if there is no idle one. The
+   * engine must be given back with {@link #release(EngineKey, StandaloneSonarLintEngine)}.
+   *
+   * @param key
+   *          - plugins and node runtime the engine shall be configured with
+   *
+   * @return the engine
+   */
+  public StandaloneSonarLintEngine borrow(EngineKey key) {
+    synchronized (this) {
+      Deque<IdleEngine> idle = mIdleEngines.get(key);
+      if (idle != null && !idle.isEmpty()) {
+        mLogger.info("Reusing warm sonarlint engine for {}", key);
+        return idle.pop().mEngine;
+      }
+    }
+    // create outside the lock since loading the plugins takes a while
+    mLogger.info("Creating sonarlint engine for {}", key);
+    StandaloneSonarLintEngine engine = createEngine(key);
+    synchronized (this) {
+      mAllEngines.add(engine);
+    }
+    return engine;
+  }
+
+  /**
+   * Give back an engine that was borrowed so others can use it.
+   *
+   * @param key
+   *          - the key the engine was borrowed with
+   * @param engine
+   *          - the engine
+   */
+  public synchronized void release(EngineKey key, StandaloneSonarLintEngine engine) {
+    mIdleEngines.computeIfAbsent(key, k -> new ArrayDeque<>()).push(new IdleEngine(engine));
+  }
+
+  /**
+   * Stop the engines that have been idle for at least the given time.
+   *
+   * @param idleMillis
+   *          - the idle time in milliseconds, 0 to stop all idle engines
+   *
+   * @return number of stopped engines
+   */
+  public int stopIdleEngines(long idleMillis) {
+    long now = System.currentTimeMillis();
+    List<StandaloneSonarLintEngine> toStop = new ArrayList<>();
+    synchronized (this) {
+      for (Deque<IdleEngine> idle : mIdleEngines.values()) {
+        for (Iterator<IdleEngine> iterator = idle.iterator(); iterator.hasNext();) {
+          IdleEngine idleEngine = iterator.next();
+          if (now - idleEngine.mSince >= idleMillis) {
+            iterator.remove();
+            toStop.add(idleEngine.mEngine);
+          }
+        }
+      }
+      mAllEngines.removeAll(toStop);
+      mIdleEngines.values().removeIf(Deque::isEmpty);
+    }
+    toStop.forEach(this::stop);
+    return toStop.size();
+  }
+
+  public synchronized int size() {
+    return mAllEngines.size();
+  }
+
+  protected StandaloneSonarLintEngine createEngine(EngineKey key) {
+    return new StandaloneSonarLintEngineImpl(createGlobalConfiguration(key));
+  }
+
+  protected StandaloneGlobalConfiguration createGlobalConfiguration(EngineKey key) {
+    Builder builder = StandaloneGlobalConfiguration.builder()
+        .addEnabledLanguages(key.getLanguages().toArray(Language[]::new))
+        .addPlugins(key.getPlugins().toArray(Path[]::new))
+        .setLogOutput(new GradleClientLogOutput(mLogger))
+        .setWorkDir(key.getWorkDir(mWorkDir))
+        .setSonarLintUserHome(mUserHome);
+    if (key.getNodeExec() != null && key.getNodeVersion() != null) {
+      builder.setNodeJs(key.getNodeExec(), Version.create(key.getNodeVersion()));
+    }
+    return builder.build();
+  }
+
+  @Override
+  public void close() {
+    List<StandaloneSonarLintEngine> toStop;
+    synchronized (this) {
+      toStop = new ArrayList<>(mAllEngines);
+      mAllEngines.clear();
+      mIdleEngines.clear();
+    }
+    toStop.forEach(this::stop);
+  }
+
+  protected void stop(StandaloneSonarLintEngine engine) {
+    try {
+      engine.stop();
+    }
+    catch (Exception e) {
+      mLogger.warn("could not stop the engine");
+    }
+  }
+
+  private static final class IdleEngine {
+    private final StandaloneSonarLintEngine mEngine;
+    private final long mSince = System.currentTimeMillis();
+
+    private IdleEngine(StandaloneSonarLintEngine engine) {
+      mEngine = engine;
+    }
+  }
+
+}
@@ -0,0 +1,148 @@
+package se.solrike.sonarlint.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.gradle.api.GradleException;
+
+/**
+ * Finds the files that have changed in the local git repository since a ref, e.g. for pull request builds where only
+ * the changed files need to be analysed. Only the local repository is read, nothing is fetched.
+ * <p>
+ * The files are compared to the merge base of the ref and <code>HEAD</code>, so with the ref <code>origin/main</code>
+ * the changes on main since the branch was created are not included. Committed, staged and unstaged changes and
+ * untracked files that aren't ignored are included, deleted files are not.
+ *
+ * @author Lucas Persson
+ */
+public class GitChangedFiles {
+
+  private final File mDir;
+
+  /**
+   * @param dir
+   *          - a directory in the git repository
+   */
+  public GitChangedFiles(File dir) {
+    mDir = dir;
+  }
+
+  /**
+   * Get the changed files.
+   *
+   * @param ref
+   *          - the git ref, e.g. <code>origin/main</code> or a commit
+   *
+   * @return absolute path of the changed files
+   *
+   * @throws GradleException
+   *           if git fails, e.g. if the directory isn't in a git repository or the ref doesn't exist
+   */
+  public Set<File> getChangedFiles(String ref) {
+    Path topLevel = Path.of(git("rev-parse", "--show-toplevel").trim());
+    String mergeBase = git("merge-base", ref, "HEAD").trim();
+    Set<File> files = new HashSet<>();
+    // renames are given as a deleted and an added file
+    for (String path : split(git("diff", "--name-only", "-z", "--no-renames", "--diff-filter=d", mergeBase))) {
+      files.add(topLevel.resolve(path).toFile());
+    }
+    for (String path : split(git("ls-files", "-z", "--others", "--exclude-standard", "--full-name", ":/"))) {
+      files.add(topLevel.resolve(path).toFile());
+    }
+    return files;
+  }
+
+  /**
+   * Keep the files that have changed.
+   *
+   * @param files
+   *          - the files, e.g. the source files of a task
+   * @param ref
+   *          - the git ref
+   *
+   * @return the files that have changed since the ref
+   */
+  public Set<File> filter(Collection<File> files, String ref) {
+    Set<File> changedFiles = getChangedFiles(ref);
+    Set<File> filtered = new LinkedHashSet<>();
+    for (File file : files) {
+      // git gives the real path so symbolic links in the project path must be resolved
+      if (changedFiles.contains(file) || changedFiles.contains(getCanonicalFile(file))) {
+        filtered.add(file);
+      }
+    }
+    return filtered;
+  }
+
+  protected String git(String... args) {
+    List<String> command = new ArrayList<>();
+    command.add("git");
+    command.addAll(List.of(args));
+    File errorFile = null;
+    try {
+      // stderr goes to a file so git can't block on a full stderr pipe while stdout is read
+      errorFile = File.createTempFile("sonarlint-git", ".err");
+      Process process = new ProcessBuilder(command).directory(mDir)
+          .redirectError(ProcessBuilder.Redirect.to(errorFile))
+          .start();
+      process.getOutputStream().close();
+      String output = readString(process.getInputStream());
+      int exitCode = process.waitFor();
+      if (exitCode != 0) {
+        String error = new String(Files.readAllBytes(errorFile.toPath()), StandardCharsets.UTF_8);
+        throw new GradleException(
+            String.format("'%s' failed with exit code %d: %s", String.join(" ", command), exitCode, error.trim()));
+      }
+      return output;
+    }
+    catch (IOException e) {
+      throw new GradleException("Could not run git to find the changed files", e);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new GradleException("Interrupted while running git", e);
+    }
+    finally {
+      if (errorFile != null && !errorFile.delete()) {
+        errorFile.deleteOnExit();
+      }
+    }
+  }
+
+  private static File getCanonicalFile(File file) {
+    try {
+      return file.getCanonicalFile();
+    }
+    catch (IOException e) {
+      return file;
+    }
+  }
+
+  private static String readString(InputStream in) throws IOException {
+    try (in) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+  // the paths are NUL separated so they aren't quoted
+  private static List<String> split(String output) {
+    List<String> paths = new ArrayList<>();
+    for (String path : output.split("\0")) {
+      if (!path.isEmpty()) {
+        paths.add(path);
+      }
+    }
+    return paths;
+  }
+
+}
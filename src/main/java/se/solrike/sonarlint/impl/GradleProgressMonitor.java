@@ -1,5 +1,7 @@
 package se.solrike.sonarlint.impl;
 
+import java.util.function.BooleanSupplier;
+
 import org.gradle.api.logging.Logger;
 import org.sonarsource.sonarlint.core.commons.progress.ClientProgressMonitor;
 
@@ -11,9 +13,21 @@ public class GradleProgressMonitor implements ClientProgressMonitor {
   private Logger mLogger;
   private float mFraction;
   private boolean mIndeterminate;
+  private BooleanSupplier mCancel;
 
   public GradleProgressMonitor(Logger logger) {
+    this(logger, () -> false);
+  }
+
+  /**
+   * @param logger
+   *          - the logger
+   * @param cancel
+   *          - polled by the engine, returns true when the analysis shall be stopped
+   */
+  public GradleProgressMonitor(Logger logger, BooleanSupplier cancel) {
     mLogger = logger;
+    mCancel = cancel;
   }
 
   @Override
@@ -36,4 +50,9 @@ public class GradleProgressMonitor implements ClientProgressMonitor {
     mIndeterminate = indeterminate;
   }
 
+  @Override
+  public boolean isCanceled() {
+    return mCancel.getAsBoolean();
+  }
+
 }
@@ -0,0 +1,88 @@
+package se.solrike.sonarlint.impl;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+import org.gradle.api.logging.Logger;
+
+/**
+ * Analysis cache on a HTTP server so the results can be shared between CI agents. An entry is fetched with
+ * <code>GET &lt;url&gt;/&lt;key&gt;</code> and stored with <code>PUT &lt;url&gt;/&lt;key&gt;</code>, i.e. the same
+ * protocol as the Gradle HTTP build cache. If the server can't be reached the cache is disabled for the rest of the
+ * task.
+ *
+ * @author Lucas Persson
+ */
+public class HttpAnalysisCache implements AnalysisCache {
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+  private final String mUrl;
+  private final Logger mLogger;
+  private final HttpClient mClient;
+  private boolean mDisabled;
+
+  public HttpAnalysisCache(String url, Logger logger) {
+    mUrl = url.endsWith("/") ? url : url + "/";
+    mLogger = logger;
+    mClient = HttpClient.newBuilder().connectTimeout(TIMEOUT).followRedirects(HttpClient.Redirect.NORMAL).build();
+  }
+
+  @Override
+  public byte[] load(String key) {
+    if (mDisabled) {
+      return null;
+    }
+    HttpRequest request = HttpRequest.newBuilder(URI.create(mUrl + key)).timeout(TIMEOUT).GET().build();
+    try {
+      HttpResponse<byte[]> response = mClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+      if (response.statusCode() == 200) {
+        return response.body();
+      }
+      if (response.statusCode() != 404) {
+        mLogger.warn("Could not load from Sonarlint analysis cache {}. HTTP status {}", mUrl, response.statusCode());
+      }
+    }
+    catch (IOException e) {
+      disable(e);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return null;
+  }
+
+  @Override
+  public void store(String key, byte[] value) {
+    if (mDisabled) {
+      return;
+    }
+    HttpRequest request = HttpRequest.newBuilder(URI.create(mUrl + key))
+        .timeout(TIMEOUT)
+        .header("Content-Type", "application/octet-stream")
+        .PUT(HttpRequest.BodyPublishers.ofByteArray(value))
+        .build();
+    try {
+      HttpResponse<Void> response = mClient.send(request, HttpResponse.BodyHandlers.discarding());
+      if (response.statusCode() >= 300) {
+        mLogger.warn("Could not store to Sonarlint analysis cache {}. HTTP status {}", mUrl, response.statusCode());
+      }
+    }
+    catch (IOException e) {
+      disable(e);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void disable(IOException e) {
+    mLogger.warn("Sonarlint analysis cache {} is not reachable and will not be used: {}", mUrl, e.toString());
+    mDisabled = true;
+  }
+
+}
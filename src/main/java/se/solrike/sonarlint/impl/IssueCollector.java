@@ -1,24 +1,113 @@
 package se.solrike.sonarlint.impl;
 
-import java.util.LinkedList;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
 
 import org.sonarsource.sonarlint.core.client.api.common.analysis.Issue;
 import org.sonarsource.sonarlint.core.client.api.common.analysis.IssueListener;
+import org.sonarsource.sonarlint.core.client.api.standalone.StandaloneRuleDetails;
+import org.sonarsource.sonarlint.core.commons.IssueSeverity;
 
 /**
+ * Collects the issues found by the engine. In streaming mode each issue is also given to a sink as soon as it is found
+ * and only a compact record of the issue is kept. The same collector can then be used by several engines at the same
+ * time. A global issue, which doesn't belong to a file, is found by each engine but only collected once.
+ *
  * @author Lucas Persson
  */
 public class IssueCollector implements IssueListener {
-  private List<IssueEx> mIssues = new LinkedList<>();
+  private List<Issue> mIssues = new ArrayList<>();
+  private final Set<String> mGlobalIssues = new HashSet<>();
   private int mNextId;
+  private final Baseline.LineHasher mLineHasher = new Baseline.LineHasher();
+  @Nullable
+  private final IssueSink mSink;
+  private final Path mBaseDir;
+  @Nullable
+  private final IssueSeverity mMinSeverity;
+  @Nullable
+  private final Function<String, Optional<StandaloneRuleDetails>> mRulesDetails;
+
+  public IssueCollector() {
+    mSink = null;
+    mBaseDir = null;
+    mMinSeverity = null;
+    mRulesDetails = null;
+  }
+
+  /**
+   * Collector in streaming mode.
+   *
+   * @param baseDir
+   *          - the project directory
+   * @param minSeverity
+   *          - issues with this severity or lower are not given to the sink. Null to give all issues.
+   * @param sink
+   *          - the sink the issues are given to
+   * @param rulesDetails
+   *          - looks up the rule details of the issues given to the sink, null if the sink doesn't need them
+   */
+  public IssueCollector(Path baseDir, @Nullable IssueSeverity minSeverity, IssueSink sink,
+      @Nullable Function<String, Optional<StandaloneRuleDetails>> rulesDetails) {
+    mSink = sink;
+    mBaseDir = baseDir;
+    mMinSeverity = minSeverity;
+    mRulesDetails = rulesDetails;
+  }
 
   @Override
-  public void handle(Issue issue) {
-    mIssues.add(new IssueEx(mNextId++, issue));
+  public synchronized void handle(Issue issue) {
+    if (issue.getInputFile() == null && !mGlobalIssues.add(issue.getRuleKey() + '\n' + issue.getMessage())) {
+      return;
+    }
+    // hashed while the content the engine has read is still cached
+    String lineHash = mLineHasher.getLineHash(issue);
+    if (mSink == null) {
+      IssueEx issueEx = new IssueEx(mNextId++, issue);
+      issueEx.setLineHash(lineHash);
+      mIssues.add(issueEx);
+      return;
+    }
+    // don't keep the file, flows and quick fixes of the issue, nor the rule details given to the sink
+    IssueRecord issueRecord = new IssueRecord(issue, lineHash);
+    issueRecord.setBaseDir(mBaseDir);
+    mIssues.add(issueRecord);
+    if (mMinSeverity == null || issue.getSeverity().compareTo(mMinSeverity) > 0) {
+      give(new IssueEx(mNextId++, issueRecord));
+    }
+  }
+
+  /**
+   * Give an issue found by a previous analysis to the sink, e.g. taken from the analysis cache. The issue is not
+   * collected.
+   *
+   * @param issue
+   *          - the issue
+   */
+  public synchronized void replay(Issue issue) {
+    if (mSink != null) {
+      give(new IssueEx(mNextId++, issue));
+    }
+  }
+
+  private void give(IssueEx issue) {
+    if (mRulesDetails != null) {
+      issue.setRulesDetails(mRulesDetails.apply(issue.getRuleKey()));
+    }
+    mSink.accept(issue);
   }
 
-  public List<IssueEx> getIssues() {
+  /**
+   * @return the collected issues, in streaming mode as {@link IssueRecord}
+   */
+  public synchronized List<Issue> getIssues() {
     return mIssues;
   }
-}
\ No newline at end of file
+}
@@ -4,6 +4,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+import javax.annotation.Nullable;
+
 import org.sonarsource.sonarlint.core.analysis.api.ClientInputFile;
 import org.sonarsource.sonarlint.core.analysis.api.Flow;
 import org.sonarsource.sonarlint.core.analysis.api.QuickFix;
@@ -23,8 +25,10 @@ import org.sonarsource.sonarlint.core.commons.VulnerabilityProbability;
 public class IssueEx implements Issue {
 
   private Issue mSonarlintIssue;
-  private Optional<StandaloneRuleDetails> mRulesDetails;
+  private Optional<StandaloneRuleDetails> mRulesDetails = Optional.empty();
   private final int mId;
+  @Nullable
+  private String mLineHash;
 
   public IssueEx(int id, Issue sonarlintIssue) {
     mId = id;
@@ -144,4 +148,19 @@ public class IssueEx implements Issue {
     return mSonarlintIssue.getVulnerabilityProbability();
   }
 
+  /**
+   * @return hash of the line the issue starts on or null if it wasn't computed, see {@link Baseline.LineHasher}
+   */
+  @Nullable
+  public String getLineHash() {
+    if (mLineHash == null && mSonarlintIssue instanceof IssueRecord) {
+      return ((IssueRecord) mSonarlintIssue).getLineHash();
+    }
+    return mLineHash;
+  }
+
+  public void setLineHash(@Nullable String lineHash) {
+    mLineHash = lineHash;
+  }
+
 }
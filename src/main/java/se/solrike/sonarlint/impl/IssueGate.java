@@ -0,0 +1,39 @@
+package se.solrike.sonarlint.impl;
+
+/**
+ * Counts the issues and trips when there are more issues than allowed. Used to stop the analysis early since the build
+ * will fail anyway.
+ *
+ * @author Lucas Persson
+ */
+public class IssueGate implements IssueSink {
+
+  private final int mMaxIssues;
+  private volatile int mCount;
+
+  /**
+   * @param maxIssues
+   *          - max number of issues allowed
+   */
+  public IssueGate(int maxIssues) {
+    mMaxIssues = maxIssues;
+  }
+
+  @Override
+  @SuppressWarnings("java:S3078") // the sink is never called concurrently
+  public void accept(IssueEx issue) {
+    mCount++;
+  }
+
+  public int getCount() {
+    return mCount;
+  }
+
+  /**
+   * @return true if there are more issues than allowed
+   */
+  public boolean isExceeded() {
+    return mCount > mMaxIssues;
+  }
+
+}
@@ -0,0 +1,221 @@
+package se.solrike.sonarlint.impl;
+
+import java.io.ObjectInputFilter;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.Nullable;
+
+import org.sonarsource.sonarlint.core.analysis.api.ClientInputFile;
+import org.sonarsource.sonarlint.core.analysis.api.Flow;
+import org.sonarsource.sonarlint.core.analysis.api.QuickFix;
+import org.sonarsource.sonarlint.core.client.api.common.analysis.Issue;
+import org.sonarsource.sonarlint.core.commons.CleanCodeAttribute;
+import org.sonarsource.sonarlint.core.commons.ImpactSeverity;
+import org.sonarsource.sonarlint.core.commons.IssueSeverity;
+import org.sonarsource.sonarlint.core.commons.RuleType;
+import org.sonarsource.sonarlint.core.commons.SoftwareQuality;
+import org.sonarsource.sonarlint.core.commons.TextRange;
+import org.sonarsource.sonarlint.core.commons.VulnerabilityProbability;
+
+/**
+ * Serializable copy of a Sonarlint issue so it can be stored between builds. The file is stored relative to the
+ * project directory. Flows and quick fixes are not kept since they are not used by any report.
+ *
+ * @author Lucas Persson
+ */
+public class IssueRecord implements Issue, Serializable {
+
+  private static final long serialVersionUID = 2L;
+  // the only classes in a serialized list or map of records
+  private static final Set<Class<?>> sSerialClasses = Set.of(IssueRecord.class, ArrayList.class, Object[].class,
+      TreeMap.class, EnumMap.class, String.class, Enum.class, IssueSeverity.class, RuleType.class,
+      CleanCodeAttribute.class, SoftwareQuality.class, ImpactSeverity.class, VulnerabilityProbability.class);
+  private static final int MAX_SERIAL_DEPTH = 8;
+
+  private final String mRuleKey;
+  private final IssueSeverity mSeverity;
+  private final RuleType mType;
+  private final String mMessage;
+  private final String mRelativePath;
+  private final boolean mTest;
+  private final boolean mHasTextRange;
+  private final int mStartLine;
+  private final int mStartLineOffset;
+  private final int mEndLine;
+  private final int mEndLineOffset;
+  private final CleanCodeAttribute mCleanCodeAttribute;
+  private final EnumMap<SoftwareQuality, ImpactSeverity> mImpacts;
+  private final String mRuleDescriptionContextKey;
+  private final VulnerabilityProbability mVulnerabilityProbability;
+  // hash of the line the issue starts on, see Baseline
+  private final String mLineHash;
+  // not stored so the record is relocatable
+  private transient Path mBaseDir;
+
+  public IssueRecord(Issue issue) {
+    this(issue, getLineHash(issue));
+  }
+
+  /**
+   * @param issue
+   *          - the issue
+   * @param lineHash
+   *          - hash of the line the issue starts on, computed from the content that was analysed, see
+   *          {@link Baseline.LineHasher}
+   */
+  public IssueRecord(Issue issue, @Nullable String lineHash) {
+    mRuleKey = issue.getRuleKey();
+    mSeverity = issue.getSeverity();
+    mType = issue.getType();
+    mMessage = issue.getMessage();
+    ClientInputFile inputFile = issue.getInputFile();
+    mRelativePath = inputFile != null ? inputFile.relativePath() : null;
+    mTest = inputFile != null && inputFile.isTest();
+    TextRange textRange = issue.getTextRange();
+    mHasTextRange = textRange != null;
+    mStartLine = mHasTextRange ? textRange.getStartLine() : 0;
+    mStartLineOffset = mHasTextRange ? textRange.getStartLineOffset() : 0;
+    mEndLine = mHasTextRange ? textRange.getEndLine() : 0;
+    mEndLineOffset = mHasTextRange ? textRange.getEndLineOffset() : 0;
+    mCleanCodeAttribute = issue.getCleanCodeAttribute().orElse(null);
+    mImpacts = new EnumMap<>(SoftwareQuality.class);
+    mImpacts.putAll(issue.getImpacts());
+    mRuleDescriptionContextKey = issue.getRuleDescriptionContextKey().orElse(null);
+    mVulnerabilityProbability = issue.getVulnerabilityProbability().orElse(null);
+    mLineHash = lineHash;
+  }
+
+  @Nullable
+  private static String getLineHash(Issue issue) {
+    if (issue instanceof IssueRecord) {
+      return ((IssueRecord) issue).getLineHash();
+    }
+    return issue instanceof IssueEx ? ((IssueEx) issue).getLineHash() : null;
+  }
+
+  /**
+   * Filter for reading serialized records, which might come from a shared cache, that only allows the classes of the
+   * records and the collections they are stored in.
+   *
+   * @return the filter
+   */
+  public static ObjectInputFilter getSerialFilter() {
+    return info -> {
+      if (info.depth() > MAX_SERIAL_DEPTH) {
+        return ObjectInputFilter.Status.REJECTED;
+      }
+      Class<?> serialClass = info.serialClass();
+      if (serialClass == null) {
+        return ObjectInputFilter.Status.UNDECIDED;
+      }
+      return sSerialClasses.contains(serialClass) ? ObjectInputFilter.Status.ALLOWED
+          : ObjectInputFilter.Status.REJECTED;
+    };
+  }
+
+  /**
+   * The project directory the relative path of the file is resolved against.
+   *
+   * @param baseDir
+   *          - the project directory
+   */
+  public void setBaseDir(Path baseDir) {
+    mBaseDir = baseDir;
+  }
+
+  /**
+   * The path of the file relative to the project directory or null if the issue is global.
+   *
+   * @return the relative path
+   */
+  public String getRelativePath() {
+    return mRelativePath;
+  }
+
+  @Override
+  public TextRange getTextRange() {
+    return mHasTextRange ? new TextRange(mStartLine, mStartLineOffset, mEndLine, mEndLineOffset) : null;
+  }
+
+  @Override
+  public String getMessage() {
+    return mMessage;
+  }
+
+  @Override
+  public ClientInputFile getInputFile() {
+    if (mRelativePath == null) {
+      return null;
+    }
+    return new ClientInputFileImpl(mBaseDir, mBaseDir.resolve(mRelativePath), mTest, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public IssueSeverity getSeverity() {
+    return mSeverity;
+  }
+
+  @Override
+  public RuleType getType() {
+    return mType;
+  }
+
+  @Override
+  public Optional<CleanCodeAttribute> getCleanCodeAttribute() {
+    return Optional.ofNullable(mCleanCodeAttribute);
+  }
+
+  @Override
+  public Map<SoftwareQuality, ImpactSeverity> getImpacts() {
+    return Collections.unmodifiableMap(mImpacts);
+  }
+
+  @Override
+  public String getRuleKey() {
+    return mRuleKey;
+  }
+
+  @Override
+  public List<Flow> flows() {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public List<QuickFix> quickFixes() {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public Optional<String> getRuleDescriptionContextKey() {
+    return Optional.ofNullable(mRuleDescriptionContextKey);
+  }
+
+  @Override
+  public Optional<VulnerabilityProbability> getVulnerabilityProbability() {
+    return Optional.ofNullable(mVulnerabilityProbability);
+  }
+
+  /**
+   * @return hash of the line the issue starts on or null if it wasn't computed
+   */
+  @Nullable
+  public String getLineHash() {
+    return mLineHash;
+  }
+
+  @Override
+  public String toString() {
+    return mRuleKey + " " + mMessage + " at " + mRelativePath;
+  }
+
+}
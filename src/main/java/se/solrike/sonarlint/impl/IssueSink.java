@@ -0,0 +1,78 @@
+package se.solrike.sonarlint.impl;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Receives the issues one by one as they are found, e.g. a report that is written while the analysis is running.
+ *
+ * @author Lucas Persson
+ */
+@FunctionalInterface
+public interface IssueSink extends AutoCloseable {
+
+  /**
+   * Handle an issue. Might be called from several threads but never concurrently.
+   *
+   * @param issue
+   *          - the issue
+   */
+  void accept(IssueEx issue);
+
+  /**
+   * No more issues will be given.
+   */
+  @Override
+  default void close() {
+    // nothing
+  }
+
+  /**
+   * Combine sinks into one.
+   *
+   * @param sinks
+   *          - the sinks that shall get all issues
+   *
+   * @return a sink that gives the issues to all the sinks
+   */
+  static IssueSink of(List<IssueSink> sinks) {
+    return new IssueSink() {
+      @Override
+      public void accept(IssueEx issue) {
+        sinks.forEach(sink -> sink.accept(issue));
+      }
+
+      @Override
+      public void close() {
+        sinks.forEach(IssueSink::close);
+      }
+    };
+  }
+
+  /**
+   * Only give some issues to a sink.
+   *
+   * @param sink
+   *          - the sink
+   * @param predicate
+   *          - true for the issues the sink shall get
+   *
+   * @return a sink that gives the matching issues to the sink
+   */
+  static IssueSink filter(IssueSink sink, Predicate<IssueEx> predicate) {
+    return new IssueSink() {
+      @Override
+      public void accept(IssueEx issue) {
+        if (predicate.test(issue)) {
+          sink.accept(issue);
+        }
+      }
+
+      @Override
+      public void close() {
+        sink.close();
+      }
+    };
+  }
+
+}
@@ -0,0 +1,162 @@
+package se.solrike.sonarlint.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.Nullable;
+
+import org.sonarsource.sonarlint.core.client.api.common.analysis.Issue;
+import org.sonarsource.sonarlint.core.commons.IssueSeverity;
+
+/**
+ * The issues found by a task grouped per file so the issues for a single file can be replaced when only that file has
+ * been analysed again. The files are sorted on the relative path so the order of the issues is stable.
+ *
+ * @author Lucas Persson
+ */
+public class IssueStore {
+
+  // issues not bound to a file, like project level issues
+  private static final String GLOBAL_KEY = "";
+
+  // @formatter:off
+  private static final Comparator<IssueRecord> sIssueOrder = Comparator
+      .comparing(IssueRecord::getStartLine, Comparator.nullsFirst(Comparator.naturalOrder()))
+      .thenComparing(IssueRecord::getStartLineOffset, Comparator.nullsFirst(Comparator.naturalOrder()))
+      .thenComparing(IssueRecord::getEndLine, Comparator.nullsFirst(Comparator.naturalOrder()))
+      .thenComparing(IssueRecord::getEndLineOffset, Comparator.nullsFirst(Comparator.naturalOrder()))
+      .thenComparing(IssueRecord::getRuleKey)
+      .thenComparing(IssueRecord::getMessage, Comparator.nullsFirst(Comparator.naturalOrder()));
+  // @formatter:on
+
+  private final Path mBaseDir;
+  @Nullable
+  private final IssueSeverity mMinSeverity;
+  private TreeMap<String, ArrayList<IssueRecord>> mIssuesPerFile = new TreeMap<>();
+
+  public IssueStore(Path baseDir) {
+    this(baseDir, null);
+  }
+
+  /**
+   * @param baseDir
+   *          - the project directory
+   * @param minSeverity
+   *          - issues with this severity or lower are not stored. Null to store all issues.
+   */
+  public IssueStore(Path baseDir, @Nullable IssueSeverity minSeverity) {
+    mBaseDir = baseDir;
+    mMinSeverity = minSeverity;
+  }
+
+  /**
+   * Read the issues from a previous run.
+   *
+   * @param file
+   *          - the file the issues were written to
+   *
+   * @return true if the issues could be read
+   */
+  @SuppressWarnings("unchecked")
+  public boolean read(File file) {
+    if (!file.isFile()) {
+      return false;
+    }
+    try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+      // the file might come from a shared build cache
+      in.setObjectInputFilter(IssueRecord.getSerialFilter());
+      mIssuesPerFile = (TreeMap<String, ArrayList<IssueRecord>>) in.readObject();
+      mIssuesPerFile.values().forEach(records -> records.forEach(r -> r.setBaseDir(mBaseDir)));
+      return true;
+    }
+    catch (IOException | ClassNotFoundException | ClassCastException e) {
+      // e.g. written by an older version of the plugin
+      mIssuesPerFile = new TreeMap<>();
+      return false;
+    }
+  }
+
+  public void write(File file) {
+    try {
+      Files.createDirectories(file.getParentFile().toPath());
+      try (ObjectOutputStream out = new ObjectOutputStream(
+          new BufferedOutputStream(Files.newOutputStream(file.toPath())))) {
+        out.writeObject(mIssuesPerFile);
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Drop the issues for a file, e.g. since it has been removed or will be analysed again.
+   *
+   * @param relativePath
+   *          - path relative to the project directory
+   */
+  public void removeFile(String relativePath) {
+    mIssuesPerFile.remove(relativePath);
+  }
+
+  public void removeGlobalIssues() {
+    mIssuesPerFile.remove(GLOBAL_KEY);
+  }
+
+  public void clear() {
+    mIssuesPerFile.clear();
+  }
+
+  /**
+   * Add issues. The issues of a file are kept sorted on the location so the order doesn't depend on the order the
+   * issues were found in, e.g. when the files are analysed in parallel. Global issues found more than once are only
+   * added once.
+   *
+   * @param issues
+   *          - the issues
+   */
+  public void addAll(Collection<? extends Issue> issues) {
+    Set<List<IssueRecord>> changedFiles = new HashSet<>();
+    for (Issue issue : issues) {
+      if (mMinSeverity != null && issue.getSeverity().compareTo(mMinSeverity) <= 0) {
+        continue;
+      }
+      IssueRecord issueRecord = issue instanceof IssueRecord ? (IssueRecord) issue : new IssueRecord(issue);
+      issueRecord.setBaseDir(mBaseDir);
+      String key = issueRecord.getRelativePath() != null ? issueRecord.getRelativePath() : GLOBAL_KEY;
+      List<IssueRecord> fileIssues = mIssuesPerFile.computeIfAbsent(key, k -> new ArrayList<>());
+      if (key.equals(GLOBAL_KEY) && fileIssues.stream().anyMatch(i -> sIssueOrder.compare(i, issueRecord) == 0)) {
+        continue;
+      }
+      fileIssues.add(issueRecord);
+      changedFiles.add(fileIssues);
+    }
+    changedFiles.forEach(fileIssues -> fileIssues.sort(sIssueOrder));
+  }
+
+  /**
+   * All issues ordered on the file they belong to.
+   *
+   * @return the issues
+   */
+  public List<IssueRecord> getIssues() {
+    List<IssueRecord> issues = new ArrayList<>();
+    mIssuesPerFile.values().forEach(issues::addAll);
+    return issues;
+  }
+
+}
@@ -0,0 +1,210 @@
+package se.solrike.sonarlint.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+import javax.annotation.Nullable;
+
+import org.sonarsource.sonarlint.core.commons.Language;
+
+/**
+ * Classifies the source files by their file suffix and, for files that can't be classified by the suffix alone, by
+ * their content. So only the Sonarlint plugins and languages that are needed for the files are loaded in the engine
+ * and files that no loaded plugin can analyse, e.g. images in the resources, are not given to the engine.
+ * <p>
+ * The text plugin analyses secrets in all text files so it is needed as soon as there is a text file. Plugins that
+ * aren't known by Sonarlint are always loaded and then no files are dropped since it isn't known what they analyse.
+ *
+ * @author Lucas Persson
+ */
+public class LanguageDetector {
+
+  // bytes read to sniff the content
+  private static final int SNIFF_SIZE = 8 * 1024;
+  // plugin jar : plugin key, the jars resolved by Gradle never change
+  private static final Map<Path, Optional<String>> sPluginKeys = new ConcurrentHashMap<>();
+
+  // file suffix, lower case without the dot : language
+  private final Map<String, Language> mSuffixes = new HashMap<>();
+  private final Map<File, Boolean> mBinaryFiles = new HashMap<>();
+
+  public LanguageDetector() {
+    for (Language language : Language.values()) {
+      for (String suffix : language.getDefaultFileSuffixes()) {
+        String key = suffix.startsWith(".") ? suffix.substring(1) : suffix;
+        if (!key.isEmpty()) {
+          mSuffixes.putIfAbsent(key.toLowerCase(Locale.ROOT), language);
+        }
+      }
+    }
+  }
+
+  /**
+   * Detect the languages of the files.
+   *
+   * @param files
+   *          - the source files
+   *
+   * @return the languages, {@link Language#SECRETS} if there is any text file
+   */
+  public Set<Language> detectLanguages(Collection<File> files) {
+    Set<Language> languages = EnumSet.noneOf(Language.class);
+    for (File file : files) {
+      Set<Language> fileLanguages = getLanguages(file);
+      languages.addAll(fileLanguages);
+      if (!languages.contains(Language.SECRETS) && (!fileLanguages.isEmpty() || !isBinary(file))) {
+        languages.add(Language.SECRETS);
+      }
+    }
+    return languages;
+  }
+
+  /**
+   * The plugins needed for the languages.
+   *
+   * @param plugins
+   *          - all plugin jars
+   * @param languages
+   *          - the detected languages
+   *
+   * @return the plugin jars for the languages and the plugins that aren't known
+   */
+  public List<Path> selectPlugins(Collection<Path> plugins, Set<Language> languages) {
+    List<Path> selected = new ArrayList<>();
+    for (Path plugin : plugins) {
+      Optional<String> pluginKey = getPluginKey(plugin);
+      if (pluginKey.isEmpty() || !Language.containsPlugin(pluginKey.get())
+          || languages.stream().anyMatch(l -> l.getPluginKey().equals(pluginKey.get()))) {
+        selected.add(plugin);
+      }
+    }
+    return selected;
+  }
+
+  /**
+   * The languages that can be analysed by the plugins.
+   *
+   * @param plugins
+   *          - the plugin jars that are loaded
+   * @param languages
+   *          - the detected languages
+   *
+   * @return the languages with a loaded plugin or null if any plugin isn't known so all languages should be enabled
+   */
+  @Nullable
+  public Set<Language> getEnabledLanguages(Collection<Path> plugins, Set<Language> languages) {
+    Set<Language> enabled = EnumSet.noneOf(Language.class);
+    for (Path plugin : plugins) {
+      Optional<String> pluginKey = getPluginKey(plugin);
+      if (pluginKey.isEmpty() || !Language.containsPlugin(pluginKey.get())) {
+        return null;
+      }
+      languages.stream().filter(l -> l.getPluginKey().equals(pluginKey.get())).forEach(enabled::add);
+    }
+    return enabled;
+  }
+
+  /**
+   * @param file
+   *          - the source file
+   * @param enabledLanguages
+   *          - the languages that are enabled in the engine
+   *
+   * @return true if a loaded plugin can analyse the file
+   */
+  public boolean isAnalysable(File file, Set<Language> enabledLanguages) {
+    for (Language language : getLanguages(file)) {
+      if (enabledLanguages.contains(language)) {
+        return true;
+      }
+    }
+    return enabledLanguages.contains(Language.SECRETS) && !isBinary(file);
+  }
+
+  /**
+   * The languages of a file. A YAML or JSON file might also be an infrastructure as code file.
+   *
+   * @param file
+   *          - the file
+   *
+   * @return the languages, empty if not known
+   */
+  protected Set<Language> getLanguages(File file) {
+    String name = file.getName();
+    if (name.equals("Dockerfile") || name.startsWith("Dockerfile.") || name.endsWith(".dockerfile")) {
+      return EnumSet.of(Language.DOCKER);
+    }
+    int dot = name.lastIndexOf('.');
+    Language language = dot >= 0 ? mSuffixes.get(name.substring(dot + 1).toLowerCase(Locale.ROOT)) : null;
+    if (language == null) {
+      return EnumSet.noneOf(Language.class);
+    }
+    Set<Language> languages = EnumSet.of(language);
+    if (language == Language.YAML || language == Language.JSON) {
+      String head = readHead(file);
+      if (head.contains("AWSTemplateFormatVersion") || head.contains("AWS::")) {
+        languages.add(Language.CLOUDFORMATION);
+      }
+      if (head.contains("apiVersion") && head.contains("kind")) {
+        languages.add(Language.KUBERNETES);
+      }
+    }
+    return languages;
+  }
+
+  // a file with a NUL byte in the beginning is binary, e.g. an image
+  protected boolean isBinary(File file) {
+    return mBinaryFiles.computeIfAbsent(file, f -> {
+      try (InputStream in = Files.newInputStream(f.toPath())) {
+        byte[] head = in.readNBytes(SNIFF_SIZE);
+        for (byte b : head) {
+          if (b == 0) {
+            return true;
+          }
+        }
+        return false;
+      }
+      catch (IOException e) {
+        return true;
+      }
+    });
+  }
+
+  private static String readHead(File file) {
+    try (InputStream in = Files.newInputStream(file.toPath())) {
+      return new String(in.readNBytes(SNIFF_SIZE), StandardCharsets.UTF_8);
+    }
+    catch (IOException e) {
+      return "";
+    }
+  }
+
+  protected static Optional<String> getPluginKey(Path plugin) {
+    return sPluginKeys.computeIfAbsent(plugin, p -> {
+      try (JarFile jar = new JarFile(p.toFile())) {
+        Manifest manifest = jar.getManifest();
+        return Optional.ofNullable(manifest != null ? manifest.getMainAttributes().getValue("Plugin-Key") : null);
+      }
+      catch (IOException e) {
+        return Optional.empty();
+      }
+    });
+  }
+
+}
@@ -0,0 +1,193 @@
+package se.solrike.sonarlint.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.gradle.api.logging.Logger;
+
+/**
+ * Analysis cache in a local directory, typically under the Gradle user home so it survives <code>clean</code>. The
+ * modification time of an entry is updated when it is used and when the directory grows beyond the max size the least
+ * recently used entries are removed.
+ * <p>
+ * The total size of the entries is kept in an index file so the directory only needs to be walked when entries are
+ * evicted. The index is updated, and the eviction is done, while holding a file lock since several builds and tasks
+ * can use the same directory.
+ *
+ * @author Lucas Persson
+ */
+public class LocalAnalysisCache implements AnalysisCache {
+
+  private static final String LOCK_FILE_NAME = "cache.lock";
+  private static final String SIZE_FILE_NAME = "cache.size";
+  // file locks are per process so threads in the same process must also be serialized
+  private static final Object sLock = new Object();
+
+  private final Path mDir;
+  private final long mMaxSize;
+  private final Logger mLogger;
+  private boolean mStored;
+  // change of the total size by the entries stored by this instance
+  private long mStoredBytes;
+
+  public LocalAnalysisCache(File dir, long maxSize, Logger logger) {
+    mDir = dir.toPath();
+    mMaxSize = maxSize;
+    mLogger = logger;
+  }
+
+  @Override
+  public byte[] load(String key) {
+    Path entry = getEntry(key);
+    try {
+      byte[] value = Files.readAllBytes(entry);
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+      return value;
+    }
+    catch (NoSuchFileException e) {
+      return null;
+    }
+    catch (IOException e) {
+      mLogger.debug("Could not read cache entry {}", entry, e);
+      return null;
+    }
+  }
+
+  @Override
+  public void store(String key, byte[] value) {
+    Path entry = getEntry(key);
+    try {
+      Files.createDirectories(entry.getParent());
+      // write to a temp file and move it in place so concurrent builds never see a partial entry
+      Path tmp = Files.createTempFile(entry.getParent(), key, ".tmp");
+      Files.write(tmp, value);
+      long previousSize = entry.toFile().length();
+      try {
+        Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING);
+      }
+      mStored = true;
+      mStoredBytes += value.length - previousSize;
+    }
+    catch (IOException e) {
+      mLogger.warn("Could not write cache entry {}", entry, e);
+    }
+  }
+
+  /**
+   * Add the size of the stored entries to the index and remove the least recently used entries if the cache has grown
+   * beyond the max size.
+   */
+  @Override
+  public void close() {
+    if (!mStored) {
+      return;
+    }
+    try {
+      withLock(() -> {
+        Long indexedSize = readSize();
+        long size = indexedSize != null ? indexedSize + mStoredBytes : -1;
+        if (size < 0 || size > mMaxSize) {
+          size = evict();
+        }
+        writeSize(size);
+      });
+    }
+    catch (IOException e) {
+      mLogger.debug("Could not update the size of the cache directory {}", mDir, e);
+    }
+    mStored = false;
+    mStoredBytes = 0;
+  }
+
+  /**
+   * Walk the cache directory and remove the least recently used entries if it is larger than the max size. Must be
+   * called while holding the lock.
+   *
+   * @return the size of the remaining entries
+   *
+   * @throws IOException
+   *           if the directory can't be listed
+   */
+  protected long evict() throws IOException {
+    List<Path> entries;
+    try (Stream<Path> stream = Files.walk(mDir)) {
+      entries = stream.filter(p -> !p.getParent().equals(mDir) && Files.isRegularFile(p))
+          .collect(Collectors.toCollection(ArrayList::new));
+    }
+    long size = entries.stream().mapToLong(p -> p.toFile().length()).sum();
+    if (size <= mMaxSize) {
+      return size;
+    }
+    entries.sort(Comparator.comparingLong(p -> p.toFile().lastModified()));
+    // remove a bit more than needed so eviction isn't done on every build
+    long target = mMaxSize * 9 / 10;
+    for (Path entry : entries) {
+      if (size <= target) {
+        break;
+      }
+      long length = entry.toFile().length();
+      try {
+        Files.deleteIfExists(entry);
+        size -= length;
+      }
+      catch (IOException e) {
+        mLogger.debug("Could not remove cache entry {}", entry, e);
+      }
+    }
+    mLogger.info("Sonarlint analysis cache evicted to {} bytes", size);
+    return size;
+  }
+
+  @SuppressWarnings("try")
+  protected void withLock(IoAction action) throws IOException {
+    synchronized (sLock) {
+      Files.createDirectories(mDir);
+      try (FileChannel channel = FileChannel.open(mDir.resolve(LOCK_FILE_NAME), StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE); FileLock ignored = channel.lock()) {
+        action.run();
+      }
+    }
+  }
+
+  // null if there is no valid index, e.g. before the first eviction
+  private Long readSize() {
+    try {
+      return Long.valueOf(Files.readString(mDir.resolve(SIZE_FILE_NAME), StandardCharsets.UTF_8).trim());
+    }
+    catch (IOException | NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private void writeSize(long size) throws IOException {
+    Files.writeString(mDir.resolve(SIZE_FILE_NAME), Long.toString(size), StandardCharsets.UTF_8);
+  }
+
+  protected Path getEntry(String key) {
+    return mDir.resolve(key.substring(0, 2)).resolve(key);
+  }
+
+  @FunctionalInterface
+  protected interface IoAction {
+    void run() throws IOException;
+  }
+
+}
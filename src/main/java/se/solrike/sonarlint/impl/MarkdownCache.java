@@ -0,0 +1,122 @@
+package se.solrike.sonarlint.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import javax.annotation.Nullable;
+
+import se.solrike.sonarlint.impl.util.ChecksumUtil;
+
+/**
+ * Cache of rule descriptions converted from HTML to markdown, used by the SARIF report. Converting a description is
+ * slow compared to writing the report and the same few hundred descriptions are converted by every task. The
+ * conversions are kept in memory for all tasks in the Gradle daemon and optionally also on disk between builds.
+ * <p>
+ * The key is the rule key together with a checksum of the HTML description. The rule details don't tell which plugin
+ * version they are from, but a new plugin version that changes the description gives a new key.
+ *
+ * @author Lucas Persson
+ */
+public class MarkdownCache implements AutoCloseable {
+
+  /**
+   * Max size of the cache on disk.
+   */
+  public static final long DISK_MAX_SIZE = 16L * 1024 * 1024;
+
+  // key : markdown, shared by all tasks
+  private static final Map<String, String> sMarkdowns = new ConcurrentHashMap<>();
+  // the number of rules is limited, if there are more entries then old plugin versions have been used
+  private static final int MAX_ENTRIES = 10_000;
+
+  private final AnalysisCache mDisk;
+  private final AtomicInteger mHits = new AtomicInteger();
+  private final AtomicInteger mMisses = new AtomicInteger();
+
+  /**
+   * @param disk
+   *          - where the conversions are stored between builds, null if only in memory
+   */
+  public MarkdownCache(@Nullable AnalysisCache disk) {
+    mDisk = disk;
+  }
+
+  /**
+   * Get the markdown of a rule description, converting it if not in the cache.
+   *
+   * @param ruleKey
+   *          - the rule key
+   * @param html
+   *          - the description
+   * @param converter
+   *          - converts the description to markdown
+   *
+   * @return the markdown
+   */
+  public String get(String ruleKey, String html, UnaryOperator<String> converter) {
+    String key = getKey(ruleKey, html);
+    String markdown = sMarkdowns.get(key);
+    if (markdown == null && mDisk != null) {
+      byte[] value = mDisk.load(key);
+      if (value != null) {
+        markdown = new String(value, StandardCharsets.UTF_8);
+        put(key, markdown);
+      }
+    }
+    if (markdown != null) {
+      mHits.incrementAndGet();
+      return markdown;
+    }
+    mMisses.incrementAndGet();
+    markdown = converter.apply(html);
+    put(key, markdown);
+    if (mDisk != null) {
+      mDisk.store(key, markdown.getBytes(StandardCharsets.UTF_8));
+    }
+    return markdown;
+  }
+
+  /**
+   * @param ruleKey
+   *          - the rule key
+   * @param html
+   *          - the description
+   *
+   * @return the key of the description
+   */
+  public String getKey(String ruleKey, String html) {
+    return ChecksumUtil.checksum(ruleKey, html);
+  }
+
+  /**
+   * @return number of descriptions that didn't have to be converted
+   */
+  public int getHits() {
+    return mHits.get();
+  }
+
+  /**
+   * @return number of descriptions that were converted
+   */
+  public int getMisses() {
+    return mMisses.get();
+  }
+
+  @Override
+  public void close() {
+    if (mDisk != null) {
+      mDisk.close();
+    }
+  }
+
+  private static void put(String key, String markdown) {
+    if (sMarkdowns.size() >= MAX_ENTRIES) {
+      sMarkdowns.clear();
+    }
+    sMarkdowns.put(key, markdown);
+  }
+
+}
@@ -5,146 +5,432 @@ import static java.util.Map.ofEntries;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
 import java.io.Writer;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
 
-import org.apache.commons.text.StringEscapeUtils;
+import javax.annotation.Nullable;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.ProjectLayout;
-import org.gradle.api.file.RegularFile;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.provider.ProviderFactory;
-import org.sonarsource.sonarlint.core.client.api.standalone.StandaloneRuleDetails;
 import org.sonarsource.sonarlint.core.commons.IssueSeverity;
 import org.sonarsource.sonarlint.core.commons.RuleType;
 
 import se.solrike.sonarlint.Sonarlint;
 import se.solrike.sonarlint.SonarlintReport;
-import se.solrike.sonarlint.impl.util.SarifJsonBuilder;
-import se.solrike.sonarlint.impl.util.SpotbugsXmlBuilder;
+import se.solrike.sonarlint.impl.util.ChecksumUtil;
+import se.solrike.sonarlint.impl.util.HtmlReportWriter;
+import se.solrike.sonarlint.impl.util.NdjsonWriter;
+import se.solrike.sonarlint.impl.util.SarifSplitter;
+import se.solrike.sonarlint.impl.util.SarifWriter;
+import se.solrike.sonarlint.impl.util.SpotbugsXmlWriter;
 
 /**
  * @author Lucas Persson
  */
 public class ReportAction {
 
-  protected final Sonarlint mTask;
+  private static final String STAMP_FILE_NAME = "reports.stamp";
+  private static final int BUFFER_SIZE = 64 * 1024;
+  // the reports that use the rule details, e.g. the description of the rule
+  private static final Set<String> sRulesDetailsReports = Set.of("html", "xml", "sarif");
+
+  // report name : report file, only the enabled reports
+  protected final Map<String, File> mReports;
+  protected final File mProjectDir;
   protected final Logger mLogger;
-  protected final ProjectLayout mLayout;
-  protected final ProviderFactory mProviderFactory;
   protected Map<String, Render> mReportRenders;
+  // the reports that can be written while the analysis is running
+  protected Map<String, Function<Writer, IssueSink>> mStreamRenders;
+  private final Set<String> mStreamedReports = new HashSet<>();
+  private MarkdownCache mMarkdownCache = new MarkdownCache(null);
+  private Integer mSarifMaxResults;
+  private Integer mSarifMaxSizeMb;
+  private TaskMetrics mMetrics = new TaskMetrics();
 
   public ReportAction(Sonarlint task, Logger logger, ProjectLayout layout, ProviderFactory providerFactory) {
+    this(task.getName(), task.getReports().getAsMap(), task.getReportsDir(), logger, layout, providerFactory);
+  }
+
+  /**
+   * @param taskName
+   *          - name of the task that did the analysis, used for the default report file names
+   * @param reports
+   *          - the reports settings
+   * @param reportsDir
+   *          - the directory where reports will be default generated
+   */
+  public ReportAction(String taskName, Map<String, SonarlintReport> reports, DirectoryProperty reportsDir,
+      Logger logger, ProjectLayout layout, ProviderFactory providerFactory) {
+    this(getEnabledReports(taskName, reports, reportsDir), layout.getProjectDirectory().getAsFile(), logger);
+    SonarlintReport sarif = reports.get("sarif");
+    if (sarif != null) {
+      setSarifSplit(sarif.getMaxResults().getOrNull(), sarif.getMaxSizeMb().getOrNull());
+    }
+  }
+
+  /**
+   * @param reports
+   *          - the enabled reports, see {@link #getEnabledReports(String, Map, DirectoryProperty)}
+   * @param projectDir
+   *          - the project directory
+   */
+  public ReportAction(Map<String, File> reports, File projectDir, Logger logger) {
+    mReports = reports;
+    mProjectDir = projectDir;
     mLogger = logger;
-    mLayout = layout;
-    mProviderFactory = providerFactory;
-    mTask = task;
     mReportRenders = ofEntries(entry("text", this::renderTextReport), entry("html", this::renderHtmlReport),
-        entry("xml", this::renderXmlReport), entry("sarif", this::renderSarifReport));
+        entry("xml", this::renderXmlReport), entry("sarif", this::renderSarifReport),
+        entry("ndjson", this::renderNdjsonReport));
+    mStreamRenders = ofEntries(entry("text", this::streamTextReport),
+        entry("xml", writer -> new SpotbugsXmlWriter(writer, Set.of(mProjectDir))),
+        entry("sarif", writer -> new SarifWriter(writer, mProjectDir, mMarkdownCache)),
+        entry("ndjson", NdjsonWriter::new));
   }
 
-  @SuppressWarnings("all")
-  public void report(List<IssueEx> issues) {
-    Map<String, SonarlintReport> reports = mTask.getReports().getAsMap();
+  /**
+   * Keep the rule descriptions converted to markdown on disk between builds, see {@link MarkdownCache}. Otherwise they
+   * are only kept in memory.
+   *
+   * @param dir
+   *          - directory of the cache
+   */
+  public void setMarkdownCacheDir(File dir) {
+    mMarkdownCache = new MarkdownCache(new LocalAnalysisCache(dir, MarkdownCache.DISK_MAX_SIZE, mLogger));
+  }
+
+  /**
+   * Split the SARIF report into several files if it has more results or is larger than the max, see
+   * {@link SarifSplitter}. A split SARIF report is not streamed.
+   *
+   * @param maxResults
+   *          - max number of results per file or null for no limit
+   * @param maxSizeMb
+   *          - max size in MB per file or null for no limit
+   */
+  public void setSarifSplit(@Nullable Integer maxResults, @Nullable Integer maxSizeMb) {
+    mSarifMaxResults = maxResults;
+    mSarifMaxSizeMb = maxSizeMb;
+  }
 
-    // generate reports
+  /**
+   * @param metrics
+   *          - where the time to render each report is added
+   */
+  public void setMetrics(TaskMetrics metrics) {
+    mMetrics = metrics;
+  }
+
+  protected boolean isSarifSplit() {
+    return mSarifMaxResults != null || mSarifMaxSizeMb != null;
+  }
+
+  /**
+   * @return number of rule descriptions taken from the markdown cache
+   */
+  public int getMarkdownCacheHits() {
+    return mMarkdownCache.getHits();
+  }
+
+  /**
+   * @return number of rule descriptions converted to markdown
+   */
+  public int getMarkdownCacheMisses() {
+    return mMarkdownCache.getMisses();
+  }
+
+  /**
+   * Resolve the file of each enabled report.
+   *
+   * @param taskName
+   *          - name of the task that did the analysis, used for the default report file names
+   * @param reports
+   *          - the reports settings
+   * @param reportsDir
+   *          - the directory where reports will be default generated
+   *
+   * @return report name : report file
+   */
+  public static Map<String, File> getEnabledReports(String taskName, Map<String, SonarlintReport> reports,
+      DirectoryProperty reportsDir) {
+    Map<String, File> enabledReports = new TreeMap<>();
     reports.forEach((name, report) -> {
       if (report.getEnabled().getOrElse(Boolean.FALSE)) {
-        RegularFile file = report.getOutputLocation().getOrElse(getDefaultReportOutputLocation(name));
-        File parentDir = file.getAsFile().getParentFile();
-        parentDir.mkdirs();
+        File file = report.getOutputLocation().isPresent() ? report.getOutputLocation().get().getAsFile()
+            : new File(reportsDir.get().getAsFile(), taskName + "." + name);
+        enabledReports.put(name, file.getAbsoluteFile());
+      }
+    });
+    return enabledReports;
+  }
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file.getAsFile(), Charset.forName("UTF-8")))) {
-          mReportRenders.get(name).render(writer, issues);
+  /**
+   * Check if any of the reports use the rule details. If not the details don't need to be looked up.
+   *
+   * @param reportNames
+   *          - names of the enabled reports
+   *
+   * @return true if the issues need the rule details
+   */
+  public static boolean isRulesDetailsNeeded(Collection<String> reportNames) {
+    return reportNames.stream().anyMatch(sRulesDetailsReports::contains);
+  }
+
+  /**
+   * Open the enabled reports that can be written while the analysis is running. The issues given to the returned sink
+   * are written directly to those reports and {@link #report(List)} will skip them. The reports are done when the sink
+   * is closed.
+   *
+   * @return sink for the issues
+   */
+  public IssueSink openStreamingReports() {
+    List<IssueSink> sinks = new ArrayList<>();
+    mReports.forEach((name, file) -> {
+      Function<Writer, IssueSink> streamRender = mStreamRenders.get(name);
+      if (streamRender != null && !("sarif".equals(name) && isSarifSplit())) {
+        file.getParentFile().mkdirs();
+        try {
+          sinks.add(new StreamingReport(file, streamRender));
         }
         catch (IOException e) {
-          throw new RuntimeException(e);
+          throw new UncheckedIOException(e);
         }
-        mLogger.error("Report generated at: {}", file);
+        mStreamedReports.add(name);
+      }
+    });
+    return IssueSink.of(sinks);
+  }
+
+  /**
+   * Generate the enabled reports that were not streamed. The reports are rendered concurrently, each to its own file,
+   * from one shared view of the issues.
+   *
+   * @param issues
+   *          - the issues
+   */
+  public void report(List<IssueEx> issues) {
+    Map<String, File> reports = new TreeMap<>(mReports);
+    reports.keySet().removeAll(mStreamedReports);
+    if (reports.isEmpty()) {
+      closeMarkdownCache();
+      return;
+    }
+    ReportView view = new ReportView(issues);
+    if (reports.size() == 1) {
+      reports.forEach((name, file) -> render(name, file, view));
+    }
+    else {
+      ExecutorService executor = Executors.newFixedThreadPool(reports.size());
+      try {
+        List<Future<?>> futures = new ArrayList<>();
+        reports.forEach((name, file) -> futures.add(executor.submit(() -> render(name, file, view))));
+        for (Future<?> future : futures) {
+          future.get();
+        }
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new GradleException("Generating the reports was interrupted", e);
+      }
+      catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw new GradleException("Could not generate the reports", e.getCause());
+      }
+      finally {
+        executor.shutdownNow();
+      }
+    }
+    reports.values().forEach(file -> mLogger.error("Report generated at: {}", file));
+    closeMarkdownCache();
+  }
+
+  protected void closeMarkdownCache() {
+    mMarkdownCache.close();
+    if (getMarkdownCacheHits() + getMarkdownCacheMisses() > 0) {
+      mLogger.info("Rule descriptions converted to markdown: {}, taken from the cache: {}", getMarkdownCacheMisses(),
+          getMarkdownCacheHits());
+    }
+  }
+
+  protected void render(String name, File file, ReportView view) {
+    file.getParentFile().mkdirs();
+    mMetrics.time(TaskMetrics.REPORT + name, () -> {
+      if ("sarif".equals(name) && isSarifSplit()) {
+        renderSarifParts(file, view);
+        return;
+      }
+      try (Writer writer = openReport(file)) {
+        mReportRenders.get(name).render(writer, view);
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
       }
     });
   }
 
-  protected void renderTextReport(Writer writer, Iterable<IssueEx> issues) throws IOException {
-    for (IssueEx issue : issues) {
-      writer.write(String.format("%n%s %s %s %s at: %s:%d:%d%n%n", getIssueTypeIcon(issue.getType()),
-          getIssueSeverityIcon(issue.getSeverity()), issue.getRuleKey(), issue.getMessage(),
-          issue.getInputFileRelativePath(), issue.getStartLine(), issue.getStartLineOffset()));
+  /**
+   * Open a report file for writing. If the file name ends with <code>.gz</code> the report is gzipped.
+   *
+   * @param file
+   *          - the report file
+   *
+   * @return the writer
+   *
+   * @throws IOException
+   *           if the file can't be opened
+   */
+  protected Writer openReport(File file) throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    if (file.getName().endsWith(".gz")) {
+      try {
+        // sync flush so a streamed report can be read while the analysis is running
+        out = new GZIPOutputStream(out, BUFFER_SIZE, true);
+      }
+      catch (IOException e) {
+        out.close();
+        throw e;
+      }
     }
+    return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
   }
 
-  protected void renderHtmlReport(Writer writer, Collection<IssueEx> issues) throws IOException {
-    writer.write(getHtmlHeader());
+  /**
+   * Write a stamp next to the issues file telling which issues the reports have been generated from. If the stamp
+   * doesn't match, e.g. when the issues file was restored from the build cache, the reports needs to be generated
+   * again.
+   *
+   * @param issuesFile
+   *          - the issues file the reports were generated from
+   */
+  public void writeStamp(File issuesFile) {
+    try {
+      if (!issuesFile.isFile()) {
+        // e.g. the analysis was stopped, the reports are generated again by the next analysis
+        Files.deleteIfExists(getStampFile(issuesFile).toPath());
+        return;
+      }
+      Files.writeString(getStampFile(issuesFile).toPath(), getStamp(issuesFile), StandardCharsets.UTF_8);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
 
-    // summary
-    writer.write("<h1>Summary</h1>\n");
-    writer.write("<list>\n");
-    // type, count
-    Map<RuleType, Long> issueCountPerType = issues.stream()
-        .collect(Collectors.groupingBy(IssueEx::getType, Collectors.counting()));
-    for (Entry<RuleType, Long> issueType : issueCountPerType.entrySet()) {
-      writer.write(String.format("<li>%s: %d</li>%n", getIssueTypeIcon(issueType.getKey()), issueType.getValue()));
+  /**
+   * Check if the reports are generated from the issues file, in the same project directory and with the same report
+   * settings and that none of them have been removed.
+   *
+   * @param issuesFile
+   *          - the issues file
+   *
+   * @return true if the reports doesn't need to be generated again
+   */
+  public boolean isStampValid(File issuesFile) {
+    File stampFile = getStampFile(issuesFile);
+    try {
+      return stampFile.isFile() && mReports.values().stream().allMatch(File::isFile)
+          && Files.readString(stampFile.toPath(), StandardCharsets.UTF_8).equals(getStamp(issuesFile));
+    }
+    catch (IOException e) {
+      return false;
     }
-    writer.write("</list>\n");
+  }
+
+  protected File getStampFile(File issuesFile) {
+    return new File(issuesFile.getParentFile(), STAMP_FILE_NAME);
+  }
+
+  protected String getStamp(File issuesFile) throws IOException {
+    StringBuilder stamp = new StringBuilder();
+    stamp.append(ChecksumUtil.hashFile(issuesFile)).append('\n');
+    stamp.append(mProjectDir.getAbsolutePath()).append('\n');
+    mReports.forEach((name, file) -> stamp.append(name).append('=').append(file.getPath()).append('\n'));
+    return stamp.toString();
+  }
 
-    // TOC
-    writer.write("<h1>TOC</h1>\n" + "<list>\n");
-    for (IssueEx issue : issues) {
-      writer.write(String.format("<li>%s %s, <a href=\"#%d\">%s (%s)</a> at %s</li>%n",
-          getIssueTypeIcon(issue.getType()), getIssueSeverityIcon(issue.getSeverity()), issue.getId(),
-          StringEscapeUtils.escapeHtml4(issue.getMessage()), issue.getRuleKey(), issue.getFileName()));
+  protected void renderTextReport(Writer writer, ReportView view) throws IOException {
+    for (IssueEx issue : view.getIssues()) {
+      renderTextIssue(writer, issue);
     }
-    writer.write("</list>\n");
+  }
+
+  protected void renderTextIssue(Writer writer, IssueEx issue) throws IOException {
+    writer.write(String.format("%n%s %s %s %s at: %s:%d:%d%n%n", getIssueTypeIcon(issue.getType()),
+        getIssueSeverityIcon(issue.getSeverity()), issue.getRuleKey(), issue.getMessage(),
+        issue.getInputFileRelativePath(), issue.getStartLine(), issue.getStartLineOffset()));
+  }
 
-    // all issues
-    for (IssueEx issue : issues) {
-      writer.write(String.format("<h1 id=\"%d\">%s (%s)</h1>%n", issue.getId(),
-          StringEscapeUtils.escapeHtml4(issue.getMessage()), issue.getRuleKey()));
-      writer.write(String.format("<p>%s %s</p>%n", getIssueTypeIcon(issue.getType()),
-          getIssueSeverityIcon(issue.getSeverity())));
-      writer.write(String.format("<p>%s:%d:%d</p>%n", issue.getInputFileRelativePath(), issue.getStartLine(),
-          issue.getStartLineOffset()));
-      Optional<StandaloneRuleDetails> rulesDetails = issue.getRulesDetails();
-      if (rulesDetails.isPresent()) {
-        writer.write(rulesDetails.get().getHtmlDescription());
-        writer.write("\n");
-        writer.write("\n");
+  protected IssueSink streamTextReport(Writer writer) {
+    return issue -> {
+      try {
+        renderTextIssue(writer, issue);
       }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    };
+  }
+
+  protected void renderHtmlReport(Writer writer, ReportView view) throws IOException {
+    new HtmlReportWriter(writer, this::getIssueTypeIcon, this::getIssueSeverityIcon).write(view);
+  }
+
+  protected void renderSarifParts(File file, ReportView view) {
+    SarifSplitter splitter = new SarifSplitter(mProjectDir, mMarkdownCache,
+        mSarifMaxResults != null ? mSarifMaxResults : Integer.MAX_VALUE,
+        mSarifMaxSizeMb != null ? mSarifMaxSizeMb * 1024L * 1024L : Long.MAX_VALUE);
+    List<List<IssueEx>> parts = splitter.split(view.getIssues());
+    for (int i = 0; i < parts.size(); i++) {
+      try (Writer writer = openReport(SarifSplitter.getPartFile(file, i))) {
+        // only the rules of the results in the part
+        new SarifWriter(writer, mProjectDir, mMarkdownCache).write(parts.get(i));
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    // remove parts left from an earlier report with more parts
+    for (int i = parts.size(); SarifSplitter.getPartFile(file, i).delete(); i++) {
+      mLogger.debug("Removed {}", SarifSplitter.getPartFile(file, i));
+    }
+    if (parts.size() > 1) {
+      mLogger.lifecycle("The SARIF report was split into {} files", parts.size());
     }
-    writer.write("</body>\n</html>");
   }
 
-  protected String getHtmlHeader() {
-    // @formatter:off
-    return "<!DOCTYPE html PUBLIC \"-//W3C//DTD HTML 4.01 Transitional//EN\" \"http://www.w3.org/TR/html4/loose.dtd\">\n"
-        + "<html lang=\"en\">\n"
-        + "<head>\n"
-        + "  <meta charset=\"UTF-8\">\n"
-        + "  <title>SonarLint analysis report</title>\n"
-        + "  <style type=\"text/css\">\n"
-        + "    h1 {\n"
-        + "      background-color: LightGray;\n"
-        + "    }\n"
-        + "  </style>\n"
-        + "</head>\n"
-        + "<body>\n";
-    // @formatter:on
+  protected void renderNdjsonReport(Writer writer, ReportView view) {
+    new NdjsonWriter(writer).write(view.getIssues());
   }
 
-  protected void renderXmlReport(Writer writer, Collection<IssueEx> issues) {
-    new SpotbugsXmlBuilder().generateBugCollection(writer, issues, Set.of(mLayout.getProjectDirectory().getAsFile()));
+  protected void renderXmlReport(Writer writer, ReportView view) {
+    new SpotbugsXmlWriter(writer, Set.of(mProjectDir)).write(view.getIssues());
   }
 
-  protected void renderSarifReport(Writer writer, Collection<IssueEx> issues) {
-    new SarifJsonBuilder().generateBugCollection(writer, issues, mLayout.getProjectDirectory().getAsFile());
+  protected void renderSarifReport(Writer writer, ReportView view) {
+    new SarifWriter(writer, mProjectDir, mMarkdownCache).write(view.getIssues(), view.getRules().values());
   }
 
   // https://www.utf8-chartable.de/unicode-utf8-table.pl
@@ -181,14 +467,62 @@ public class ReportAction {
     return sIssueSeverityIcon.get(issueSeverity);
   }
 
-  protected RegularFile getDefaultReportOutputLocation(String reportName) {
-    File file = new File(mTask.getReportsDir().get().getAsFile(), mTask.getName() + "." + reportName);
-    String filePath = file.getAbsolutePath();
-    return mLayout.getProjectDirectory().file(filePath);
+  /**
+   * A report file written while the analysis is running. The file is flushed at most once a second so the issues can
+   * be seen before the analysis is done without flushing for each issue.
+   */
+  protected class StreamingReport implements IssueSink {
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    private final File mFile;
+    private final Writer mWriter;
+    private final IssueSink mSink;
+    private long mLastFlush = System.currentTimeMillis();
+
+    protected StreamingReport(File file, Function<Writer, IssueSink> streamRender) throws IOException {
+      mFile = file;
+      mWriter = openReport(file);
+      mSink = streamRender.apply(mWriter);
+    }
+
+    @Override
+    public void accept(IssueEx issue) {
+      mSink.accept(issue);
+      long now = System.currentTimeMillis();
+      if (now - mLastFlush >= FLUSH_INTERVAL_MILLIS) {
+        mLastFlush = now;
+        try {
+          mWriter.flush();
+        }
+        catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+
+    @Override
+    public void close() {
+      try {
+        mSink.close();
+      }
+      finally {
+        closeWriter();
+      }
+      mLogger.error("Report generated at: {}", mFile);
+    }
+
+    private void closeWriter() {
+      try {
+        mWriter.close();
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
   }
 
   @FunctionalInterface
   public interface Render {
-    void render(Writer writer, List<IssueEx> issues) throws IOException;
+    void render(Writer writer, ReportView view) throws IOException;
   }
 }
@@ -0,0 +1,57 @@
+package se.solrike.sonarlint.impl;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sonarsource.sonarlint.core.commons.RuleType;
+
+/**
+ * Read-only view of the issues shared by all reports. What more than one report needs is computed once here so the
+ * reports can be rendered concurrently without repeating the work.
+ *
+ * @author Lucas Persson
+ */
+public class ReportView {
+
+  private final List<IssueEx> mIssues;
+  private final Map<RuleType, Long> mIssueCountPerType;
+  private final Map<String, IssueEx> mRules;
+
+  /**
+   * @param issues
+   *          - the issues, must not be modified while the view is used
+   */
+  public ReportView(List<IssueEx> issues) {
+    mIssues = Collections.unmodifiableList(issues);
+    Map<RuleType, Long> issueCountPerType = new EnumMap<>(RuleType.class);
+    Map<String, IssueEx> rules = new LinkedHashMap<>();
+    for (IssueEx issue : issues) {
+      issueCountPerType.merge(issue.getType(), 1L, Long::sum);
+      rules.putIfAbsent(issue.getRuleKey(), issue);
+    }
+    mIssueCountPerType = Collections.unmodifiableMap(issueCountPerType);
+    mRules = Collections.unmodifiableMap(rules);
+  }
+
+  public List<IssueEx> getIssues() {
+    return mIssues;
+  }
+
+  /**
+   * @return type : number of issues of that type
+   */
+  public Map<RuleType, Long> getIssueCountPerType() {
+    return mIssueCountPerType;
+  }
+
+  /**
+   * @return rule key : the first issue of the rule, in the order the rules were first found
+   */
+  public Map<String, IssueEx> getRules() {
+    return mRules;
+  }
+
+}
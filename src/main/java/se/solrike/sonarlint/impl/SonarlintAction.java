@@ -1,38 +1,54 @@
 package se.solrike.sonarlint.impl;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
 
 import org.gradle.api.GradleException;
 import org.gradle.api.Project;
-import org.gradle.api.file.ProjectLayout;
 import org.gradle.api.logging.Logger;
-import org.gradle.api.plugins.JavaPluginExtension;
-import org.gradle.api.provider.SetProperty;
 import org.sonarsource.sonarlint.core.StandaloneSonarLintEngineImpl;
 import org.sonarsource.sonarlint.core.analysis.api.AnalysisResults;
 import org.sonarsource.sonarlint.core.client.api.common.PluginDetails;
+import org.sonarsource.sonarlint.core.client.api.common.analysis.Issue;
 import org.sonarsource.sonarlint.core.client.api.standalone.StandaloneAnalysisConfiguration;
 import org.sonarsource.sonarlint.core.client.api.standalone.StandaloneGlobalConfiguration;
 import org.sonarsource.sonarlint.core.client.api.standalone.StandaloneGlobalConfiguration.Builder;
+import org.sonarsource.sonarlint.core.client.api.standalone.StandaloneRuleDetails;
 import org.sonarsource.sonarlint.core.client.api.standalone.StandaloneSonarLintEngine;
 import org.sonarsource.sonarlint.core.commons.Language;
 import org.sonarsource.sonarlint.core.commons.RuleKey;
 import org.sonarsource.sonarlint.core.commons.Version;
+import org.sonarsource.sonarlint.core.commons.progress.CanceledException;
 import org.sonarsource.sonarlint.core.plugin.commons.SkipReason;
 
 import se.solrike.sonarlint.Sonarlint;
+import se.solrike.sonarlint.impl.SonarlintEngineService.EngineKey;
 import se.solrike.sonarlint.impl.util.NodePluginUtil;
 
 /**
@@ -40,14 +56,26 @@ import se.solrike.sonarlint.impl.util.NodePluginUtil;
  */
 public class SonarlintAction {
 
+  public static final int DEFAULT_ANALYSIS_CACHE_MAX_SIZE_MB = 512;
+
   private Path mNodeExec;
   private String mNodeVersion;
-  @Nullable
-  private final JavaPluginExtension mJavaExtension;
+  private TaskMetrics mMetrics = new TaskMetrics();
+  // true if the analysis was stopped since there were too many issues
+  private boolean mIsStopped;
+
+  /**
+   * Used when the node settings are given by the analysis parameters, e.g. in a worker process.
+   */
+  public SonarlintAction() {
+    // nothing
+  }
 
   public SonarlintAction(Sonarlint task) {
-    Project project = task.getProject();
-    mJavaExtension = project.getExtensions().findByType(JavaPluginExtension.class);
+    this(task.getProject());
+  }
+
+  public SonarlintAction(Project project) {
     if (project.getExtensions().findByName("node") != null) {
       NodePluginUtil nodeUtil = new NodePluginUtil();
       if (nodeUtil.getDownload(project)) {
@@ -58,80 +86,496 @@ public class SonarlintAction {
     }
   }
 
+  public Path getNodeExec() {
+    return mNodeExec;
+  }
+
+  public String getNodeVersion() {
+    return mNodeVersion;
+  }
+
+  /**
+   * @param metrics
+   *          - where the time of the phases of the analysis, the analysed files and the found issues are added
+   */
+  public void setMetrics(TaskMetrics metrics) {
+    mMetrics = metrics;
+  }
+
+  /**
+   * Write the metrics files that are enabled in the parameters.
+   *
+   * @param params
+   *          - the metrics files and the task path
+   * @param metrics
+   *          - the metrics of the task
+   * @param logger
+   *          - the logger
+   */
+  public void writeMetrics(SonarlintWorkAction.Params params, TaskMetrics metrics, Logger logger) {
+    logger.info("Metrics: {}", metrics);
+    String taskPath = params.getTaskPath().getOrElse("");
+    if (params.getMetricsFile().isPresent()) {
+      metrics.writeJson(params.getMetricsFile().get().getAsFile(), taskPath);
+    }
+    if (params.getPrometheusFile().isPresent()) {
+      metrics.writePrometheus(params.getPrometheusFile().get().getAsFile(), taskPath);
+    }
+  }
+
   /**
-   * Execute the task by calling to SonarLint engine. And generate reports.
+   * Execute the analysis by calling to SonarLint engine. If the analysis is incremental only the added and modified
+   * files are analysed and the issues for the other files are taken from the previous run. The issues are written to
+   * the issues file.
    *
-   * @param task
-   *          - the gradle task
+   * @param params
+   *          - the analysis parameters
+   * @param enginePool
+   *          - the pool of warm engines or null to create a new engine
+   * @param logger
+   *          - the logger
    *
    * @return list of sonarlint issues
    */
-  public List<IssueEx> run(Sonarlint task, SetProperty<File> plugins, ProjectLayout layout) {
-    return analyze(task, task.getLogger(), plugins, layout);
+  public List<IssueEx> run(SonarlintWorkAction.Params params, @Nullable EnginePool enginePool, Logger logger) {
+    return run(params, enginePool, null, logger);
+  }
+
+  /**
+   * Same as {@link #run(SonarlintWorkAction.Params, EnginePool, Logger)} but each issue is also given to the sink as
+   * soon as it is found. The issues from the previous run and from the analysis cache are given first. If the build
+   * will fail on the number of issues the analysis is stopped as soon as there are too many issues.
+   *
+   * @param params
+   *          - the analysis parameters
+   * @param enginePool
+   *          - the pool of warm engines or null to create a new engine
+   * @param sink
+   *          - the sink for the issues or null to not stream the issues
+   * @param logger
+   *          - the logger
+   *
+   * @return list of sonarlint issues
+   */
+  public List<IssueEx> run(SonarlintWorkAction.Params params, @Nullable EnginePool enginePool,
+      @Nullable IssueSink sink, Logger logger) {
+    Path projectDir = params.getProjectDir().get().getAsFile().toPath();
+    File issuesFile = params.getIssuesFile().get().getAsFile();
+    // the issues file only contains the issues that are reported
+    IssueStore issueStore = new IssueStore(projectDir, params.getMinSeverity().getOrNull());
+
+    Set<File> sourceFiles;
+    if (params.getIncremental().getOrElse(Boolean.FALSE) && issueStore.read(issuesFile)) {
+      sourceFiles = new HashSet<>();
+      for (String changedFile : params.getChangedFiles().get()) {
+        issueStore.removeFile(changedFile);
+        File file = projectDir.resolve(changedFile).toFile();
+        if (file.isFile()) {
+          sourceFiles.add(file);
+        }
+      }
+      issueStore.removeGlobalIssues();
+      logger.info("Incremental analysis of {} added or modified file(s)", sourceFiles.size());
+    }
+    else {
+      issueStore.clear();
+      sourceFiles = params.getSourceFiles().getFiles();
+    }
+
+    File baselineFile = params.getBaselineFile().getAsFile().getOrNull();
+    boolean writeBaseline = params.getWriteBaseline().getOrElse(Boolean.FALSE);
+    if (writeBaseline && baselineFile == null) {
+      throw new GradleException("writeBaseline is set but not baselineFile");
+    }
+    // in streaming mode only the new issues are given to the sink
+    Predicate<IssueEx> isReported = issue -> true;
+    if (writeBaseline) {
+      isReported = issue -> false;
+    }
+    else if (baselineFile != null && baselineFile.isFile()) {
+      isReported = Baseline.read(baselineFile).matcher()::isNew;
+    }
+
+    List<IssueEx> issues = analyze(params, enginePool, logger, sourceFiles, issueStore, sink, isReported);
+    File issuesStoreFile = params.getIssuesStoreFile().isPresent() ? params.getIssuesStoreFile().get().getAsFile()
+        : null;
+    if (mIsStopped) {
+      // not all files were analysed so a later incremental analysis can't start from these issues
+      deleteFile(issuesFile);
+      if (issuesStoreFile != null) {
+        deleteFile(issuesStoreFile);
+      }
+    }
+    else {
+      issueStore.write(issuesFile);
+      if (issuesStoreFile != null) {
+        BinaryIssueStore.write(issuesStoreFile, issueStore.getIssues());
+      }
+    }
+    if (writeBaseline) {
+      Baseline.write(baselineFile, issues);
+      logger.lifecycle("Wrote {} issue(s) to the baseline {}", issues.size(), baselineFile);
+    }
+    List<IssueEx> reportedIssues = applyBaseline(issues, baselineFile, logger);
+    mMetrics.setIssues(reportedIssues.size());
+    return reportedIssues;
+  }
+
+  private static void deleteFile(File file) {
+    try {
+      Files.deleteIfExists(file.toPath());
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Remove the issues that are in the baseline.
+   *
+   * @param issues
+   *          - the issues
+   * @param baselineFile
+   *          - the baseline or null if there is none
+   * @param logger
+   *          - the logger
+   *
+   * @return the issues not in the baseline, all issues if the baseline file doesn't exist
+   */
+  public List<IssueEx> applyBaseline(List<IssueEx> issues, @Nullable File baselineFile, Logger logger) {
+    if (baselineFile == null || !baselineFile.isFile()) {
+      return issues;
+    }
+    List<IssueEx> newIssues = Baseline.read(baselineFile).getNewIssues(issues);
+    logger.lifecycle("{} issue(s) in the baseline were not reported", issues.size() - newIssues.size());
+    return newIssues;
   }
 
   @SuppressWarnings({ "java:S1874", "deprecation" })
-  protected List<IssueEx> analyze(Sonarlint task, Logger logger, SetProperty<File> plugins, ProjectLayout layout) {
+  protected List<IssueEx> analyze(SonarlintWorkAction.Params params, @Nullable EnginePool enginePool, Logger logger,
+      Set<File> sourceFiles, IssueStore issueStore, @Nullable IssueSink sink, Predicate<IssueEx> isReported) {
     Map<String, String> sonarProperties = new HashMap<>();
 
-    // Java sourceCompatibility needs to be read so project is actually configured
-    if (mJavaExtension != null) {
-      String sourceCompatibility = mJavaExtension.getSourceCompatibility().toString();
-      sonarProperties.put("sonar.java.source", sourceCompatibility);
+    if (params.getJavaSource().isPresent()) {
+      sonarProperties.put("sonar.java.source", params.getJavaSource().get());
     }
 
-    Set<File> compileClasspath = Collections.emptySet();
-    if (task.getCompileClasspath() != null) {
-      compileClasspath = task.getCompileClasspath().getFiles();
-    }
-    Set<File> classFiles = Collections.emptySet();
-    if (task.getClassFiles() != null) {
-      classFiles = task.getClassFiles().getFiles();
+    Collection<File> compileClasspath = params.getCompileClasspath().getFiles();
+    Set<File> classFiles = params.getClassFiles().getFiles();
+    if (params.getSlimClasspath().getOrElse(Boolean.FALSE) && !compileClasspath.isEmpty()) {
+      File cacheDir = params.getClasspathCacheDir().isPresent() ? params.getClasspathCacheDir().get().getAsFile()
+          : null;
+      compileClasspath = new ClasspathSlimmer(cacheDir, logger).slim(compileClasspath, classFiles,
+          params.getSourceFiles().getFiles());
     }
     String libs = compileClasspath.stream().filter(File::exists).map(File::getPath).collect(Collectors.joining(","));
     sonarProperties.put("sonar.java.libraries", libs);
     String binaries = classFiles.stream().filter(File::exists).map(File::getPath).collect(Collectors.joining(","));
     sonarProperties.put("sonar.java.binaries", binaries);
-    boolean isTestSource = task.getIsTestSource().getOrElse(Boolean.FALSE);
+    boolean isTestSource = params.getIsTestSource().getOrElse(Boolean.FALSE);
 
     if (isTestSource) {
       sonarProperties.put("sonar.java.test.libraries", libs);
       sonarProperties.put("sonar.java.test.binaries", binaries);
     }
 
-    Set<File> sourceFiles = task.getSource().getFiles();
-    Set<String> excludeRules = task.getExcludeRules().get();
-    Set<String> includeRules = task.getIncludeRules().get();
-    Map<String, Map<String, String>> ruleParameters = task.getRuleParameters().get();
+    Set<String> excludeRules = params.getExcludeRules().get();
+    Set<String> includeRules = params.getIncludeRules().get();
+    Map<String, Map<String, String>> ruleParameters = params.getRuleParameters().get();
 
-    Path[] pluginPaths = plugins.get().stream().map(File::toPath).toArray(Path[]::new);
-    Path projectDir = layout.getProjectDirectory().getAsFile().toPath();
-    Builder builder = StandaloneGlobalConfiguration.builder()
-        .addEnabledLanguages(Language.values())
-        .addPlugins(pluginPaths)
-        .setLogOutput(new GradleClientLogOutput(logger))
-        .setWorkDir(layout.getBuildDirectory().getAsFile().get().toPath().resolve("sonarlint"))
-        .setSonarLintUserHome(projectDir);
+    Path[] pluginPaths = mMetrics.time(TaskMetrics.PLUGIN_LOADING, () -> getPluginPaths(params));
+    Path projectDir = params.getProjectDir().get().getAsFile().toPath();
 
-    if (mNodeExec != null && mNodeVersion != null) {
-      builder.setNodeJs(mNodeExec, Version.create(mNodeVersion));
+    Set<File> filesToAnalyze = sourceFiles;
+    if (params.getAutoExcludeSources().getOrElse(Boolean.FALSE)) {
+      SourceFileFilter sourceFileFilter = new SourceFileFilter(projectDir, params.getGeneratedSourcePatterns().get(),
+          params.getMaxFileSizeKb().getOrElse(SourceFileFilter.DEFAULT_MAX_FILE_SIZE_KB) * 1024L);
+      filesToAnalyze = sourceFileFilter.filter(sourceFiles, logger);
+      String summary = sourceFileFilter.getSummary();
+      if (summary != null) {
+        logger.lifecycle(summary);
+      }
     }
 
-    List<ClientInputFileImpl> fileList = sourceFiles.stream()
-        .map(f -> new ClientInputFileImpl(projectDir, f.toPath(), isTestSource, StandardCharsets.UTF_8))
+    AnalysisResultCache resultCache = null;
+    if (params.getAnalysisCacheEnabled().getOrElse(Boolean.FALSE)) {
+      // the classes of the analysed sources change with each edit and would make every file miss the cache
+      String fingerprint = AnalysisResultCache.fingerprint(includeRules, excludeRules, ruleParameters,
+          List.of(pluginPaths), compileClasspath, sonarProperties.get("sonar.java.source"),
+          params.getNodeVersion().getOrNull(), isTestSource);
+      resultCache = new AnalysisResultCache(createAnalysisCacheBackends(params, logger), projectDir, fingerprint,
+          logger);
+      filesToAnalyze = resultCache.loadCachedResults(filesToAnalyze, issueStore);
+    }
+
+    // shared by all shards so each file is only read once
+    SourceContentCache contentCache = new SourceContentCache();
+    // only the plugins and languages of the source files are loaded, the same for all files of the task
+    LanguageDetector languageDetector = new LanguageDetector();
+    Set<Language> languages = languageDetector.detectLanguages(params.getSourceFiles().getFiles());
+    List<Path> enginePlugins = mMetrics.time(TaskMetrics.PLUGIN_LOADING,
+        () -> languageDetector.selectPlugins(List.of(pluginPaths), languages));
+    Set<Language> enabledLanguages = languageDetector.getEnabledLanguages(enginePlugins, languages);
+    logger.info("Enabled languages: {}, plugins: {}", enabledLanguages != null ? enabledLanguages : "all",
+        enginePlugins);
+    if (enabledLanguages != null) {
+      Set<File> analysableFiles = filesToAnalyze.stream()
+          .filter(f -> languageDetector.isAnalysable(f, enabledLanguages))
+          .collect(Collectors.toSet());
+      if (analysableFiles.size() < filesToAnalyze.size()) {
+        logger.info("{} file(s) that no plugin can analyse were skipped",
+            filesToAnalyze.size() - analysableFiles.size());
+      }
+      filesToAnalyze = analysableFiles;
+    }
+
+    List<ClientInputFileImpl> fileList = filesToAnalyze.stream()
+        .map(f -> new ClientInputFileImpl(projectDir, f.toPath(), isTestSource, StandardCharsets.UTF_8, contentCache))
         .collect(Collectors.toList());
+    mMetrics.addFilesAnalyzed(fileList.size(), filesToAnalyze.stream().mapToLong(File::length).sum());
+
+    List<StandaloneAnalysisConfiguration> analysisConfigurations = new ArrayList<>();
+    for (List<ClientInputFileImpl> shard : createShards(fileList, params.getParallelism().getOrElse(1))) {
+      analysisConfigurations.add(StandaloneAnalysisConfiguration.builder()
+          .setBaseDir(projectDir)
+          .addInputFiles(shard)
+          .addExcludedRules(getRuleKeys(excludeRules))
+          .addIncludedRules(getRuleKeys(includeRules))
+          .addRuleParameters(getRuleParameters(ruleParameters))
+          .putAllExtraProperties(sonarProperties)
+          .build());
+    }
+
+    EngineKey engineKey = createEngineKey(params, enginePlugins);
+    Path workDir = params.getWorkDir().get().getAsFile().toPath();
+    Path userHome = params.getUserHome().get().getAsFile().toPath();
+    StandaloneSonarLintEngine engine = mMetrics.time(TaskMetrics.ENGINE_CREATION,
+        () -> borrowEngine(enginePool, engineKey, logger, workDir, userHome));
+    try {
+      checkPlugins(engine);
+      // in streaming mode one collector gives the issues of all shards to the sink
+      IssueCollector streamingCollector = null;
+      IssueGate gate = null;
+      if (sink != null) {
+        List<IssueSink> sinks = new ArrayList<>(List.of(sink));
+        if (!params.getIgnoreFailures().getOrElse(Boolean.FALSE)) {
+          gate = new IssueGate(params.getMaxIssues().getOrElse(0));
+          sinks.add(gate);
+        }
+        Function<String, Optional<StandaloneRuleDetails>> rulesDetails = null;
+        if (ReportAction.isRulesDetailsNeeded(params.getReports().get().keySet())) {
+          // only called by the collector while it holds its lock
+          Map<String, Optional<StandaloneRuleDetails>> cachedRulesDetails = new HashMap<>();
+          rulesDetails = ruleKey -> cachedRulesDetails.computeIfAbsent(ruleKey, engine::getRuleDetails);
+        }
+        streamingCollector = new IssueCollector(projectDir, params.getMinSeverity().getOrNull(),
+            IssueSink.filter(IssueSink.of(sinks), isReported), rulesDetails);
+        issueStore.getIssues().forEach(streamingCollector::replay);
+      }
+      BooleanSupplier cancel = gate != null ? gate::isExceeded : () -> false;
+
+      // one collector for all shards so that a global issue found by each shard is only collected once
+      IssueCollector collector = streamingCollector != null ? streamingCollector : new IssueCollector();
+      mMetrics.time(TaskMetrics.ANALYSIS, () -> {
+        if (analysisConfigurations.size() > 1) {
+          logger.info("Analysing {} file(s) in {} shards", fileList.size(), analysisConfigurations.size());
+          analyzeShards(logger, engine, analysisConfigurations,
+              () -> borrowEngine(enginePool, engineKey, logger, workDir, userHome),
+              e -> releaseEngine(enginePool, engineKey, e, logger), collector, cancel);
+        }
+        else {
+          analyze(logger, engine, analysisConfigurations.get(0), collector, cancel);
+        }
+      });
+      List<Issue> foundIssues = collector.getIssues();
+      mMetrics.addIssuesFound(foundIssues.size());
+      issueStore.addAll(foundIssues);
+      mIsStopped = gate != null && gate.isExceeded();
+      if (mIsStopped) {
+        // not all files have been analysed so the results can't be cached
+        logger.lifecycle("The analysis was stopped since more than {} issue(s) were found",
+            params.getMaxIssues().getOrElse(0));
+      }
+      else if (resultCache != null) {
+        resultCache.storeResults(foundIssues);
+      }
+
+      List<IssueEx> issues = toIssues(issueStore);
+      if (ReportAction.isRulesDetailsNeeded(params.getReports().get().keySet())) {
+        mMetrics.time(TaskMetrics.RULES_DETAILS, () -> setRulesDetails(issues, engine));
+      }
+
+      logger.debug("Issues: {}", issues);
+
+      return issues;
+    }
+    finally {
+      logger.info("Source content: {}", contentCache);
+      contentCache.clear();
+      if (resultCache != null) {
+        resultCache.close();
+      }
+      releaseEngine(enginePool, engineKey, engine, logger);
+    }
+  }
+
+  /**
+   * Split the files into shards of about the same total size. The largest files are placed first, each in the shard
+   * with the least total size so far. Given the same files the shards are always the same.
+   *
+   * @param files
+   *          - the files to analyse
+   * @param parallelism
+   *          - max number of shards
+   *
+   * @return the shards, at least one
+   */
+  protected static List<List<ClientInputFileImpl>> createShards(List<ClientInputFileImpl> files, int parallelism) {
+    int shardCount = Math.max(1, Math.min(parallelism, files.size()));
+    List<List<ClientInputFileImpl>> shards = new ArrayList<>(shardCount);
+    long[] shardSizes = new long[shardCount];
+    for (int i = 0; i < shardCount; i++) {
+      shards.add(new ArrayList<>());
+    }
+    Map<ClientInputFileImpl, Long> fileSizes = new HashMap<>();
+    files.forEach(f -> fileSizes.put(f, new File(f.uri()).length()));
+    List<ClientInputFileImpl> sortedFiles = new ArrayList<>(files);
+    sortedFiles.sort(Comparator.<ClientInputFileImpl, Long> comparing(fileSizes::get)
+        .reversed()
+        .thenComparing(ClientInputFileImpl::relativePath));
+    for (ClientInputFileImpl file : sortedFiles) {
+      int smallest = 0;
+      for (int i = 1; i < shardCount; i++) {
+        if (shardSizes[i] < shardSizes[smallest]) {
+          smallest = i;
+        }
+      }
+      shards.get(smallest).add(file);
+      shardSizes[smallest] += fileSizes.get(file);
+    }
+    shards.forEach(shard -> shard.sort(Comparator.comparing(ClientInputFileImpl::relativePath)));
+    return shards;
+  }
+
+  /**
+   * Analyse the shards concurrently. The first shard is analysed by the given engine and the others by engines from
+   * the engine supplier since an engine can only run one analysis at a time.
+   *
+   * @param collector
+   *          - the collector of all shards, so a global issue found by each shard is only collected once
+   */
+  protected void analyzeShards(Logger logger, StandaloneSonarLintEngine engine,
+      List<StandaloneAnalysisConfiguration> analysisConfigurations, Supplier<StandaloneSonarLintEngine> engineSupplier,
+      Consumer<StandaloneSonarLintEngine> engineReleaser, IssueCollector collector, BooleanSupplier cancel) {
+    ExecutorService executor = Executors.newFixedThreadPool(analysisConfigurations.size());
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      futures.add(executor.submit(() -> analyze(logger, engine, analysisConfigurations.get(0), collector, cancel)));
+      for (int i = 1; i < analysisConfigurations.size(); i++) {
+        StandaloneAnalysisConfiguration analysisConfiguration = analysisConfigurations.get(i);
+        futures.add(executor.submit(() -> {
+          StandaloneSonarLintEngine shardEngine = engineSupplier.get();
+          try {
+            analyze(logger, shardEngine, analysisConfiguration, collector, cancel);
+          }
+          finally {
+            engineReleaser.accept(shardEngine);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new GradleException("Sonarlint analysis was interrupted", e);
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new GradleException("Sonarlint analysis failed", e.getCause());
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
 
-    StandaloneAnalysisConfiguration analysisConfiguration = StandaloneAnalysisConfiguration.builder()
-        .setBaseDir(projectDir)
-        .addInputFiles(fileList)
-        .addExcludedRules(getRuleKeys(excludeRules))
-        .addIncludedRules(getRuleKeys(includeRules))
-        .addRuleParameters(getRuleParameters(ruleParameters))
-        .putAllExtraProperties(sonarProperties)
-        .build();
-
-    StandaloneGlobalConfiguration globalConfiguration = builder.build();
-    StandaloneSonarLintEngine engine = new StandaloneSonarLintEngineImpl(globalConfiguration);
+  /**
+   * Read the issues from the issues file without the rule details.
+   *
+   * @param issuesFile
+   *          - the issues file
+   * @param projectDir
+   *          - the project directory
+   *
+   * @return list of sonarlint issues
+   */
+  public List<IssueEx> readIssues(File issuesFile, File projectDir) {
+    IssueStore issueStore = new IssueStore(projectDir.toPath());
+    if (!issueStore.read(issuesFile)) {
+      throw new GradleException("Could not read the Sonarlint issues from " + issuesFile);
+    }
+    return toIssues(issueStore);
+  }
+
+  /**
+   * Load the issues from the issues file written by a previous execution of the task, e.g. when the task output was
+   * taken from the build cache. The rule details are set on the issues if an enabled report needs them.
+   *
+   * @param params
+   *          - the issues file, project directory and everything needed to create an engine
+   * @param enginePool
+   *          - the pool of warm engines or null to create a new engine
+   *
+   * @return list of sonarlint issues
+   */
+  public List<IssueEx> loadIssues(SonarlintWorkAction.Params params, @Nullable EnginePool enginePool, Logger logger) {
+    List<IssueEx> issues = readIssues(params.getIssuesFile().get().getAsFile(),
+        params.getProjectDir().get().getAsFile());
+    issues = applyBaseline(issues, params.getBaselineFile().getAsFile().getOrNull(), logger);
+    if (!issues.isEmpty() && ReportAction.isRulesDetailsNeeded(params.getReports().get().keySet())) {
+      // the plugins are selected like in the analysis so the engine of the analysis is borrowed
+      LanguageDetector languageDetector = new LanguageDetector();
+      Set<File> sourceFiles = params.getSourceFiles().getFiles();
+      List<Path> enginePlugins = mMetrics.time(TaskMetrics.PLUGIN_LOADING, () -> {
+        Path[] pluginPaths = getPluginPaths(params);
+        return sourceFiles.isEmpty() ? List.of(pluginPaths)
+            : languageDetector.selectPlugins(List.of(pluginPaths), languageDetector.detectLanguages(sourceFiles));
+      });
+      EngineKey engineKey = createEngineKey(params, enginePlugins);
+      StandaloneSonarLintEngine engine = mMetrics.time(TaskMetrics.ENGINE_CREATION, () -> borrowEngine(enginePool,
+          engineKey, logger, params.getWorkDir().get().getAsFile().toPath(),
+          params.getUserHome().get().getAsFile().toPath()));
+      try {
+        List<IssueEx> detailedIssues = issues;
+        mMetrics.time(TaskMetrics.RULES_DETAILS, () -> setRulesDetails(detailedIssues, engine));
+      }
+      finally {
+        releaseEngine(enginePool, engineKey, engine, logger);
+      }
+    }
+    return issues;
+  }
+
+  // the engine enables all languages of its plugins so tasks with the same plugins share the engines
+  protected EngineKey createEngineKey(SonarlintWorkAction.Params params, List<Path> enginePlugins) {
+    Path nodeExec = params.getNodeExec().isPresent() ? Path.of(params.getNodeExec().get()) : null;
+    return new EngineKey(Set.copyOf(enginePlugins), nodeExec, params.getNodeVersion().getOrNull());
+  }
+
+  /**
+   * The plugins to load. They are loaded from where Gradle resolved them, e.g. its artifact cache, since the engine
+   * doesn't extract the jars.
+   *
+   * @return the plugin jars
+   */
+  protected Path[] getPluginPaths(SonarlintWorkAction.Params params) {
+    return params.getPlugins().getFiles().stream().map(File::toPath).toArray(Path[]::new);
+  }
+
+  protected void checkPlugins(StandaloneSonarLintEngine engine) {
     // check for skipped plugins
     Collection<PluginDetails> pluginDetails = engine.getPluginDetails();
     pluginDetails.forEach(details -> {
@@ -147,31 +591,102 @@ public class SonarlintAction {
         throw new GradleException(errorMessage);
       }
     });
+  }
 
-    IssueCollector collector = new IssueCollector();
-    AnalysisResults results = engine.analyze(analysisConfiguration, collector, new GradleClientLogOutput(logger),
-        new GradleProgressMonitor(logger));
+  protected void analyze(Logger logger, StandaloneSonarLintEngine engine,
+      StandaloneAnalysisConfiguration analysisConfiguration, IssueCollector collector, BooleanSupplier cancel) {
+    if (analysisConfiguration.inputFiles().isEmpty()) {
+      return;
+    }
+    try {
+      AnalysisResults results = engine.analyze(analysisConfiguration, collector, new GradleClientLogOutput(logger),
+          new GradleProgressMonitor(logger, cancel));
+      logger.debug("Files: {}", results.indexedFileCount());
+    }
+    catch (CanceledException e) {
+      logger.info("Sonarlint analysis was canceled");
+    }
+  }
 
-    List<IssueEx> issues = collector.getIssues();
-    issues.forEach(i -> i.setRulesDetails(engine.getRuleDetails(i.getRuleKey())));
+  protected List<IssueEx> toIssues(IssueStore issueStore) {
+    List<IssueRecord> issueRecords = issueStore.getIssues();
+    List<IssueEx> issues = new ArrayList<>(issueRecords.size());
+    for (IssueRecord issueRecord : issueRecords) {
+      issues.add(new IssueEx(issues.size(), issueRecord));
+    }
+    return issues;
+  }
 
-    if (task.getMinSeverity().getOrNull() != null) {
-      issues = issues.stream()
-          .filter(issue -> issue.getSeverity().compareTo(task.getMinSeverity().get()) > 0)
-          .collect(Collectors.toList());
+  /**
+   * Set the rule details on the issues. The details are only looked up once per rule and the rules are looked up in
+   * parallel since many issues typically share a few rules.
+   *
+   * @param issues
+   *          - the issues
+   * @param engine
+   *          - engine with the rules loaded
+   */
+  @SuppressWarnings({ "java:S1874", "deprecation" })
+  public void setRulesDetails(List<IssueEx> issues, StandaloneSonarLintEngine engine) {
+    Set<String> ruleKeys = issues.stream().map(IssueEx::getRuleKey).collect(Collectors.toSet());
+    Map<String, Optional<StandaloneRuleDetails>> rulesDetails = ruleKeys.parallelStream()
+        .collect(Collectors.toConcurrentMap(Function.identity(), engine::getRuleDetails));
+    issues.forEach(i -> i.setRulesDetails(rulesDetails.get(i.getRuleKey())));
+  }
+
+  protected StandaloneSonarLintEngine borrowEngine(@Nullable EnginePool enginePool, EngineKey key, Logger logger,
+      Path workDir, Path userHome) {
+    if (enginePool != null) {
+      return enginePool.borrow(key);
+    }
+    return createEngine(key, logger, workDir, userHome);
+  }
+
+  protected void releaseEngine(@Nullable EnginePool enginePool, EngineKey key, StandaloneSonarLintEngine engine,
+      Logger logger) {
+    if (enginePool != null) {
+      enginePool.release(key, engine);
+    }
+    else {
+      stopEngine(engine, logger);
+    }
+  }
+
+  protected List<AnalysisCache> createAnalysisCacheBackends(SonarlintWorkAction.Params params, Logger logger) {
+    List<AnalysisCache> backends = new ArrayList<>();
+    if (params.getAnalysisCacheDir().isPresent()) {
+      long maxSize = params.getAnalysisCacheMaxSizeMb().getOrElse(DEFAULT_ANALYSIS_CACHE_MAX_SIZE_MB) * 1024L
+          * 1024L;
+      backends.add(new LocalAnalysisCache(params.getAnalysisCacheDir().get().getAsFile(), maxSize, logger));
+    }
+    if (params.getAnalysisCacheUrl().isPresent()) {
+      backends.add(new HttpAnalysisCache(params.getAnalysisCacheUrl().get(), logger));
     }
+    return backends;
+  }
+
+  // used when there is no engine pool, e.g. in a worker process that isn't an analysis daemon
+  protected StandaloneSonarLintEngine createEngine(EngineKey key, Logger logger, Path workDir, Path userHome) {
+    Builder builder = StandaloneGlobalConfiguration.builder()
+        .addEnabledLanguages(key.getLanguages().toArray(Language[]::new))
+        .addPlugins(key.getPlugins().toArray(Path[]::new))
+        .setLogOutput(new GradleClientLogOutput(logger))
+        .setWorkDir(key.getWorkDir(workDir))
+        .setSonarLintUserHome(userHome);
 
-    logger.debug("Files: {}", results.indexedFileCount());
-    logger.debug("Issues: {}", issues);
+    if (key.getNodeExec() != null && key.getNodeVersion() != null) {
+      builder.setNodeJs(key.getNodeExec(), Version.create(key.getNodeVersion()));
+    }
+    return new StandaloneSonarLintEngineImpl(builder.build());
+  }
 
+  protected void stopEngine(StandaloneSonarLintEngine engine, Logger logger) {
     try {
       engine.stop();
     }
     catch (Exception e) {
       logger.warn("could not stop the engine");
     }
-
-    return issues;
   }
 
   protected RuleKey[] getRuleKeys(Set<String> rules) {
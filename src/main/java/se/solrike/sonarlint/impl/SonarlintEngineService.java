@@ -0,0 +1,176 @@
+package se.solrike.sonarlint.impl;
+
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.sonarsource.sonarlint.core.client.api.standalone.StandaloneSonarLintEngine;
+import org.sonarsource.sonarlint.core.commons.Language;
+
+import se.solrike.sonarlint.impl.util.ChecksumUtil;
+
+/**
+ * Gradle build service that keeps warm Sonarlint engines for the whole build so the plugins only have to be loaded
+ * once. The engines are keyed by the plugin set and the node runtime, see {@link EnginePool}.
+ * <p>
+ * All engines are stopped when the build finishes.
+ *
+ * @author Lucas Persson
+ */
+public abstract class SonarlintEngineService
+    implements BuildService<SonarlintEngineService.Params>, AutoCloseable {
+
+  public static final String SERVICE_NAME = "sonarlintEngineService";
+
+  private static final Logger sLogger = Logging.getLogger(SonarlintEngineService.class);
+
+  private EnginePool mPool;
+
+  public interface Params extends BuildServiceParameters {
+    /**
+     * Work directory for the engines, shared by all projects and builds.
+     *
+     * @return the work directory
+     */
+    DirectoryProperty getWorkDir();
+
+    /**
+     * Sonarlint user home for the engines.
+     *
+     * @return the user home directory
+     */
+    DirectoryProperty getUserHome();
+
+  }
+
+  /**
+   * The engines of this build.
+   *
+   * @return the pool
+   */
+  public synchronized EnginePool getPool() {
+    if (mPool == null) {
+      mPool = new EnginePool(getParameters().getWorkDir().get().getAsFile().toPath(),
+          getParameters().getUserHome().get().getAsFile().toPath(), sLogger);
+    }
+    return mPool;
+  }
+
+  /**
+   * Borrow an engine for the given plugins and node runtime, see {@link EnginePool#borrow(EngineKey)}.
+   *
+   * @param key
+   *          - plugins and node runtime the engine shall be configured with
+   *
+   * @return the engine
+   */
+  public StandaloneSonarLintEngine borrow(EngineKey key) {
+    return getPool().borrow(key);
+  }
+
+  /**
+   * Give back an engine that was borrowed so other tasks can use it.
+   *
+   * @param key
+   *          - the key the engine was borrowed with
+   * @param engine
+   *          - the engine
+   */
+  public void release(EngineKey key, StandaloneSonarLintEngine engine) {
+    getPool().release(key, engine);
+  }
+
+  @Override
+  public synchronized void close() {
+    if (mPool != null) {
+      mPool.close();
+    }
+  }
+
+  /**
+   * Everything in the global configuration that differs between tasks. All languages of the plugins are enabled so
+   * tasks with the same plugins share the engines, each analysis is restricted to its languages by its files.
+   */
+  public static final class EngineKey {
+    private final Set<Path> mPlugins;
+    private final Path mNodeExec;
+    private final String mNodeVersion;
+    private final Set<Language> mLanguages;
+    private String mPluginsChecksum;
+
+    public EngineKey(Set<Path> plugins, Path nodeExec, String nodeVersion) {
+      mPlugins = Set.copyOf(plugins);
+      mNodeExec = nodeExec;
+      mNodeVersion = nodeVersion;
+      // given by the plugins so not part of the key
+      Set<Language> languages = new LanguageDetector().getEnabledLanguages(mPlugins, EnumSet.allOf(Language.class));
+      mLanguages = languages != null ? Set.copyOf(languages) : Set.of(Language.values());
+    }
+
+    public Set<Path> getPlugins() {
+      return mPlugins;
+    }
+
+    public Path getNodeExec() {
+      return mNodeExec;
+    }
+
+    public String getNodeVersion() {
+      return mNodeVersion;
+    }
+
+    public Set<Language> getLanguages() {
+      return mLanguages;
+    }
+
+    /**
+     * The work directory of the engines with the plugins. It is named by the checksum of the plugin jars so the engines
+     * of the same plugins share it wherever the jars were resolved, and engines of other plugins don't.
+     *
+     * @param workDir
+     *          - the shared work directory
+     *
+     * @return the work directory for the plugins
+     */
+    public synchronized Path getWorkDir(Path workDir) {
+      if (mPluginsChecksum == null) {
+        mPluginsChecksum = ChecksumUtil.checksum(
+            mPlugins.stream().map(p -> ChecksumUtil.getFileChecksum(p.toFile())).sorted().toArray(String[]::new));
+      }
+      return workDir.resolve(mPluginsChecksum);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(mPlugins, mNodeExec, mNodeVersion);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null) {
+        return false;
+      }
+      if (getClass() != obj.getClass()) {
+        return false;
+      }
+      EngineKey other = (EngineKey) obj;
+      return Objects.equals(mPlugins, other.mPlugins) && Objects.equals(mNodeExec, other.mNodeExec)
+          && Objects.equals(mNodeVersion, other.mNodeVersion);
+    }
+
+    @Override
+    public String toString() {
+      return "plugins: " + mPlugins + ", node: " + mNodeExec + " " + mNodeVersion + ", languages: " + mLanguages;
+    }
+  }
+
+}
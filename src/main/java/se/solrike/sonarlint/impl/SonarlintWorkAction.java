@@ -0,0 +1,288 @@
+package se.solrike.sonarlint.impl;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.SetProperty;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+import org.sonarsource.sonarlint.core.commons.IssueSeverity;
+
+/**
+ * Runs the Sonarlint analysis and generates the reports in a Gradle worker process so the engine, the plugins and the
+ * issues don't use the heap of the Gradle daemon. If the worker is an analysis daemon the engines are kept warm
+ * between builds, see {@link AnalysisDaemon}.
+ * <p>
+ * The parameters are also used when the analysis is done in the Gradle daemon, see
+ * {@link SonarlintAction#run(Params, EnginePool, IssueSink, Logger)}.
+ *
+ * @author Lucas Persson
+ */
+public abstract class SonarlintWorkAction implements WorkAction<SonarlintWorkAction.Params> {
+
+  private static final Logger sLogger = Logging.getLogger(SonarlintWorkAction.class);
+
+  /**
+   * Everything needed for an analysis. Only values that can be sent to another process.
+   */
+  public interface Params extends WorkParameters {
+
+    DirectoryProperty getProjectDir();
+
+    /**
+     * The file where the issues are stored between executions.
+     *
+     * @return the file
+     */
+    RegularFileProperty getIssuesFile();
+
+    /**
+     * The binary file the issues are also written to, see {@link BinaryIssueStore}. Not written if not set.
+     *
+     * @return the file
+     */
+    RegularFileProperty getIssuesStoreFile();
+
+    /**
+     * All the source files.
+     *
+     * @return the files
+     */
+    ConfigurableFileCollection getSourceFiles();
+
+    /**
+     * Whether only the changed files shall be analysed. If the issues from the previous execution can't be read all
+     * files are analysed anyway.
+     *
+     * @return true if incremental
+     */
+    Property<Boolean> getIncremental();
+
+    /**
+     * Relative paths of the added, modified and removed files since the previous execution.
+     *
+     * @return the paths
+     */
+    SetProperty<String> getChangedFiles();
+
+    SetProperty<String> getIncludeRules();
+
+    SetProperty<String> getExcludeRules();
+
+    MapProperty<String, Map<String, String>> getRuleParameters();
+
+    Property<Boolean> getIsTestSource();
+
+    Property<String> getJavaSource();
+
+    Property<IssueSeverity> getMinSeverity();
+
+    ConfigurableFileCollection getCompileClasspath();
+
+    ConfigurableFileCollection getClassFiles();
+
+    ConfigurableFileCollection getPlugins();
+
+    Property<String> getNodeExec();
+
+    Property<String> getNodeVersion();
+
+    /**
+     * Work directory for the engine if the shared engine service isn't used.
+     *
+     * @return the directory
+     */
+    DirectoryProperty getWorkDir();
+
+    /**
+     * Sonarlint user home for the engine if the shared engine service isn't used.
+     *
+     * @return the directory
+     */
+    DirectoryProperty getUserHome();
+
+    /**
+     * Where the rule descriptions converted to markdown are kept between builds, see {@link MarkdownCache}.
+     *
+     * @return the directory
+     */
+    DirectoryProperty getMarkdownCacheDir();
+
+    /**
+     * Max number of shards the files are split into and analysed concurrently.
+     *
+     * @return the parallelism
+     */
+    Property<Integer> getParallelism();
+
+    /**
+     * Whether the engines shall be kept warm in the worker process between builds, see {@link AnalysisDaemon}.
+     *
+     * @return true if the worker is an analysis daemon
+     */
+    Property<Boolean> getAnalysisDaemon();
+
+    /**
+     * Minutes an engine in the analysis daemon can be idle before it is stopped.
+     *
+     * @return the idle timeout
+     */
+    Property<Integer> getAnalysisDaemonIdleTimeout();
+
+    /**
+     * Percent of the max heap that when exceeded after an analysis stops the idle engines of the analysis daemon.
+     *
+     * @return the max heap usage in percent
+     */
+    Property<Integer> getAnalysisDaemonMaxHeapUsage();
+
+    /**
+     * Whether the issues shall be given to the reports as soon as they are found.
+     *
+     * @return true if streaming
+     */
+    Property<Boolean> getStreamIssues();
+
+    /**
+     * Max number of issues before the build fails. In streaming mode the analysis is stopped when exceeded.
+     *
+     * @return the max number of issues
+     */
+    Property<Integer> getMaxIssues();
+
+    Property<Boolean> getIgnoreFailures();
+
+    /**
+     * File with the accepted issues, see {@link Baseline}.
+     *
+     * @return the baseline file
+     */
+    RegularFileProperty getBaselineFile();
+
+    /**
+     * Whether all issues shall be written to the baseline file instead of being reported.
+     *
+     * @return true if the baseline shall be written
+     */
+    Property<Boolean> getWriteBaseline();
+
+    /**
+     * Whether generated, minified and too large source files shall be skipped, see {@link SourceFileFilter}.
+     *
+     * @return true if the files shall be skipped
+     */
+    Property<Boolean> getAutoExcludeSources();
+
+    ListProperty<String> getGeneratedSourcePatterns();
+
+    Property<Integer> getMaxFileSizeKb();
+
+    /**
+     * Whether unused jars shall be removed from the Java classpath, see {@link ClasspathSlimmer}.
+     *
+     * @return true if the classpath shall be slimmed
+     */
+    Property<Boolean> getSlimClasspath();
+
+    /**
+     * Directory where the slimmed classpaths are cached.
+     *
+     * @return the directory
+     */
+    DirectoryProperty getClasspathCacheDir();
+
+    Property<Boolean> getAnalysisCacheEnabled();
+
+    DirectoryProperty getAnalysisCacheDir();
+
+    Property<Integer> getAnalysisCacheMaxSizeMb();
+
+    Property<String> getAnalysisCacheUrl();
+
+    /**
+     * The enabled reports. Key is the report name and value is the report file.
+     *
+     * @return the reports
+     */
+    MapProperty<String, File> getReports();
+
+    /**
+     * Max number of results per SARIF file, see {@link ReportAction#setSarifSplit(Integer, Integer)}.
+     *
+     * @return the max number of results
+     */
+    Property<Integer> getSarifMaxResults();
+
+    /**
+     * Max size in MB per SARIF file, see {@link ReportAction#setSarifSplit(Integer, Integer)}.
+     *
+     * @return the max size
+     */
+    Property<Integer> getSarifMaxSizeMb();
+
+    /**
+     * Path of the task, e.g. :app:sonarlintMain, used to label the metrics.
+     *
+     * @return the path
+     */
+    Property<String> getTaskPath();
+
+    /**
+     * The file the metrics of the task are written to as JSON, see {@link TaskMetrics}. Not written if not set.
+     *
+     * @return the file
+     */
+    RegularFileProperty getMetricsFile();
+
+    /**
+     * The file the metrics of the task are written to in the Prometheus text format. Not written if not set.
+     *
+     * @return the file
+     */
+    RegularFileProperty getPrometheusFile();
+  }
+
+  @Override
+  public void execute() {
+    Params params = getParameters();
+    TaskMetrics metrics = new TaskMetrics();
+    metrics.start();
+    EnginePool enginePool = null;
+    if (params.getAnalysisDaemon().getOrElse(Boolean.FALSE)) {
+      enginePool = AnalysisDaemon.getPool(params.getWorkDir().get().getAsFile().toPath(),
+          params.getUserHome().get().getAsFile().toPath(),
+          params.getAnalysisDaemonIdleTimeout().getOrElse(AnalysisDaemon.DEFAULT_IDLE_TIMEOUT_MINUTES));
+    }
+    ReportAction reportAction = new ReportAction(params.getReports().get(), params.getProjectDir().get().getAsFile(),
+        sLogger);
+    reportAction.setSarifSplit(params.getSarifMaxResults().getOrNull(), params.getSarifMaxSizeMb().getOrNull());
+    reportAction.setMetrics(metrics);
+    if (params.getMarkdownCacheDir().isPresent()) {
+      reportAction.setMarkdownCacheDir(params.getMarkdownCacheDir().get().getAsFile());
+    }
+    SonarlintAction action = new SonarlintAction();
+    action.setMetrics(metrics);
+    List<IssueEx> issues;
+    try (IssueSink sink = params.getStreamIssues().getOrElse(Boolean.FALSE) ? reportAction.openStreamingReports()
+        : null) {
+      issues = action.run(params, enginePool, sink, sLogger);
+    }
+    reportAction.report(issues);
+    reportAction.writeStamp(params.getIssuesFile().get().getAsFile());
+    action.writeMetrics(params, metrics, sLogger);
+    if (enginePool != null) {
+      AnalysisDaemon.checkHeapUsage(sLogger,
+          params.getAnalysisDaemonMaxHeapUsage().getOrElse(AnalysisDaemon.DEFAULT_MAX_HEAP_USAGE_PERCENT));
+    }
+  }
+
+}
@@ -0,0 +1,252 @@
+package se.solrike.sonarlint.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content of the source files shared by all sensors during an analysis, so a file that is read by several sensors, e.g.
+ * Java, text and XML, is only read from disk once and only decoded once. Small files are read into the heap and large
+ * files are memory mapped. The least recently used files are removed when the cached content exceeds the max size.
+ * <p>
+ * The number of bytes read, mapped and decoded are counted so the effect can be seen in the log.
+ *
+ * @author Lucas Persson
+ */
+public class SourceContentCache {
+
+  public static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+  public static final int DEFAULT_MAP_THRESHOLD = 1024 * 1024;
+  // each mapping uses a memory map area of the process which there is a limited number of
+  private static final int MAX_ENTRIES = 10_000;
+
+  private final long mMaxSize;
+  private final int mMapThreshold;
+  // path : content, in access order
+  private final LinkedHashMap<Path, Content> mContents = new LinkedHashMap<>(16, 0.75f, true);
+  private long mSize;
+  private final AtomicLong mBytesRead = new AtomicLong();
+  private final AtomicLong mBytesMapped = new AtomicLong();
+  private final AtomicLong mBytesDecoded = new AtomicLong();
+  private final AtomicLong mHits = new AtomicLong();
+  private final AtomicLong mMisses = new AtomicLong();
+
+  public SourceContentCache() {
+    this(DEFAULT_MAX_SIZE, DEFAULT_MAP_THRESHOLD);
+  }
+
+  /**
+   * @param maxSize
+   *          - max number of bytes of heap used by the cached content, the memory mapped files are not included
+   * @param mapThreshold
+   *          - files of at least this size are memory mapped instead of read into the heap
+   */
+  public SourceContentCache(long maxSize, int mapThreshold) {
+    mMaxSize = maxSize;
+    mMapThreshold = mapThreshold;
+  }
+
+  /**
+   * @param path
+   *          - the file
+   *
+   * @return a stream of the bytes of the file
+   *
+   * @throws IOException
+   *           if the file can't be read
+   */
+  public InputStream inputStream(Path path) throws IOException {
+    return new ByteBufferInputStream(get(path).mBytes.duplicate());
+  }
+
+  /**
+   * @param path
+   *          - the file
+   * @param charset
+   *          - the charset of the file
+   *
+   * @return the decoded content of the file
+   *
+   * @throws IOException
+   *           if the file can't be read
+   */
+  public String contents(Path path, Charset charset) throws IOException {
+    Content content = get(path);
+    String string = content.getString(charset);
+    if (string == null) {
+      ByteBuffer bytes = content.mBytes.duplicate();
+      mBytesDecoded.addAndGet(bytes.remaining());
+      string = charset.decode(bytes).toString();
+      if (!content.mIsMapped) {
+        // a large file is decoded again rather than kept as a string in the heap
+        synchronized (this) {
+          // only kept if the content hasn't been removed from the cache meanwhile
+          if (mContents.get(path) == content && content.setString(charset, string)) {
+            mSize += string.length() * 2L;
+            evict();
+          }
+        }
+      }
+    }
+    return string;
+  }
+
+  public long getBytesRead() {
+    return mBytesRead.get();
+  }
+
+  public long getBytesMapped() {
+    return mBytesMapped.get();
+  }
+
+  public long getBytesDecoded() {
+    return mBytesDecoded.get();
+  }
+
+  public long getHits() {
+    return mHits.get();
+  }
+
+  public long getMisses() {
+    return mMisses.get();
+  }
+
+  /**
+   * Remove all content, the memory mapped files are released when they are garbage collected.
+   */
+  public synchronized void clear() {
+    mContents.clear();
+    mSize = 0;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d bytes read, %d bytes memory mapped, %d bytes decoded, %d hits, %d misses",
+        getBytesRead(), getBytesMapped(), getBytesDecoded(), getHits(), getMisses());
+  }
+
+  protected Content get(Path path) throws IOException {
+    synchronized (this) {
+      Content content = mContents.get(path);
+      if (content != null) {
+        mHits.incrementAndGet();
+        return content;
+      }
+    }
+    mMisses.incrementAndGet();
+    // read outside the lock so other files can be read at the same time, the same file might be read twice
+    Content content;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size >= mMapThreshold) {
+        // the mapping is valid after the channel is closed
+        content = new Content(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), true);
+        mBytesMapped.addAndGet(size);
+      }
+      else {
+        ByteBuffer bytes = ByteBuffer.allocate((int) size);
+        while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+          // read until the whole file is read
+        }
+        bytes.flip();
+        content = new Content(bytes, false);
+        mBytesRead.addAndGet(bytes.remaining());
+      }
+    }
+    synchronized (this) {
+      Content existing = mContents.putIfAbsent(path, content);
+      if (existing != null) {
+        return existing;
+      }
+      mSize += content.getHeapSize();
+      evict();
+    }
+    return content;
+  }
+
+  // remove the least recently used content, must hold the lock
+  private void evict() {
+    Iterator<Content> iterator = mContents.values().iterator();
+    while ((mSize > mMaxSize || mContents.size() > MAX_ENTRIES) && iterator.hasNext()) {
+      Content content = iterator.next();
+      mSize -= content.getHeapSize();
+      iterator.remove();
+    }
+  }
+
+  protected static class Content {
+    private final ByteBuffer mBytes;
+    private final boolean mIsMapped;
+    private Charset mCharset;
+    private String mString;
+
+    protected Content(ByteBuffer bytes, boolean isMapped) {
+      mBytes = bytes;
+      mIsMapped = isMapped;
+    }
+
+    protected synchronized String getString(Charset charset) {
+      return charset.equals(mCharset) ? mString : null;
+    }
+
+    // true if the string is kept
+    protected synchronized boolean setString(Charset charset, String string) {
+      if (mString != null) {
+        return false;
+      }
+      mCharset = charset;
+      mString = string;
+      return true;
+    }
+
+    protected synchronized long getHeapSize() {
+      return (mIsMapped ? 0 : mBytes.capacity()) + (mString != null ? mString.length() * 2L : 0);
+    }
+  }
+
+  protected static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer mBuffer;
+
+    protected ByteBufferInputStream(ByteBuffer buffer) {
+      mBuffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return mBuffer.hasRemaining() ? mBuffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!mBuffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(len, mBuffer.remaining());
+      mBuffer.get(b, off, count);
+      return count;
+    }
+
+    @Override
+    public long skip(long n) {
+      int count = (int) Math.max(0, Math.min(n, mBuffer.remaining()));
+      mBuffer.position(mBuffer.position() + count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return mBuffer.remaining();
+    }
+  }
+
+}
@@ -0,0 +1,276 @@
+package se.solrike.sonarlint.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.logging.Logger;
+
+/**
+ * Removes the source files that aren't worth analysing: generated files, minified files and files larger than a max
+ * size. Such files typically dominate the analysis time and their issues can't be fixed anyway.
+ * <p>
+ * A file is generated if its path matches one of the generated source patterns, e.g. <code>**&#47;generated/**</code>,
+ * or if it is annotated with <code>@Generated</code> or its leading comments have a marker like
+ * <code>DO NOT EDIT</code>. A JavaScript or CSS file is minified if its name is like <code>*.min.js</code> or if its
+ * lines are very long. The files are checked concurrently since the beginning of each file is read.
+ *
+ * @author Lucas Persson
+ */
+public class SourceFileFilter {
+
+  public static final int DEFAULT_MAX_FILE_SIZE_KB = 1024;
+  public static final List<String> DEFAULT_GENERATED_SOURCE_PATTERNS = List.of("**/generated/**",
+      "**/generated-sources/**", "**/generated-src/**");
+
+  // bytes read to look for markers
+  private static final int HEAD_SIZE = 4 * 1024;
+  // average line length in the beginning of a file that makes it minified
+  private static final int MINIFIED_LINE_LENGTH = 200;
+  // a whole annotation first on a line so that e.g. @GeneratedValue or a mention in a comment doesn't match
+  private static final Pattern GENERATED_ANNOTATION = Pattern.compile(
+      "^\\s*@(?:(?:javax|jakarta)\\.annotation\\.(?:processing\\.)?)?Generated(?![\\w$])", Pattern.MULTILINE);
+  // only looked for in the comments at the very beginning of a file
+  private static final List<String> GENERATED_HEADER_MARKERS = List.of("DO NOT EDIT", "<auto-generated", "@generated");
+  private static final Set<String> MINIFIABLE_SUFFIXES = Set.of("js", "mjs", "cjs", "css");
+
+  /**
+   * Why a file is skipped.
+   */
+  public enum Reason {
+    GENERATED, MINIFIED, TOO_LARGE
+  }
+
+  private final Path mProjectDir;
+  private final List<PathMatcher> mGeneratedSourceMatchers = new ArrayList<>();
+  private final long mMaxFileSize;
+  private final Map<Reason, LongAdder> mSkippedFiles = new EnumMap<>(Reason.class);
+  private final Map<Reason, LongAdder> mSkippedBytes = new EnumMap<>(Reason.class);
+
+  /**
+   * @param projectDir
+   *          - the project directory the patterns are relative to
+   * @param generatedSourcePatterns
+   *          - glob patterns of generated source files
+   * @param maxFileSize
+   *          - max size in bytes of a file to be analysed
+   */
+  public SourceFileFilter(Path projectDir, Collection<String> generatedSourcePatterns, long maxFileSize) {
+    mProjectDir = projectDir;
+    for (String pattern : generatedSourcePatterns) {
+      mGeneratedSourceMatchers.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+    }
+    mMaxFileSize = maxFileSize;
+    for (Reason reason : Reason.values()) {
+      mSkippedFiles.put(reason, new LongAdder());
+      mSkippedBytes.put(reason, new LongAdder());
+    }
+  }
+
+  /**
+   * Filter the files using a few threads.
+   *
+   * @param files
+   *          - the source files
+   * @param logger
+   *          - logs each skipped file on info level
+   *
+   * @return the files to analyse
+   */
+  public Set<File> filter(Collection<File> files, Logger logger) {
+    Set<File> kept = ConcurrentHashMap.newKeySet();
+    List<List<File>> chunks = new ArrayList<>();
+    int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), files.size() / 64));
+    for (int i = 0; i < threads; i++) {
+      chunks.add(new ArrayList<>());
+    }
+    int i = 0;
+    for (File file : files) {
+      chunks.get(i++ % threads).add(file);
+    }
+    Runnable[] tasks = chunks.stream().map(chunk -> (Runnable) () -> {
+      for (File file : chunk) {
+        Reason reason = getSkipReason(file);
+        if (reason == null) {
+          kept.add(file);
+        }
+        else {
+          mSkippedFiles.get(reason).increment();
+          mSkippedBytes.get(reason).add(file.length());
+          logger.info("Skipping {} file {}", reason.name().toLowerCase(Locale.ROOT).replace('_', ' '), file);
+        }
+      }
+    }).toArray(Runnable[]::new);
+    if (tasks.length == 1) {
+      tasks[0].run();
+      return kept;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(tasks.length);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (Runnable task : tasks) {
+        futures.add(executor.submit(task));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new GradleException("Filtering of the source files was interrupted", e);
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new GradleException("Filtering of the source files failed", e.getCause());
+    }
+    finally {
+      executor.shutdownNow();
+    }
+    return kept;
+  }
+
+  public long getSkippedFiles(Reason reason) {
+    return mSkippedFiles.get(reason).sum();
+  }
+
+  public long getSkippedBytes(Reason reason) {
+    return mSkippedBytes.get(reason).sum();
+  }
+
+  /**
+   * @return e.g. "3 file(s) of 1250 KB were skipped: 2 generated, 1 minified, 0 too large", or null if no file was
+   *         skipped
+   */
+  @Nullable
+  public String getSummary() {
+    long files = 0;
+    long bytes = 0;
+    for (Reason reason : Reason.values()) {
+      files += getSkippedFiles(reason);
+      bytes += getSkippedBytes(reason);
+    }
+    if (files == 0) {
+      return null;
+    }
+    return String.format("%d file(s) of %d KB were skipped: %d generated, %d minified, %d too large", files,
+        bytes / 1024, getSkippedFiles(Reason.GENERATED), getSkippedFiles(Reason.MINIFIED),
+        getSkippedFiles(Reason.TOO_LARGE));
+  }
+
+  /**
+   * @param file
+   *          - the source file
+   *
+   * @return the reason or null if the file shall be analysed
+   */
+  @Nullable
+  protected Reason getSkipReason(File file) {
+    Path path = file.toPath();
+    Path relativePath = path.startsWith(mProjectDir) ? mProjectDir.relativize(path) : path;
+    for (PathMatcher matcher : mGeneratedSourceMatchers) {
+      if (matcher.matches(relativePath)) {
+        return Reason.GENERATED;
+      }
+    }
+    String name = file.getName().toLowerCase(Locale.ROOT);
+    int dot = name.lastIndexOf('.');
+    String suffix = dot >= 0 ? name.substring(dot + 1) : "";
+    boolean isMinifiable = MINIFIABLE_SUFFIXES.contains(suffix);
+    if (isMinifiable && (name.contains(".min.") || name.contains("-min."))) {
+      return Reason.MINIFIED;
+    }
+    if (file.length() > mMaxFileSize) {
+      return Reason.TOO_LARGE;
+    }
+    String head = readHead(file);
+    if (isGenerated(head)) {
+      return Reason.GENERATED;
+    }
+    if (isMinifiable && isMinified(head)) {
+      return Reason.MINIFIED;
+    }
+    return null;
+  }
+
+  protected static boolean isGenerated(String head) {
+    String header = getLeadingComments(head);
+    for (String marker : GENERATED_HEADER_MARKERS) {
+      if (header.contains(marker)) {
+        return true;
+      }
+    }
+    return GENERATED_ANNOTATION.matcher(head).find();
+  }
+
+  /**
+   * @return the comment lines before the first line of code, e.g. a license or a "Code generated by" header
+   */
+  protected static String getLeadingComments(String head) {
+    StringBuilder header = new StringBuilder();
+    String blockEnd = null;
+    for (String line : head.split("\n")) {
+      String trimmed = line.trim();
+      if (blockEnd != null) {
+        if (trimmed.contains(blockEnd)) {
+          blockEnd = null;
+        }
+      }
+      else if (trimmed.startsWith("/*")) {
+        blockEnd = trimmed.indexOf("*/", 2) < 0 ? "*/" : null;
+      }
+      else if (trimmed.startsWith("<!--")) {
+        blockEnd = trimmed.indexOf("-->", 4) < 0 ? "-->" : null;
+      }
+      else if (!trimmed.isEmpty() && !trimmed.startsWith("//") && !trimmed.startsWith("#")
+          && !trimmed.startsWith("<?")) {
+        break;
+      }
+      header.append(line).append('\n');
+    }
+    return header.toString();
+  }
+
+  // a few very long lines
+  protected static boolean isMinified(String head) {
+    if (head.length() < HEAD_SIZE / 2) {
+      return false;
+    }
+    long lines = head.chars().filter(c -> c == '\n').count() + 1;
+    return head.length() / lines > MINIFIED_LINE_LENGTH;
+  }
+
+  private static String readHead(File file) {
+    try (InputStream in = Files.newInputStream(file.toPath())) {
+      return new String(in.readNBytes(HEAD_SIZE), StandardCharsets.UTF_8);
+    }
+    catch (IOException e) {
+      // let the analysis report the problem
+      return "";
+    }
+  }
+
+}
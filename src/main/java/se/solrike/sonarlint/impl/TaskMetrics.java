@@ -0,0 +1,343 @@
+package se.solrike.sonarlint.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import se.solrike.sonarlint.impl.util.JsonUtil;
+
+/**
+ * Wall time and CPU time of the phases of a Sonarlint task, the number of files and bytes analysed, the number of
+ * issues found and the peak heap usage of the process. Written as JSON and optionally as a Prometheus text file that
+ * the textfile collector of the node exporter can pick up.
+ * <p>
+ * The phases are:
+ * <ul>
+ * <li>pluginLoading, resolving the plugin jars and selecting the plugins for the languages of the source files
+ * <li>engineCreation, creating the engine, which loads the plugins, or taking a warm engine from the pool
+ * <li>analysis, analysing the files in all shards
+ * <li>rulesDetails, looking up the rule details needed by the reports
+ * <li>report.&lt;name&gt;, rendering each report that isn't streamed
+ * </ul>
+ * The CPU time is the CPU time of the whole process during the phase, since the engine analyses on its own threads. So
+ * it also includes other work done meanwhile, e.g. by the other reports since they are rendered concurrently. Likewise
+ * the peak heap usage is the heap used by the whole process, e.g. the Gradle daemon, sampled when the task starts and
+ * when each phase ends. The peak usage of the JVM memory pools isn't reset since other tasks and tools use them.
+ *
+ * @author Lucas Persson
+ */
+public class TaskMetrics {
+
+  public static final String PLUGIN_LOADING = "pluginLoading";
+  public static final String ENGINE_CREATION = "engineCreation";
+  public static final String ANALYSIS = "analysis";
+  public static final String RULES_DETAILS = "rulesDetails";
+  public static final String REPORT = "report.";
+
+  // phase : wall time and CPU time in nanos
+  private final Map<String, Timing> mTimings = new TreeMap<>();
+  private final AtomicLong mFilesAnalyzed = new AtomicLong();
+  private final AtomicLong mBytesAnalyzed = new AtomicLong();
+  private final AtomicLong mIssuesFound = new AtomicLong();
+  private long mIssues;
+  private final AtomicLong mPeakHeapUsed = new AtomicLong();
+  private long mStartWall = System.nanoTime();
+
+  /**
+   * Start measuring the task, the peak heap usage is sampled from now.
+   */
+  public void start() {
+    mStartWall = System.nanoTime();
+    mPeakHeapUsed.set(0);
+    sampleHeapUsed();
+  }
+
+  /**
+   * Run an action and add its time to the phase.
+   *
+   * @param phase
+   *          - the phase, e.g. {@link #ANALYSIS}
+   * @param action
+   *          - the action
+   *
+   * @return the result of the action
+   */
+  public <T> T time(String phase, Supplier<T> action) {
+    long startWall = System.nanoTime();
+    long startCpu = getCpuTime();
+    try {
+      return action.get();
+    }
+    finally {
+      long wall = System.nanoTime() - startWall;
+      long cpu = getCpuTime() - startCpu;
+      synchronized (mTimings) {
+        mTimings.computeIfAbsent(phase, p -> new Timing()).add(wall, cpu);
+      }
+      sampleHeapUsed();
+    }
+  }
+
+  /**
+   * Same as {@link #time(String, Supplier)} for an action without a result.
+   */
+  public void time(String phase, Runnable action) {
+    time(phase, () -> {
+      action.run();
+      return null;
+    });
+  }
+
+  public void addFilesAnalyzed(long files, long bytes) {
+    mFilesAnalyzed.addAndGet(files);
+    mBytesAnalyzed.addAndGet(bytes);
+  }
+
+  /**
+   * @param issuesFound
+   *          - number of issues found by the analysis, not the ones from the previous run or the analysis cache
+   */
+  public void addIssuesFound(long issuesFound) {
+    mIssuesFound.addAndGet(issuesFound);
+  }
+
+  /**
+   * @param issues
+   *          - number of issues reported by the task
+   */
+  public void setIssues(long issues) {
+    mIssues = issues;
+  }
+
+  /**
+   * @param phase
+   *          - the phase
+   *
+   * @return wall time in nanos, 0 if the phase hasn't been run
+   */
+  public long getWallTime(String phase) {
+    synchronized (mTimings) {
+      Timing timing = mTimings.get(phase);
+      return timing != null ? timing.mWall : 0;
+    }
+  }
+
+  public long getFilesAnalyzed() {
+    return mFilesAnalyzed.get();
+  }
+
+  public long getBytesAnalyzed() {
+    return mBytesAnalyzed.get();
+  }
+
+  public long getIssuesFound() {
+    return mIssuesFound.get();
+  }
+
+  /**
+   * @return issues found per second of analysis
+   */
+  public double getIssuesPerSecond() {
+    long wall = getWallTime(ANALYSIS);
+    return wall > 0 ? getIssuesFound() * 1e9 / wall : 0;
+  }
+
+  /**
+   * @return the highest heap usage of the process sampled since {@link #start()}
+   */
+  public long getPeakHeapUsed() {
+    return mPeakHeapUsed.get();
+  }
+
+  private void sampleHeapUsed() {
+    long used = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+        used += pool.getUsage().getUsed();
+      }
+    }
+    mPeakHeapUsed.accumulateAndGet(used, Math::max);
+  }
+
+  /**
+   * Write the metrics as a JSON object, like:
+   *
+   * <pre>
+   * {"task":":app:sonarlintMain","wallMs":5400,"phases":{"analysis":{"wallMs":4100,"cpuMs":9800},...},
+   *  "filesAnalyzed":120,"bytesAnalyzed":480000,"issuesFound":14,"issues":14,"issuesPerSecond":3.41,
+   *  "processPeakHeapBytes":734003200}
+   * </pre>
+   *
+   * @param file
+   *          - the file
+   * @param taskPath
+   *          - path of the task, e.g. :app:sonarlintMain
+   */
+  public void writeJson(File file, String taskPath) {
+    write(file, writer -> {
+      writer.write("{\"task\":");
+      JsonUtil.writeString(writer, taskPath);
+      writer.write(",\"wallMs\":" + toMillis(System.nanoTime() - mStartWall));
+      writer.write(",\"phases\":{");
+      String separator = "";
+      for (Map.Entry<String, Timing> timing : getTimings().entrySet()) {
+        writer.write(separator);
+        JsonUtil.writeString(writer, timing.getKey());
+        writer.write(String.format(":{\"wallMs\":%d,\"cpuMs\":%d}", toMillis(timing.getValue().mWall),
+            toMillis(timing.getValue().mCpu)));
+        separator = ",";
+      }
+      writer.write(String.format(Locale.ROOT,
+          "},\"filesAnalyzed\":%d,\"bytesAnalyzed\":%d,\"issuesFound\":%d,\"issues\":%d,\"issuesPerSecond\":%.2f,"
+              + "\"processPeakHeapBytes\":%d}%n",
+          getFilesAnalyzed(), getBytesAnalyzed(), getIssuesFound(), mIssues, getIssuesPerSecond(),
+          getPeakHeapUsed()));
+    });
+  }
+
+  /**
+   * Write the metrics in the Prometheus text format, each with a task label. The file is replaced atomically so the
+   * node exporter never reads a partly written file.
+   *
+   * @param file
+   *          - the file, the textfile collector only reads files ending with .prom
+   * @param taskPath
+   *          - path of the task, e.g. :app:sonarlintMain
+   */
+  public void writePrometheus(File file, String taskPath) {
+    String task = "task=\"" + taskPath.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    write(file, writer -> {
+      writeMetric(writer, "sonarlint_task_wall_seconds", "Wall time of the Sonarlint task.", task,
+          toSeconds(System.nanoTime() - mStartWall));
+      Map<String, Timing> timings = getTimings();
+      writeHeader(writer, "sonarlint_phase_wall_seconds", "Wall time of a phase of the Sonarlint task.");
+      for (Map.Entry<String, Timing> timing : timings.entrySet()) {
+        writer.write(String.format("sonarlint_phase_wall_seconds{%s,phase=\"%s\"} %s%n", task, timing.getKey(),
+            toSeconds(timing.getValue().mWall)));
+      }
+      writeHeader(writer, "sonarlint_phase_cpu_seconds", "CPU time of the process during a phase.");
+      for (Map.Entry<String, Timing> timing : timings.entrySet()) {
+        writer.write(String.format("sonarlint_phase_cpu_seconds{%s,phase=\"%s\"} %s%n", task, timing.getKey(),
+            toSeconds(timing.getValue().mCpu)));
+      }
+      writeMetric(writer, "sonarlint_files_analyzed", "Number of files analysed.", task,
+          String.valueOf(getFilesAnalyzed()));
+      writeMetric(writer, "sonarlint_bytes_analyzed", "Number of bytes analysed.", task,
+          String.valueOf(getBytesAnalyzed()));
+      writeMetric(writer, "sonarlint_issues_found", "Number of issues found by the analysis.", task,
+          String.valueOf(getIssuesFound()));
+      writeMetric(writer, "sonarlint_issues", "Number of issues reported.", task, String.valueOf(mIssues));
+      writeMetric(writer, "sonarlint_issues_per_second", "Issues found per second of analysis.", task,
+          String.format(Locale.ROOT, "%.3f", getIssuesPerSecond()));
+      writeMetric(writer, "sonarlint_process_peak_heap_bytes", "Peak heap used by the process during the task.", task,
+          String.valueOf(getPeakHeapUsed()));
+      writeMetric(writer, "sonarlint_last_run_timestamp_seconds", "When the Sonarlint task was run.", task,
+          String.valueOf(System.currentTimeMillis() / 1000));
+    });
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.ROOT,
+        "%d file(s) and %d KB analysed in %d ms, %d issue(s) found, process peak heap %d MB",
+        getFilesAnalyzed(), getBytesAnalyzed() / 1024, toMillis(getWallTime(ANALYSIS)), getIssuesFound(),
+        getPeakHeapUsed() >> 20);
+  }
+
+  private Map<String, Timing> getTimings() {
+    synchronized (mTimings) {
+      Map<String, Timing> timings = new TreeMap<>();
+      mTimings.forEach((phase, timing) -> timings.put(phase, timing.copy()));
+      return timings;
+    }
+  }
+
+  private static void writeHeader(Writer writer, String name, String help) throws IOException {
+    writer.write("# HELP " + name + " " + help + "\n");
+    writer.write("# TYPE " + name + " gauge\n");
+  }
+
+  private static void writeMetric(Writer writer, String name, String help, String labels, String value)
+      throws IOException {
+    writeHeader(writer, name, help);
+    writer.write(name + "{" + labels + "} " + value + "\n");
+  }
+
+  // written to a temporary file that replaces the file
+  private static void write(File file, MetricsWriter metricsWriter) {
+    Path dir = file.getAbsoluteFile().getParentFile().toPath();
+    try {
+      Files.createDirectories(dir);
+      Path tmpFile = Files.createTempFile(dir, file.getName(), ".tmp");
+      try {
+        try (Writer writer = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8)) {
+          metricsWriter.write(writer);
+        }
+        Files.move(tmpFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      finally {
+        Files.deleteIfExists(tmpFile);
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static long toMillis(long nanos) {
+    return nanos / 1_000_000;
+  }
+
+  private static String toSeconds(long nanos) {
+    return String.format(Locale.ROOT, "%.3f", nanos / 1e9);
+  }
+
+  // CPU time of the process if the JVM supports it, otherwise of the current thread
+  private static long getCpuTime() {
+    OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    if (os instanceof com.sun.management.OperatingSystemMXBean) {
+      long cpu = ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+      if (cpu >= 0) {
+        return cpu;
+      }
+    }
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0;
+  }
+
+  private interface MetricsWriter {
+    void write(Writer writer) throws IOException;
+  }
+
+  private static class Timing {
+    private long mWall;
+    private long mCpu;
+
+    private void add(long wall, long cpu) {
+      mWall += wall;
+      mCpu += cpu;
+    }
+
+    private Timing copy() {
+      Timing timing = new Timing();
+      timing.add(mWall, mCpu);
+      return timing;
+    }
+  }
+
+}
@@ -0,0 +1,131 @@
+package se.solrike.sonarlint.impl.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SHA-256 checksums of values and files, used as keys of the caches and of the engine work directories.
+ *
+ * @author Lucas Persson
+ */
+public final class ChecksumUtil {
+
+  private static final int MAX_FILE_CHECKSUMS = 50_000;
+  // checksums of the plugin jars and the classpath files. Key is path, size and modification time, in access order
+  private static final Map<String, String> sFileChecksums = new LinkedHashMap<>(16, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+      return size() > MAX_FILE_CHECKSUMS;
+    }
+  };
+
+  private ChecksumUtil() {
+  }
+
+  /**
+   * @param values
+   *          - the values
+   *
+   * @return SHA-256 of the values as hex
+   */
+  public static String checksum(String... values) {
+    MessageDigest digest = newDigest();
+    for (String value : values) {
+      update(digest, value);
+    }
+    return toHex(digest.digest());
+  }
+
+  /**
+   * The checksum of the content of a file. It is kept as long as the file has the same size and modification time so
+   * e.g. a plugin jar is only read once per process.
+   *
+   * @param file
+   *          - the file
+   *
+   * @return SHA-256 of the content as hex
+   */
+  public static String getFileChecksum(File file) {
+    String key = file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+    synchronized (sFileChecksums) {
+      String checksum = sFileChecksums.get(key);
+      if (checksum != null) {
+        return checksum;
+      }
+    }
+    // the file is read without holding the lock so other tasks aren't blocked
+    String checksum;
+    try {
+      checksum = hashFile(file);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    synchronized (sFileChecksums) {
+      sFileChecksums.put(key, checksum);
+    }
+    return checksum;
+  }
+
+  public static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Add a value to the digest, terminated so that e.g. "ab", "c" and "a", "bc" give different checksums.
+   *
+   * @param digest
+   *          - the digest
+   * @param value
+   *          - the value
+   */
+  public static void update(MessageDigest digest, String value) {
+    digest.update(value.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+  }
+
+  public static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+
+  /**
+   * @param file
+   *          - the file
+   *
+   * @return SHA-256 of the content as hex, always read from the file
+   *
+   * @throws IOException
+   *           if the file can't be read
+   */
+  public static String hashFile(File file) throws IOException {
+    MessageDigest digest = newDigest();
+    try (InputStream in = new DigestInputStream(Files.newInputStream(file.toPath()), digest)) {
+      byte[] buffer = new byte[8192];
+      while (in.read(buffer) != -1) {
+        // just read to update the digest
+      }
+    }
+    return toHex(digest.digest());
+  }
+
+}
@@ -0,0 +1,221 @@
+package se.solrike.sonarlint.impl.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.apache.commons.text.StringEscapeUtils;
+import org.sonarsource.sonarlint.core.client.api.standalone.StandaloneRuleDetails;
+import org.sonarsource.sonarlint.core.commons.IssueSeverity;
+import org.sonarsource.sonarlint.core.commons.RuleType;
+
+import se.solrike.sonarlint.impl.IssueEx;
+import se.solrike.sonarlint.impl.ReportView;
+
+/**
+ * Writes the HTML report. The description of each rule is written once and the issues are written as compact JSON
+ * rows, split into chunks that the page only parses when the issues in them are shown. The page lists one page of
+ * issues at a time and they can be filtered by rule and file. So the size of the report grows with the number of rules
+ * plus a short row per issue and the browser only has to render the issues being looked at.
+ *
+ * @author Lucas Persson
+ */
+public class HtmlReportWriter {
+
+  /**
+   * Number of issues per JSON chunk.
+   */
+  public static final int CHUNK_SIZE = 1000;
+
+  private static final String SCRIPT_RESOURCE = "html-report.js";
+
+  private final Writer mWriter;
+  private final Function<RuleType, String> mIssueTypeIcon;
+  private final Function<IssueSeverity, String> mIssueSeverityIcon;
+
+  /**
+   * @param writer
+   *          - where the HTML is written
+   * @param issueTypeIcon
+   *          - text shown for an issue type
+   * @param issueSeverityIcon
+   *          - text shown for an issue severity
+   */
+  public HtmlReportWriter(Writer writer, Function<RuleType, String> issueTypeIcon,
+      Function<IssueSeverity, String> issueSeverityIcon) {
+    mWriter = writer;
+    mIssueTypeIcon = issueTypeIcon;
+    mIssueSeverityIcon = issueSeverityIcon;
+  }
+
+  /**
+   * Write the whole report.
+   *
+   * @param view
+   *          - the issues
+   *
+   * @throws IOException
+   *           if it can't be written
+   */
+  public void write(ReportView view) throws IOException {
+    List<IssueEx> issues = view.getIssues();
+    // index of each rule and file so the issue rows can refer to them
+    Map<String, Integer> ruleIndexes = new LinkedHashMap<>();
+    view.getRules().keySet().forEach(ruleKey -> ruleIndexes.put(ruleKey, ruleIndexes.size()));
+    Map<String, Integer> fileIndexes = new LinkedHashMap<>();
+    int[] issueCountPerRule = new int[ruleIndexes.size()];
+    for (IssueEx issue : issues) {
+      fileIndexes.putIfAbsent(issue.getInputFileRelativePath(), fileIndexes.size());
+      issueCountPerRule[ruleIndexes.get(issue.getRuleKey())]++;
+    }
+
+    mWriter.write(getHtmlHeader());
+    writeSummary(view);
+    writeRules(view, issueCountPerRule);
+
+    mWriter.write("<h1>Issues</h1>\n");
+    mWriter.write(String.format("<div id=\"sl-issues\" data-count=\"%d\" data-chunk-size=\"%d\">%n", issues.size(),
+        CHUNK_SIZE));
+    mWriter.write("<p>\n"
+        + "  <select id=\"sl-rule-filter\"><option value=\"-1\">All rules</option></select>\n"
+        + "  <select id=\"sl-file-filter\"><option value=\"-1\">All files</option></select>\n"
+        + "  <button id=\"sl-prev\">&lt;</button> <span id=\"sl-range\"></span> <button id=\"sl-next\">&gt;</button>\n"
+        + "</p>\n"
+        + "<ul id=\"sl-list\"></ul>\n"
+        + "<noscript>JavaScript is needed to show the issues.</noscript>\n"
+        + "</div>\n"
+        + "<div id=\"sl-rule\"></div>\n");
+
+    // the rule descriptions are in templates so they aren't rendered until shown
+    for (IssueEx rule : view.getRules().values()) {
+      Optional<StandaloneRuleDetails> rulesDetails = rule.getRulesDetails();
+      if (rulesDetails.isPresent()) {
+        mWriter.write(String.format("<template id=\"sl-rule-%d\">%n", ruleIndexes.get(rule.getRuleKey())));
+        mWriter.write(rulesDetails.get().getHtmlDescription());
+        mWriter.write("\n</template>\n");
+      }
+    }
+
+    // rule: [key, type, severity, name]
+    mWriter.write("<script type=\"application/json\" id=\"sl-rules\">[");
+    boolean isFirst = true;
+    for (IssueEx rule : view.getRules().values()) {
+      mWriter.write(isFirst ? "[" : ",\n[");
+      isFirst = false;
+      JsonUtil.writeScriptString(mWriter, rule.getRuleKey());
+      mWriter.write(',');
+      JsonUtil.writeScriptString(mWriter, mIssueTypeIcon.apply(rule.getType()));
+      mWriter.write(',');
+      JsonUtil.writeScriptString(mWriter, mIssueSeverityIcon.apply(rule.getSeverity()));
+      mWriter.write(',');
+      JsonUtil.writeScriptString(mWriter, getRuleName(rule));
+      mWriter.write(']');
+    }
+    mWriter.write("]</script>\n");
+
+    mWriter.write("<script type=\"application/json\" id=\"sl-files\">[");
+    isFirst = true;
+    for (String file : fileIndexes.keySet()) {
+      if (!isFirst) {
+        mWriter.write(",\n");
+      }
+      isFirst = false;
+      JsonUtil.writeScriptString(mWriter, file);
+    }
+    mWriter.write("]</script>\n");
+
+    // issue: [rule, file, line, column, message]
+    for (int chunk = 0; chunk * CHUNK_SIZE < issues.size(); chunk++) {
+      mWriter.write("<script type=\"application/json\" class=\"sl-chunk\">[");
+      int end = Math.min(issues.size(), (chunk + 1) * CHUNK_SIZE);
+      for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+        IssueEx issue = issues.get(i);
+        mWriter.write(i == chunk * CHUNK_SIZE ? "[" : ",\n[");
+        mWriter.write(String.format("%d,%d,%s,%s,", ruleIndexes.get(issue.getRuleKey()),
+            fileIndexes.get(issue.getInputFileRelativePath()), issue.getStartLine(), issue.getStartLineOffset()));
+        JsonUtil.writeScriptString(mWriter, issue.getMessage());
+        mWriter.write(']');
+      }
+      mWriter.write("]</script>\n");
+    }
+
+    mWriter.write("<script>\n");
+    mWriter.write(getScript());
+    mWriter.write("</script>\n");
+    mWriter.write("</body>\n</html>");
+  }
+
+  protected void writeSummary(ReportView view) throws IOException {
+    mWriter.write("<h1>Summary</h1>\n");
+    mWriter.write("<list>\n");
+    // type, count
+    for (Entry<RuleType, Long> issueType : view.getIssueCountPerType().entrySet()) {
+      mWriter.write(
+          String.format("<li>%s: %d</li>%n", mIssueTypeIcon.apply(issueType.getKey()), issueType.getValue()));
+    }
+    mWriter.write("</list>\n");
+  }
+
+  protected void writeRules(ReportView view, int[] issueCountPerRule) throws IOException {
+    mWriter.write("<h1>Rules</h1>\n");
+    mWriter.write("<list>\n");
+    int index = 0;
+    for (IssueEx rule : view.getRules().values()) {
+      mWriter.write(String.format("<li>%s %s, <a href=\"#sl-issues\" data-rule=\"%d\">%s (%s)</a>: %d</li>%n",
+          mIssueTypeIcon.apply(rule.getType()), mIssueSeverityIcon.apply(rule.getSeverity()), index,
+          StringEscapeUtils.escapeHtml4(getRuleName(rule)), StringEscapeUtils.escapeHtml4(rule.getRuleKey()),
+          issueCountPerRule[index]));
+      index++;
+    }
+    mWriter.write("</list>\n");
+  }
+
+  protected String getRuleName(IssueEx rule) {
+    return rule.getRulesDetails().map(StandaloneRuleDetails::getName).orElse(rule.getMessage());
+  }
+
+  protected String getHtmlHeader() {
+    // @formatter:off
+    return "<!DOCTYPE html>\n"
+        + "<html lang=\"en\">\n"
+        + "<head>\n"
+        + "  <meta charset=\"UTF-8\">\n"
+        + "  <title>SonarLint analysis report</title>\n"
+        + "  <style type=\"text/css\">\n"
+        + "    h1 {\n"
+        + "      background-color: LightGray;\n"
+        + "    }\n"
+        + "    #sl-list li {\n"
+        + "      cursor: pointer;\n"
+        + "      white-space: pre;\n"
+        + "    }\n"
+        + "    #sl-file-filter {\n"
+        + "      max-width: 40em;\n"
+        + "    }\n"
+        + "  </style>\n"
+        + "</head>\n"
+        + "<body>\n";
+    // @formatter:on
+  }
+
+  protected String getScript() {
+    try (InputStream in = HtmlReportWriter.class.getResourceAsStream(SCRIPT_RESOURCE)) {
+      if (in == null) {
+        throw new IllegalStateException("Missing resource " + SCRIPT_RESOURCE);
+      }
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+}
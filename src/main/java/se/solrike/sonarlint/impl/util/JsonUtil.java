@@ -0,0 +1,90 @@
+package se.solrike.sonarlint.impl.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Helpers for the reports that write JSON directly instead of building a document first.
+ *
+ * @author Lucas Persson
+ */
+public final class JsonUtil {
+
+  private JsonUtil() {
+  }
+
+  /**
+   * Write a JSON string, quoted and escaped. Non-ASCII characters are escaped so the encoding of the writer doesn't
+   * matter.
+   *
+   * @param writer
+   *          - where the string is written
+   * @param value
+   *          - the string, null is written as null
+   *
+   * @throws IOException
+   *           if it can't be written
+   */
+  public static void writeString(Writer writer, String value) throws IOException {
+    writeString(writer, value, false);
+  }
+
+  /**
+   * Write a JSON string that is embedded in a HTML script element. The characters &lt;, &gt; and &amp; are also escaped
+   * so the string can't end the script element.
+   *
+   * @param writer
+   *          - where the string is written
+   * @param value
+   *          - the string, null is written as null
+   *
+   * @throws IOException
+   *           if it can't be written
+   */
+  public static void writeScriptString(Writer writer, String value) throws IOException {
+    writeString(writer, value, true);
+  }
+
+  private static void writeString(Writer writer, String value, boolean isInScript) throws IOException {
+    if (value == null) {
+      writer.write("null");
+      return;
+    }
+    writer.write('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          writer.write("\\\"");
+          break;
+        case '\\':
+          writer.write("\\\\");
+          break;
+        case '\n':
+          writer.write("\\n");
+          break;
+        case '\r':
+          writer.write("\\r");
+          break;
+        case '\t':
+          writer.write("\\t");
+          break;
+        case '\b':
+          writer.write("\\b");
+          break;
+        case '\f':
+          writer.write("\\f");
+          break;
+        default:
+          if (c < 0x20 || c > 0x7e || isInScript && (c == '<' || c == '>' || c == '&')) {
+            writer.write(String.format("\\u%04x", (int) c));
+          }
+          else {
+            writer.write(c);
+          }
+      }
+    }
+    writer.write('"');
+  }
+
+}
@@ -0,0 +1,73 @@
+package se.solrike.sonarlint.impl.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Collection;
+
+import se.solrike.sonarlint.impl.IssueEx;
+import se.solrike.sonarlint.impl.IssueSink;
+
+/**
+ * Writes the issues as newline delimited JSON (https://github.com/ndjson/ndjson-spec), one JSON object per line. Unlike
+ * SARIF and XML each line can be parsed on its own so tools can read huge reports with constant memory.
+ * <p>
+ * A line looks like:
+ *
+ * <pre>
+ * {"ruleKey":"java:S1186","severity":"CRITICAL","type":"CODE_SMELL","path":"src/main/java/Hello.java",
+ *  "textRange":{"startLine":3,"startLineOffset":14,"endLine":3,"endLineOffset":18},"message":"Add a nested comment"}
+ * </pre>
+ *
+ * The text range is left out for issues on the file level.
+ *
+ * @author Lucas Persson
+ */
+public class NdjsonWriter implements IssueSink {
+
+  private final Writer mWriter;
+
+  /**
+   * @param writer
+   *          - where the lines are written
+   */
+  public NdjsonWriter(Writer writer) {
+    mWriter = writer;
+  }
+
+  /**
+   * Write all issues.
+   *
+   * @param issues
+   *          - the issues
+   */
+  public void write(Collection<IssueEx> issues) {
+    issues.forEach(this::accept);
+  }
+
+  @Override
+  public void accept(IssueEx issue) {
+    try {
+      mWriter.write("{\"ruleKey\":");
+      JsonUtil.writeString(mWriter, issue.getRuleKey());
+      mWriter.write(",\"severity\":");
+      JsonUtil.writeString(mWriter, String.valueOf(issue.getSeverity()));
+      mWriter.write(",\"type\":");
+      JsonUtil.writeString(mWriter, String.valueOf(issue.getType()));
+      mWriter.write(",\"path\":");
+      JsonUtil.writeString(mWriter, issue.getInputFileRelativePath());
+      if (issue.getStartLine() != null) {
+        mWriter.write(String.format(
+            ",\"textRange\":{\"startLine\":%d,\"startLineOffset\":%d,\"endLine\":%d,\"endLineOffset\":%d}",
+            issue.getStartLine(), issue.getStartLineOffset(), issue.getEndLine(), issue.getEndLineOffset()));
+      }
+      mWriter.write(",\"message\":");
+      JsonUtil.writeString(mWriter, issue.getMessage());
+      mWriter.write("}\n");
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+}
@@ -0,0 +1,164 @@
+package se.solrike.sonarlint.impl.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import se.solrike.sonarlint.impl.IssueEx;
+import se.solrike.sonarlint.impl.MarkdownCache;
+
+/**
+ * Splits the issues of a SARIF report into parts that are below a max number of results and a max size, e.g. to stay
+ * below the upload limit of Github code scanning. The size of each part is counted from the JSON of its results and
+ * rules, each part only has the rules of its own results.
+ *
+ * @author Lucas Persson
+ */
+public class SarifSplitter {
+
+  // the start of the document and the tool without any rules
+  private static final int BASE_SIZE = 512;
+
+  private final int mMaxResults;
+  private final long mMaxSize;
+  private final SarifWriter mMeasurer;
+  private final CountingWriter mCounter = new CountingWriter();
+  // rule key : size of the rule
+  private final Map<String, Long> mRuleSizes = new HashMap<>();
+
+  /**
+   * @param projectDir
+   *          - the project directory the file paths are relative to
+   * @param markdownCache
+   *          - cache of the rule descriptions converted to markdown
+   * @param maxResults
+   *          - max number of results per part
+   * @param maxSize
+   *          - max size in bytes per part
+   */
+  public SarifSplitter(File projectDir, MarkdownCache markdownCache, int maxResults, long maxSize) {
+    mMaxResults = maxResults;
+    mMaxSize = maxSize;
+    mMeasurer = new SarifWriter(mCounter, projectDir, markdownCache);
+  }
+
+  /**
+   * Split the issues, the order of the issues is kept.
+   *
+   * @param issues
+   *          - the issues
+   *
+   * @return the issues of each part, at least one part
+   */
+  public List<List<IssueEx>> split(List<IssueEx> issues) {
+    List<List<IssueEx>> parts = new ArrayList<>();
+    List<IssueEx> part = new ArrayList<>();
+    Set<String> ruleKeys = new HashSet<>();
+    long size = BASE_SIZE;
+    try {
+      for (IssueEx issue : issues) {
+        long issueSize = measureResult(issue) + (ruleKeys.contains(issue.getRuleKey()) ? 0 : measureRule(issue));
+        if (!part.isEmpty() && (part.size() >= mMaxResults || size + issueSize > mMaxSize)) {
+          parts.add(part);
+          part = new ArrayList<>();
+          ruleKeys.clear();
+          size = BASE_SIZE;
+          issueSize = measureResult(issue) + measureRule(issue);
+        }
+        part.add(issue);
+        ruleKeys.add(issue.getRuleKey());
+        size += issueSize;
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    parts.add(part);
+    return parts;
+  }
+
+  /**
+   * The file of a part. The first part is the report file and the others get the number before the extension, e.g.
+   * <code>sonarlintMain-2.sarif.gz</code>.
+   *
+   * @param file
+   *          - the report file
+   * @param part
+   *          - index of the part, 0 based
+   *
+   * @return the file of the part
+   */
+  public static File getPartFile(File file, int part) {
+    if (part == 0) {
+      return file;
+    }
+    String name = file.getName();
+    String suffix = "";
+    if (name.endsWith(".gz")) {
+      suffix = ".gz";
+      name = name.substring(0, name.length() - suffix.length());
+    }
+    int dot = name.lastIndexOf('.');
+    if (dot > 0) {
+      suffix = name.substring(dot) + suffix;
+      name = name.substring(0, dot);
+    }
+    return new File(file.getParentFile(), name + "-" + (part + 1) + suffix);
+  }
+
+  // separator included
+  private long measureResult(IssueEx issue) throws IOException {
+    mCounter.mCount = 1;
+    mMeasurer.writeResult(issue);
+    return mCounter.mCount;
+  }
+
+  private long measureRule(IssueEx issue) throws IOException {
+    Long size = mRuleSizes.get(issue.getRuleKey());
+    if (size == null) {
+      mCounter.mCount = 1;
+      mMeasurer.writeRule(issue);
+      size = mCounter.mCount;
+      mRuleSizes.put(issue.getRuleKey(), size);
+    }
+    return size;
+  }
+
+  // the SARIF is ASCII since other characters are escaped so the number of chars is the number of bytes
+  private static class CountingWriter extends Writer {
+    private long mCount;
+
+    @Override
+    public void write(int c) {
+      mCount++;
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+      mCount += len;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+      mCount += len;
+    }
+
+    @Override
+    public void flush() {
+      // nothing is written
+    }
+
+    @Override
+    public void close() {
+      // nothing is written
+    }
+  }
+
+}
@@ -0,0 +1,261 @@
+package se.solrike.sonarlint.impl.util;
+
+import static java.util.Map.entry;
+import static java.util.Map.ofEntries;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.sonarsource.sonarlint.core.client.api.standalone.StandaloneRuleDetails;
+import org.sonarsource.sonarlint.core.commons.IssueSeverity;
+
+import io.github.furstenheim.CodeBlockStyle;
+import io.github.furstenheim.CopyDown;
+import io.github.furstenheim.OptionsBuilder;
+import se.solrike.sonarlint.impl.IssueEx;
+import se.solrike.sonarlint.impl.IssueSink;
+import se.solrike.sonarlint.impl.MarkdownCache;
+
+/**
+ * Writes SARIF 2.1.0 JSON (https://sarifweb.azurewebsites.net) to be used when running in Github actions, Azure DevOps
+ * or AWS CodeCatalyst. The JSON is written in a single pass so the memory usage doesn't grow with the number of
+ * issues, only with the number of rules.
+ * <p>
+ * Either all issues are written with {@link #write(Collection)} or the issues are given one by one as a
+ * {@link IssueSink}. In the latter case the rules are written after the results when the sink is closed since all rules
+ * are not known before.
+ *
+ * @author Lucas Persson
+ */
+public class SarifWriter implements IssueSink {
+
+  // @formatter:off
+  //CHECKSTYLE:OFF
+  private static final Map<IssueSeverity, String> sIssueSeverityToLevel = ofEntries(
+      entry(IssueSeverity.BLOCKER,  "error"),
+      entry(IssueSeverity.CRITICAL, "error"),
+      entry(IssueSeverity.MAJOR,    "error"),
+      entry(IssueSeverity.MINOR,    "warning"),
+      entry(IssueSeverity.INFO,     "note")
+      );
+  // @formatter:on
+  // CHECKSTYLE:ON
+
+  private static final String RULES_BASE_URI = "https://rules.sonarsource.com";
+
+  private final Writer mWriter;
+  private final String mUriBaseId;
+  private final MarkdownCache mMarkdownCache;
+  private final CopyDown mMarkDownConverter = new CopyDown(
+      OptionsBuilder.anOptions().withCodeBlockStyle(CodeBlockStyle.FENCED).build());
+  // rule key : first issue of the rule, used when streaming
+  private final Map<String, IssueEx> mRules = new LinkedHashMap<>();
+  private boolean mIsStarted;
+
+  /**
+   * @param writer
+   *          - where the JSON is written
+   * @param projectDir
+   *          - the project directory the file paths are relative to
+   */
+  public SarifWriter(Writer writer, File projectDir) {
+    this(writer, projectDir, new MarkdownCache(null));
+  }
+
+  /**
+   * @param writer
+   *          - where the JSON is written
+   * @param projectDir
+   *          - the project directory the file paths are relative to
+   * @param markdownCache
+   *          - cache of the rule descriptions converted to markdown
+   */
+  public SarifWriter(Writer writer, File projectDir, MarkdownCache markdownCache) {
+    mWriter = writer;
+    mUriBaseId = "file://" + projectDir.getAbsolutePath() + File.separator;
+    mMarkdownCache = markdownCache;
+  }
+
+  /**
+   * Write the whole document with the rules before the results.
+   *
+   * @param issues
+   *          - the issues
+   */
+  public void write(Collection<IssueEx> issues) {
+    // extract all unique rules from the issues
+    Map<String, IssueEx> rules = new LinkedHashMap<>();
+    issues.forEach(issue -> rules.putIfAbsent(issue.getRuleKey(), issue));
+    write(issues, rules.values());
+  }
+
+  /**
+   * Write the whole document with the rules before the results.
+   *
+   * @param issues
+   *          - the issues
+   * @param rules
+   *          - the first issue of each rule
+   */
+  public void write(Collection<IssueEx> issues, Collection<IssueEx> rules) {
+    try {
+      writeStart();
+      writeTool(rules);
+      mWriter.write(",\"results\":[");
+      boolean isFirst = true;
+      for (IssueEx issue : issues) {
+        if (!isFirst) {
+          mWriter.write(',');
+        }
+        isFirst = false;
+        writeResult(issue);
+      }
+      mWriter.write("]}]}");
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void accept(IssueEx issue) {
+    try {
+      if (mIsStarted) {
+        mWriter.write(',');
+      }
+      else {
+        writeStart();
+        mWriter.write("\"results\":[");
+        mIsStarted = true;
+      }
+      writeResult(issue);
+      mRules.putIfAbsent(issue.getRuleKey(), issue);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void close() {
+    try {
+      if (!mIsStarted) {
+        writeStart();
+        mWriter.write("\"results\":[");
+      }
+      mWriter.write("],");
+      writeTool(mRules.values());
+      mWriter.write("}]}");
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  protected void writeStart() throws IOException {
+    mWriter.write("{\"$schema\":\"https://schemastore.azurewebsites.net/schemas/json/sarif-2.1.0.json\"");
+    mWriter.write(",\"version\":\"2.1.0\",\"runs\":[{");
+  }
+
+  protected void writeTool(Collection<IssueEx> rules) throws IOException {
+    mWriter.write("\"tool\":{\"driver\":{\"name\":\"Sonarlint\"");
+    mWriter.write(",\"informationUri\":\"https://github.com/Lucas3oo/sonarlint-gradle-plugin\"");
+    mWriter.write(",\"version\":\"1.0.0\",\"rules\":[");
+    boolean isFirst = true;
+    for (IssueEx rule : rules) {
+      if (!isFirst) {
+        mWriter.write(',');
+      }
+      isFirst = false;
+      writeRule(rule);
+    }
+    mWriter.write("]}}");
+  }
+
+  protected void writeRule(IssueEx rule) throws IOException {
+    Optional<StandaloneRuleDetails> rulesDetails = rule.getRulesDetails();
+    mWriter.write("{\"id\":");
+    writeString(rule.getRuleKey());
+    mWriter.write(",\"helpUri\":");
+    writeString(buildHelpUri(rule.getRuleKey(), rulesDetails));
+    mWriter.write(",\"defaultConfiguration\":{\"level\":");
+    writeString(sIssueSeverityToLevel.get(rule.getSeverity()));
+    mWriter.write("},\"shortDescription\":{\"text\":");
+    writeString(rule.getMessage());
+    mWriter.write("},\"fullDescription\":{\"text\":");
+    writeString(rule.getMessage());
+    mWriter.write("},\"help\":{\"text\":\"\",\"markdown\":");
+    writeString(rulesDetails
+        .map(rd -> mMarkdownCache.get(rule.getRuleKey(), rd.getHtmlDescription(),
+            html -> mMarkDownConverter.convert(fixPreCode(html))))
+        .orElseGet(() -> mMarkDownConverter.convert(rule.getMessage())));
+    mWriter.write("},\"properties\":{\"tags\":[");
+    writeString(String.valueOf(rule.getType()));
+    if (rulesDetails.isPresent()) {
+      for (String tag : rulesDetails.get().getTags()) {
+        mWriter.write(',');
+        writeString(tag);
+      }
+    }
+    mWriter.write("]}}");
+  }
+
+  protected void writeResult(IssueEx issue) throws IOException {
+    mWriter.write("{\"ruleId\":");
+    writeString(issue.getRuleKey());
+    mWriter.write(",\"level\":");
+    writeString(sIssueSeverityToLevel.get(issue.getSeverity()));
+    mWriter.write(",\"message\":{\"text\":");
+    writeString(issue.getMessage());
+    mWriter.write("},\"locations\":[{\"physicalLocation\":{\"artifactLocation\":{\"uriBaseId\":");
+    writeString(mUriBaseId);
+    mWriter.write(",\"uri\":");
+    writeString(issue.getInputFileRelativePath());
+    mWriter.write("},\"region\":{");
+    String separator = "";
+    separator = writeRegionValue(separator, "startLine", issue.getStartLine());
+    separator = writeRegionValue(separator, "startColumn", issue.getStartLineOffset());
+    separator = writeRegionValue(separator, "endLine", issue.getEndLine());
+    writeRegionValue(separator, "endColumn", issue.getEndLineOffset());
+    mWriter.write("}}}]}");
+  }
+
+  // values that are missing or 0 are left out
+  private String writeRegionValue(String separator, String name, Integer value) throws IOException {
+    if (value == null || value == 0) {
+      return separator;
+    }
+    mWriter.write(separator);
+    writeString(name);
+    mWriter.write(':');
+    mWriter.write(value.toString());
+    return ",";
+  }
+
+  protected void writeString(String value) throws IOException {
+    JsonUtil.writeString(mWriter, value);
+  }
+
+  protected String fixPreCode(String html) {
+    return html.replace("<pre>", "<pre><code>").replace("</pre>", "</pre></code>");
+  }
+
+  protected String buildHelpUri(String ruleKey, Optional<StandaloneRuleDetails> ruleDetails) {
+    // if the key is like java:S1176 then it has a numeric "id" in it
+    if (ruleKey.matches(".*:S[0-9]+")) {
+      String id = ruleKey.substring(ruleKey.indexOf(":S") + 2);
+      return RULES_BASE_URI
+          + ruleDetails.map(rd -> "/" + rd.getLanguage() + "/RSPEC-" + Integer.parseInt(id)).orElse("");
+    }
+    else {
+      return RULES_BASE_URI;
+    }
+  }
+
+}
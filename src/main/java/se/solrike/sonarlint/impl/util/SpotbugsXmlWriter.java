@@ -0,0 +1,227 @@
+package se.solrike.sonarlint.impl.util;
+
+import static java.util.Map.entry;
+import static java.util.Map.ofEntries;
+
+import java.io.File;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.sonarsource.sonarlint.core.client.api.standalone.StandaloneRuleDetails;
+import org.sonarsource.sonarlint.core.commons.IssueSeverity;
+import org.sonarsource.sonarlint.core.commons.RuleType;
+
+import se.solrike.sonarlint.impl.BugPattern;
+import se.solrike.sonarlint.impl.IssueEx;
+import se.solrike.sonarlint.impl.IssueSink;
+
+/**
+ * Writes the issues as a Spotbugs XML report, e.g. to be parsed by Github actions. The XML is written in a single pass
+ * with StAX so the memory usage doesn't grow with the number of issues, only with the number of rules since the bug
+ * patterns are written last.
+ * <p>
+ * Either all issues are written with {@link #write(Collection)} or the issues are given one by one as a
+ * {@link IssueSink} and the report is done when the sink is closed.
+ *
+ * @author Lucas Persson
+ */
+public class SpotbugsXmlWriter implements IssueSink {
+
+  // @formatter:off
+  //CHECKSTYLE:OFF
+  private static final Map<IssueSeverity, Integer> sIssueSeverityToRank = ofEntries(
+      entry(IssueSeverity.BLOCKER,  1),
+      entry(IssueSeverity.CRITICAL, 3),
+      entry(IssueSeverity.MAJOR,    5),
+      entry(IssueSeverity.MINOR,    7),
+      entry(IssueSeverity.INFO,     20)
+      );
+  private static final Map<RuleType, String> sRuleTypeToCategory = ofEntries(
+      entry(RuleType.BUG,              "CORRECTNESS"),
+      entry(RuleType.CODE_SMELL,       "STYLE"),
+      entry(RuleType.VULNERABILITY,    "SECURITY"),
+      entry(RuleType.SECURITY_HOTSPOT, "SECURITY")
+      );
+  // @formatter:on
+  // CHECKSTYLE:ON
+
+  private final XMLStreamWriter mXmlWriter;
+  private final Set<File> mSrcDirs;
+  // rule key : bug pattern
+  private final Map<String, BugPattern> mBugPatterns = new LinkedHashMap<>();
+  private boolean mIsStarted;
+  // the issues are grouped by file so the class name is only computed once per file
+  private String mLastSourcePath;
+  private String mLastClassname;
+
+  /**
+   * @param writer
+   *          - where the XML is written
+   * @param srcDirs
+   *          - the source directories of the project
+   */
+  public SpotbugsXmlWriter(Writer writer, Set<File> srcDirs) {
+    try {
+      mXmlWriter = XMLOutputFactory.newInstance().createXMLStreamWriter(writer);
+    }
+    catch (XMLStreamException e) {
+      throw new IllegalStateException("Could not create the XML writer", e);
+    }
+    mSrcDirs = srcDirs;
+  }
+
+  /**
+   * Write the whole report.
+   *
+   * @param issues
+   *          - the issues
+   */
+  public void write(Collection<IssueEx> issues) {
+    issues.forEach(this::accept);
+    close();
+  }
+
+  @Override
+  public void accept(IssueEx issue) {
+    try {
+      if (!mIsStarted) {
+        writeStart();
+        mIsStarted = true;
+      }
+      writeBugInstance(issue);
+      mBugPatterns.computeIfAbsent(issue.getRuleKey(),
+          ruleKey -> new BugPattern(ruleKey, sRuleTypeToCategory.get(issue.getType()), issue.getMessage(),
+              issue.getRulesDetails().map(StandaloneRuleDetails::getHtmlDescription).orElse(issue.getMessage())));
+    }
+    catch (XMLStreamException e) {
+      throw new IllegalStateException("Could not write the XML report", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    try {
+      if (!mIsStarted) {
+        writeStart();
+        mIsStarted = true;
+      }
+      for (BugPattern bugPattern : mBugPatterns.values()) {
+        writeBugPattern(bugPattern);
+      }
+      newLine(0);
+      mXmlWriter.writeEndElement();
+      mXmlWriter.writeEndDocument();
+      // doesn't close the underlying writer
+      mXmlWriter.close();
+    }
+    catch (XMLStreamException e) {
+      throw new IllegalStateException("Could not write the XML report", e);
+    }
+  }
+
+  protected void writeStart() throws XMLStreamException {
+    mXmlWriter.writeStartDocument("UTF-8", "1.0");
+    newLine(0);
+    mXmlWriter.writeStartElement("BugCollection");
+    newLine(1);
+    mXmlWriter.writeStartElement("Project");
+    for (File srcDir : mSrcDirs) {
+      newLine(2);
+      writeTextElement("SrcDir", srcDir.getAbsolutePath());
+    }
+    newLine(1);
+    mXmlWriter.writeEndElement();
+  }
+
+  protected void writeBugInstance(IssueEx issue) throws XMLStreamException {
+    String sourcePath = issue.getInputFileRelativePath();
+    if (!sourcePath.equals(mLastSourcePath)) {
+      mLastSourcePath = sourcePath;
+      mLastClassname = getClassname(sourcePath);
+    }
+    String classname = mLastClassname;
+    newLine(1);
+    mXmlWriter.writeStartElement("BugInstance");
+    mXmlWriter.writeAttribute("type", issue.getRuleKey());
+    mXmlWriter.writeAttribute("priority", "1");
+    mXmlWriter.writeAttribute("rank", String.valueOf(sIssueSeverityToRank.get(issue.getSeverity())));
+    mXmlWriter.writeAttribute("category", sRuleTypeToCategory.get(issue.getType()));
+    mXmlWriter.writeAttribute("instanceHash", String.valueOf(issue.getId()));
+    newLine(2);
+    writeCDataElement("ShortMessage", issue.getMessage());
+    newLine(2);
+    writeCDataElement("LongMessage", issue.getMessage());
+    newLine(2);
+    mXmlWriter.writeStartElement("Class");
+    mXmlWriter.writeAttribute("classname", classname);
+    mXmlWriter.writeAttribute("primary", "true");
+    newLine(3);
+    writeSourceLine(issue, classname, sourcePath);
+    newLine(3);
+    writeTextElement("Message", "In class " + classname);
+    newLine(2);
+    mXmlWriter.writeEndElement();
+    newLine(2);
+    writeSourceLine(issue, classname, sourcePath);
+    newLine(1);
+    mXmlWriter.writeEndElement();
+  }
+
+  protected void writeSourceLine(IssueEx issue, String classname, String sourcePath) throws XMLStreamException {
+    mXmlWriter.writeEmptyElement("SourceLine");
+    mXmlWriter.writeAttribute("classname", classname);
+    if (issue.getStartLine() != null) {
+      mXmlWriter.writeAttribute("start", issue.getStartLine().toString());
+    }
+    if (issue.getEndLine() != null) {
+      mXmlWriter.writeAttribute("end", issue.getEndLine().toString());
+    }
+    mXmlWriter.writeAttribute("sourcefile", issue.getFileName());
+    mXmlWriter.writeAttribute("sourcepath", sourcePath);
+  }
+
+  protected void writeBugPattern(BugPattern bugPattern) throws XMLStreamException {
+    newLine(1);
+    mXmlWriter.writeStartElement("BugPattern");
+    mXmlWriter.writeAttribute("type", bugPattern.getType());
+    mXmlWriter.writeAttribute("category", bugPattern.getCategory());
+    newLine(2);
+    writeTextElement("ShortMessage", bugPattern.getShortDescription());
+    newLine(2);
+    writeCDataElement("Details", bugPattern.getDetails());
+    newLine(1);
+    mXmlWriter.writeEndElement();
+  }
+
+  protected String getClassname(String filePath) {
+    return filePath.replace("src/main/java/", "")
+        .replace("src/test/java/", "")
+        .replace(".java", "")
+        .replace(File.separatorChar, '.');
+  }
+
+  private void writeTextElement(String name, String text) throws XMLStreamException {
+    mXmlWriter.writeStartElement(name);
+    mXmlWriter.writeCharacters(text);
+    mXmlWriter.writeEndElement();
+  }
+
+  private void writeCDataElement(String name, String text) throws XMLStreamException {
+    mXmlWriter.writeStartElement(name);
+    mXmlWriter.writeCData(text);
+    mXmlWriter.writeEndElement();
+  }
+
+  // indent like the report used to be so it is readable
+  private void newLine(int depth) throws XMLStreamException {
+    mXmlWriter.writeCharacters("\n" + "  ".repeat(depth));
+  }
+
+}
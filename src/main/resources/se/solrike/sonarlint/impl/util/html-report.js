@@ -0,0 +1,121 @@
+// Shows the issues of the Sonarlint HTML report one page at a time. The issues are JSON chunks that are only parsed
+// when an issue in them is needed.
+(function () {
+  'use strict';
+  var PAGE_SIZE = 200;
+  var container = document.getElementById('sl-issues');
+  var total = Number(container.dataset.count);
+  var chunkSize = Number(container.dataset.chunkSize);
+  var chunkElements = document.querySelectorAll('script.sl-chunk');
+  var chunks = [];
+  var rules = JSON.parse(document.getElementById('sl-rules').textContent);
+  var files = JSON.parse(document.getElementById('sl-files').textContent);
+  var ruleFilter = document.getElementById('sl-rule-filter');
+  var fileFilter = document.getElementById('sl-file-filter');
+  var list = document.getElementById('sl-list');
+  var ruleView = document.getElementById('sl-rule');
+  // indexes of the issues matching the filters, null when not filtered
+  var matches = null;
+  var page = 0;
+
+  function issue(i) {
+    var c = Math.floor(i / chunkSize);
+    if (!chunks[c]) {
+      chunks[c] = JSON.parse(chunkElements[c].textContent);
+    }
+    return chunks[c][i % chunkSize];
+  }
+
+  function count() {
+    return matches ? matches.length : total;
+  }
+
+  function addOption(select, value, text) {
+    var option = document.createElement('option');
+    option.value = value;
+    option.textContent = text;
+    select.appendChild(option);
+  }
+
+  function filter() {
+    var rule = Number(ruleFilter.value);
+    var file = Number(fileFilter.value);
+    page = 0;
+    matches = null;
+    if (rule >= 0 || file >= 0) {
+      matches = [];
+      for (var i = 0; i < total; i++) {
+        var row = issue(i);
+        if ((rule < 0 || row[0] === rule) && (file < 0 || row[1] === file)) {
+          matches.push(i);
+        }
+      }
+    }
+    render();
+  }
+
+  function showRule(index) {
+    var rule = rules[index];
+    ruleView.textContent = '';
+    var title = document.createElement('h1');
+    title.textContent = rule[3] + ' (' + rule[0] + ')';
+    ruleView.appendChild(title);
+    var template = document.getElementById('sl-rule-' + index);
+    if (template) {
+      ruleView.appendChild(template.content.cloneNode(true));
+    }
+    ruleView.scrollIntoView();
+  }
+
+  function render() {
+    var start = page * PAGE_SIZE;
+    var end = Math.min(count(), start + PAGE_SIZE);
+    var fragment = document.createDocumentFragment();
+    for (var n = start; n < end; n++) {
+      var row = issue(matches ? matches[n] : n);
+      var rule = rules[row[0]];
+      var item = document.createElement('li');
+      item.textContent = rule[1] + ' ' + rule[2] + ', ' + row[4] + ' (' + rule[0] + ') at ' + files[row[1]]
+          + (row[2] != null ? ':' + row[2] + ':' + row[3] : '');
+      item.dataset.rule = row[0];
+      fragment.appendChild(item);
+    }
+    list.textContent = '';
+    list.appendChild(fragment);
+    document.getElementById('sl-range').textContent = (end > start ? start + 1 : 0) + '-' + end + ' of ' + count();
+  }
+
+  rules.forEach(function (rule, index) {
+    addOption(ruleFilter, index, rule[0] + ' ' + rule[3]);
+  });
+  files.forEach(function (file, index) {
+    addOption(fileFilter, index, file);
+  });
+  ruleFilter.addEventListener('change', filter);
+  fileFilter.addEventListener('change', filter);
+  document.getElementById('sl-prev').addEventListener('click', function () {
+    if (page > 0) {
+      page--;
+      render();
+    }
+  });
+  document.getElementById('sl-next').addEventListener('click', function () {
+    if ((page + 1) * PAGE_SIZE < count()) {
+      page++;
+      render();
+    }
+  });
+  list.addEventListener('click', function (event) {
+    if (event.target.dataset.rule) {
+      showRule(Number(event.target.dataset.rule));
+    }
+  });
+  document.querySelectorAll('a[data-rule]').forEach(function (link) {
+    link.addEventListener('click', function () {
+      ruleFilter.value = link.dataset.rule;
+      fileFilter.value = '-1';
+      filter();
+    });
+  });
+  render();
+})();
@@ -0,0 +1,338 @@
+package se.solrike.sonarlint;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+import org.gradle.api.logging.Logging;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonarsource.sonarlint.core.client.api.common.analysis.Issue;
+import org.sonarsource.sonarlint.core.commons.ImpactSeverity;
+import org.sonarsource.sonarlint.core.commons.IssueSeverity;
+import org.sonarsource.sonarlint.core.commons.RuleType;
+import org.sonarsource.sonarlint.core.commons.SoftwareQuality;
+
+import com.sun.net.httpserver.HttpServer;
+
+import se.solrike.sonarlint.impl.AnalysisCache;
+import se.solrike.sonarlint.impl.AnalysisResultCache;
+import se.solrike.sonarlint.impl.ClientInputFileImpl;
+import se.solrike.sonarlint.impl.HttpAnalysisCache;
+import se.solrike.sonarlint.impl.IssueRecord;
+import se.solrike.sonarlint.impl.IssueStore;
+import se.solrike.sonarlint.impl.LocalAnalysisCache;
+import se.solrike.sonarlint.impl.MarkdownCache;
+import se.solrike.sonarlint.impl.SonarlintEngineService.EngineKey;
+
+class AnalysisCacheTest {
+
+  @TempDir
+  Path mDir;
+  HttpServer mServer;
+
+  @AfterEach
+  void tearDown() {
+    if (mServer != null) {
+      mServer.stop(0);
+    }
+  }
+
+  @Test
+  void localCacheEvictsLeastRecentlyUsed() {
+    // given a local cache with max size of 2.5 entries
+    LocalAnalysisCache cache = new LocalAnalysisCache(mDir.toFile(), 250, Logging.getLogger(getClass()));
+    cache.store("aa01", new byte[100]);
+    cache.store("aa02", new byte[100]);
+    mDir.resolve("aa/aa01").toFile().setLastModified(System.currentTimeMillis() - 20_000);
+    mDir.resolve("aa/aa02").toFile().setLastModified(System.currentTimeMillis() - 10_000);
+    // and the first entry is used
+    assertThat(cache.load("aa01")).hasSize(100);
+
+    // when a third entry is stored and the cache is closed
+    cache.store("aa03", new byte[100]);
+    cache.close();
+
+    // then the least recently used entry shall be evicted
+    assertThat(cache.load("aa02")).isNull();
+    assertThat(cache.load("aa01")).isNotNull();
+    assertThat(cache.load("aa03")).isNotNull();
+  }
+
+  @Test
+  void localCacheTracksSizeInIndex() throws IOException {
+    // given a local cache that has been closed once
+    LocalAnalysisCache cache = new LocalAnalysisCache(mDir.toFile(), 250, Logging.getLogger(getClass()));
+    cache.store("aa01", new byte[100]);
+    cache.close();
+    assertThat(mDir.resolve("cache.size")).hasContent("100");
+
+    // when an entry is replaced and another one stored by a second cache
+    cache = new LocalAnalysisCache(mDir.toFile(), 250, Logging.getLogger(getClass()));
+    cache.store("aa01", new byte[50]);
+    cache.store("bb01", new byte[100]);
+    cache.close();
+
+    // then the size shall be updated without eviction
+    assertThat(mDir.resolve("cache.size")).hasContent("150");
+    assertThat(cache.load("aa01")).hasSize(50);
+    assertThat(cache.load("bb01")).hasSize(100);
+  }
+
+  @Test
+  void engineWorkDirIsKeyedByPluginContent() throws IOException {
+    // given the same plugin resolved to two locations and another plugin
+    Path plugin1 = createFile("repo1/sonar-java-plugin.jar", "java").toPath();
+    Path plugin2 = createFile("repo2/sonar-java-plugin.jar", "java").toPath();
+    Path plugin3 = createFile("repo1/sonar-html-plugin.jar", "html").toPath();
+    Path workDir = mDir.resolve("work");
+
+    // when the work directories of the engines are resolved
+    Path workDir1 = new EngineKey(Set.of(plugin1), null, null).getWorkDir(workDir);
+    Path workDir2 = new EngineKey(Set.of(plugin2), null, null).getWorkDir(workDir);
+    Path workDir3 = new EngineKey(Set.of(plugin1, plugin3), null, null).getWorkDir(workDir);
+
+    // then the same plugin shall give the same work directory and other plugins another one
+    assertThat(workDir1).isEqualTo(workDir2).hasParentRaw(workDir);
+    assertThat(workDir3).isNotEqualTo(workDir1).hasParentRaw(workDir);
+  }
+
+  @Test
+  void httpCacheLoadsAndStores() throws IOException {
+    // given a stub HTTP cache server
+    String url = startStubServer();
+    HttpAnalysisCache cache = new HttpAnalysisCache(url, Logging.getLogger(getClass()));
+
+    // when an entry is stored
+    cache.store("bb01", "hello".getBytes(StandardCharsets.UTF_8));
+
+    // then it can be loaded and a missing entry is null
+    assertThat(new String(cache.load("bb01"), StandardCharsets.UTF_8)).isEqualTo("hello");
+    assertThat(cache.load("bb02")).isNull();
+  }
+
+  @Test
+  void cachedIssuesAreRestored() throws IOException {
+    // given a file that has been analysed with one issue
+    File source = Files.writeString(mDir.resolve("Hello.java"), "public class Hello {}").toFile();
+    Issue issue = mock(Issue.class);
+    when(issue.getRuleKey()).thenReturn("java:S1220");
+    when(issue.getSeverity()).thenReturn(IssueSeverity.MINOR);
+    when(issue.getType()).thenReturn(RuleType.CODE_SMELL);
+    when(issue.getMessage()).thenReturn("Move this file to a named package.");
+    when(issue.getImpacts()).thenReturn(Map.of(SoftwareQuality.MAINTAINABILITY, ImpactSeverity.LOW));
+    when(issue.getInputFile())
+        .thenReturn(new ClientInputFileImpl(mDir, source.toPath(), false, StandardCharsets.UTF_8));
+    List<AnalysisCache> backends = List
+        .of(new LocalAnalysisCache(mDir.resolve("cache").toFile(), 1024 * 1024, Logging.getLogger(getClass())));
+    String fingerprint = AnalysisResultCache.fingerprint(Set.of(), Set.of(), Map.of(), List.of(), List.of(), "11",
+        null, false);
+    AnalysisResultCache cache = new AnalysisResultCache(backends, mDir, fingerprint, Logging.getLogger(getClass()));
+    assertThat(cache.loadCachedResults(Set.of(source), new IssueStore(mDir))).containsExactly(source);
+    cache.storeResults(List.of(issue));
+
+    // when the same file is looked up again
+    cache = new AnalysisResultCache(backends, mDir, fingerprint, Logging.getLogger(getClass()));
+    IssueStore issueStore = new IssueStore(mDir);
+    Set<File> missed = cache.loadCachedResults(Set.of(source), issueStore);
+
+    // then the issue shall come from the cache
+    assertThat(missed).isEmpty();
+    List<IssueRecord> issues = issueStore.getIssues();
+    assertThat(issues).hasSize(1);
+    assertThat(issues.get(0).getRuleKey()).isEqualTo("java:S1220");
+    assertThat(issues.get(0).getInputFile().relativePath()).isEqualTo("Hello.java");
+    assertThat(issues.get(0).getImpacts()).containsEntry(SoftwareQuality.MAINTAINABILITY, ImpactSeverity.LOW);
+
+    // and a change of the rules shall miss the cache
+    String otherFingerprint = AnalysisResultCache.fingerprint(Set.of("java:S1176"), Set.of(), Map.of(), List.of(),
+        List.of(), "11", null, false);
+    cache = new AnalysisResultCache(backends, mDir, otherFingerprint, Logging.getLogger(getClass()));
+    assertThat(cache.loadCachedResults(Set.of(source), new IssueStore(mDir))).containsExactly(source);
+  }
+
+  @Test
+  void entriesWithOtherClassesAreRejected() throws IOException {
+    // given a cache entry that holds another class than the issue records, e.g. from a shared cache
+    File source = Files.writeString(mDir.resolve("Hello.java"), "public class Hello {}").toFile();
+    Map<String, byte[]> entries = new HashMap<>();
+    AnalysisCache backend = new AnalysisCache() {
+      @Override
+      public byte[] load(String key) {
+        return entries.get(key);
+      }
+
+      @Override
+      public void store(String key, byte[] value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+          out.writeObject(new ArrayList<>(List.of(new File("evil"))));
+        }
+        catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        entries.put(key, bytes.toByteArray());
+      }
+    };
+    String fingerprint = AnalysisResultCache.fingerprint(Set.of(), Set.of(), Map.of(), List.of(), List.of(), "11",
+        null, false);
+    AnalysisResultCache cache = new AnalysisResultCache(List.of(backend), mDir, fingerprint,
+        Logging.getLogger(getClass()));
+    cache.loadCachedResults(Set.of(source), new IssueStore(mDir));
+    cache.storeResults(List.of());
+
+    // when the file is looked up
+    cache = new AnalysisResultCache(List.of(backend), mDir, fingerprint, Logging.getLogger(getClass()));
+    Set<File> missed = cache.loadCachedResults(Set.of(source), new IssueStore(mDir));
+
+    // then the entry shall be rejected and the file analysed
+    assertThat(missed).containsExactly(source);
+  }
+
+  @Test
+  void globalIssuesAreRestored() throws IOException {
+    // given a file without issues that has been analysed with one global issue
+    File source = Files.writeString(mDir.resolve("Hello.java"), "public class Hello {}").toFile();
+    Issue issue = mock(Issue.class);
+    when(issue.getRuleKey()).thenReturn("secrets:S6290");
+    when(issue.getSeverity()).thenReturn(IssueSeverity.MAJOR);
+    when(issue.getType()).thenReturn(RuleType.VULNERABILITY);
+    when(issue.getMessage()).thenReturn("A global issue");
+    List<AnalysisCache> backends = List
+        .of(new LocalAnalysisCache(mDir.resolve("cache").toFile(), 1024 * 1024, Logging.getLogger(getClass())));
+    File classes = Files.createDirectories(mDir.resolve("classes")).toFile();
+    Files.writeString(classes.toPath().resolve("Hello.class"), "v1");
+    String fingerprint = AnalysisResultCache.fingerprint(Set.of(), Set.of(), Map.of(), List.of(), List.of(classes),
+        "11", "18.17.0", false);
+    AnalysisResultCache cache = new AnalysisResultCache(backends, mDir, fingerprint, Logging.getLogger(getClass()));
+    assertThat(cache.loadCachedResults(Set.of(source), new IssueStore(mDir))).containsExactly(source);
+    cache.storeResults(List.of(issue));
+
+    // when the same file is looked up again
+    cache = new AnalysisResultCache(backends, mDir, fingerprint, Logging.getLogger(getClass()));
+    IssueStore issueStore = new IssueStore(mDir);
+    Set<File> missed = cache.loadCachedResults(Set.of(source), issueStore);
+
+    // then the global issue shall come from the cache
+    assertThat(missed).isEmpty();
+    assertThat(issueStore.getIssues()).extracting(IssueRecord::getRuleKey).containsExactly("secrets:S6290");
+
+    // and a change of a class on the classpath or the node version shall change the fingerprint
+    Files.writeString(classes.toPath().resolve("Hello.class"), "v2");
+    assertThat(AnalysisResultCache.fingerprint(Set.of(), Set.of(), Map.of(), List.of(), List.of(classes), "11",
+        "18.17.0", false)).isNotEqualTo(fingerprint);
+    Files.writeString(classes.toPath().resolve("Hello.class"), "v1");
+    assertThat(AnalysisResultCache.fingerprint(Set.of(), Set.of(), Map.of(), List.of(), List.of(classes), "11",
+        "20.0.0", false)).isNotEqualTo(fingerprint);
+    // but not the location of the classpath
+    File movedClasses = Files.createDirectories(mDir.resolve("other/classes")).toFile();
+    Files.writeString(movedClasses.toPath().resolve("Hello.class"), "v1");
+    assertThat(AnalysisResultCache.fingerprint(Set.of(), Set.of(), Map.of(), List.of(), List.of(movedClasses), "11",
+        "18.17.0", false)).isEqualTo(fingerprint);
+
+    // and without the cached global issues all files shall be analysed
+    Map<String, byte[]> entries = new LinkedHashMap<>();
+    AnalysisCache fileEntriesOnly = new AnalysisCache() {
+      @Override
+      public byte[] load(String key) {
+        return entries.get(key);
+      }
+
+      @Override
+      public void store(String key, byte[] value) {
+        entries.put(key, value);
+      }
+    };
+    cache = new AnalysisResultCache(List.of(fileEntriesOnly), mDir, fingerprint, Logging.getLogger(getClass()));
+    cache.loadCachedResults(Set.of(source), new IssueStore(mDir));
+    cache.storeResults(List.of(issue));
+    // the global issues are stored last
+    entries.remove(new ArrayList<>(entries.keySet()).get(1));
+    cache = new AnalysisResultCache(List.of(fileEntriesOnly), mDir, fingerprint, Logging.getLogger(getClass()));
+    assertThat(cache.loadCachedResults(Set.of(source), new IssueStore(mDir))).containsExactly(source);
+  }
+
+  @Test
+  void markdownCacheConvertsEachDescriptionOnce() {
+    // given a disk cache that has one of the descriptions
+    AnalysisCache disk = mock(AnalysisCache.class);
+    String cachedHtml = "<p>cached " + System.nanoTime() + "</p>";
+    String newHtml = "<p>new " + System.nanoTime() + "</p>";
+    MarkdownCache markdownCache = new MarkdownCache(disk);
+    String cachedKey = markdownCache.getKey("java:S1220", cachedHtml);
+    when(disk.load(cachedKey)).thenReturn("cached".getBytes(StandardCharsets.UTF_8));
+    List<String> converted = new ArrayList<>();
+    UnaryOperator<String> converter = html -> {
+      converted.add(html);
+      return "converted";
+    };
+
+    // when the descriptions are converted many times
+    for (int i = 0; i < 3; i++) {
+      assertThat(markdownCache.get("java:S1220", cachedHtml, converter)).isEqualTo("cached");
+      assertThat(markdownCache.get("java:S1186", newHtml, converter)).isEqualTo("converted");
+    }
+
+    // then only the new description is converted, once, and stored on disk
+    assertThat(converted).containsExactly(newHtml);
+    verify(disk).store(markdownCache.getKey("java:S1186", newHtml), "converted".getBytes(StandardCharsets.UTF_8));
+    assertThat(markdownCache.getMisses()).isEqualTo(1);
+    assertThat(markdownCache.getHits()).isEqualTo(5);
+  }
+
+  File createFile(String name, String content) throws IOException {
+    Path file = mDir.resolve(name);
+    Files.createDirectories(file.getParent());
+    Files.writeString(file, content);
+    return file.toFile();
+  }
+
+  String startStubServer() throws IOException {
+    Map<String, byte[]> entries = new ConcurrentHashMap<>();
+    mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    mServer.createContext("/cache/", exchange -> {
+      String key = exchange.getRequestURI().getPath().substring("/cache/".length());
+      if ("PUT".equals(exchange.getRequestMethod())) {
+        try (InputStream in = exchange.getRequestBody()) {
+          entries.put(key, in.readAllBytes());
+        }
+        exchange.sendResponseHeaders(201, -1);
+      }
+      else if (entries.containsKey(key)) {
+        exchange.sendResponseHeaders(200, entries.get(key).length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(entries.get(key));
+        }
+      }
+      else {
+        exchange.sendResponseHeaders(404, -1);
+      }
+      exchange.close();
+    });
+    mServer.start();
+    return "http://127.0.0.1:" + mServer.getAddress().getPort() + "/cache";
+  }
+
+}
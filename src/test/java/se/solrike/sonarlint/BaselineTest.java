@@ -0,0 +1,60 @@
+package se.solrike.sonarlint;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonarsource.sonarlint.core.client.api.common.analysis.Issue;
+import org.sonarsource.sonarlint.core.commons.TextRange;
+
+import se.solrike.sonarlint.impl.Baseline;
+import se.solrike.sonarlint.impl.IssueCollector;
+import se.solrike.sonarlint.impl.IssueEx;
+
+class BaselineTest {
+
+  @TempDir
+  Path mDir;
+
+  @Test
+  void onlyNewIssuesAreReported() throws IOException {
+    // given a baseline with two issues on the same line and one on another line
+    Files.writeString(mDir.resolve("A.java"), "class A {\n  int a;\n  int b;\n}\n");
+    File baselineFile = mDir.resolve("baseline.txt").toFile();
+    Baseline.write(baselineFile,
+        collect(createIssue("java:S1", 2), createIssue("java:S1", 2), createIssue("java:S2", 3)));
+    Baseline baseline = Baseline.read(baselineFile);
+    assertThat(baseline.size()).isEqualTo(3);
+
+    // when lines are added above the issues, the code is re-indented and a third issue is on the line
+    Files.writeString(mDir.resolve("A.java"), "// header\nclass A {\n    int a;\n    int b;\n    int c;\n}\n");
+    List<IssueEx> issues = collect(createIssue("java:S1", 3), createIssue("java:S1", 3), createIssue("java:S1", 3),
+        createIssue("java:S2", 5), createIssue("java:S3", 4));
+    // the lines are hashed when the issues are found so the file isn't read when matching
+    Files.delete(mDir.resolve("A.java"));
+    List<IssueEx> newIssues = baseline.getNewIssues(issues);
+
+    // then only the issues not in the baseline are new
+    assertThat(newIssues).containsExactly(issues.get(2), issues.get(3), issues.get(4));
+  }
+
+  List<IssueEx> collect(Issue... issues) {
+    IssueCollector collector = new IssueCollector();
+    for (Issue issue : issues) {
+      collector.handle(issue);
+    }
+    return collector.getIssues().stream().map(IssueEx.class::cast).collect(Collectors.toList());
+  }
+
+  Issue createIssue(String ruleKey, int line) {
+    return TestIssues.createIssue(ruleKey, mDir, "A.java", new TextRange(line, 2, line, 4));
+  }
+
+}
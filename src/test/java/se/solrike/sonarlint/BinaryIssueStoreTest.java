@@ -0,0 +1,64 @@
+package se.solrike.sonarlint;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonarsource.sonarlint.core.client.api.common.analysis.Issue;
+import org.sonarsource.sonarlint.core.commons.IssueSeverity;
+import org.sonarsource.sonarlint.core.commons.RuleType;
+import org.sonarsource.sonarlint.core.commons.TextRange;
+
+import se.solrike.sonarlint.impl.BinaryIssueStore;
+import se.solrike.sonarlint.impl.IssueRecord;
+
+class BinaryIssueStoreTest {
+
+  @TempDir
+  Path mDir;
+
+  @Test
+  void issuesCanBeQueriedByFileAndRule() throws IOException {
+    // given issues in two files and one global issue
+    Issue issue = TestIssues.createIssue("java:S1186", mDir, "A.java", new TextRange(3, 2, 5, 4));
+    when(issue.getMessage()).thenReturn("Message of java:S1186 \u00e5");
+    List<IssueRecord> issues = List.of(createIssue("java:S1220", "A.java", new TextRange(1, 0, 1, 10)),
+        new IssueRecord(issue), createIssue("java:S1220", "dir/C.java", null), createIssue("java:S2095", null, null));
+    File file = mDir.resolve("issues.bin").toFile();
+
+    // when written and memory mapped
+    BinaryIssueStore.write(file, issues);
+    try (BinaryIssueStore store = BinaryIssueStore.open(file)) {
+
+      // then
+      assertThat(store.size()).isEqualTo(4);
+      assertThat(store.findByFile("A.java")).containsExactly(0, 1);
+      assertThat(store.findByFile("dir/C.java")).containsExactly(2);
+      assertThat(store.findByFile("B.java")).isEmpty();
+      assertThat(store.findByRule("java:S1220")).containsExactly(0, 2);
+      assertThat(store.getIssueCountPerRule()).containsEntry("java:S1220", 2).containsEntry("java:S2095", 1);
+      assertThat(store.getRuleKey(1)).isEqualTo("java:S1186");
+      assertThat(store.getMessage(1)).isEqualTo("Message of java:S1186 \u00e5");
+      assertThat(store.getSeverity(1)).isEqualTo(IssueSeverity.MAJOR);
+      assertThat(store.getType(1)).isEqualTo(RuleType.CODE_SMELL);
+      TextRange textRange = store.getTextRange(1);
+      assertThat(textRange.getStartLine()).isEqualTo(3);
+      assertThat(textRange.getStartLineOffset()).isEqualTo(2);
+      assertThat(textRange.getEndLine()).isEqualTo(5);
+      assertThat(textRange.getEndLineOffset()).isEqualTo(4);
+      assertThat(store.getTextRange(2)).isNull();
+      assertThat(store.getRelativePath(3)).isNull();
+    }
+  }
+
+  IssueRecord createIssue(String ruleKey, String path, TextRange textRange) {
+    return new IssueRecord(TestIssues.createIssue(ruleKey, mDir, path, textRange));
+  }
+
+}
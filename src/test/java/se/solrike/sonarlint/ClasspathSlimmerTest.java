@@ -0,0 +1,66 @@
+package se.solrike.sonarlint;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.gradle.api.logging.Logging;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import se.solrike.sonarlint.impl.ClasspathSlimmer;
+
+class ClasspathSlimmerTest {
+
+  @TempDir
+  Path mDir;
+
+  @Test
+  void unusedJarsAreRemoved() throws IOException, URISyntaxException {
+    // given a classpath with a few jars and a directory
+    File assertj = getJar(Assertions.class);
+    File junit = getJar(Test.class);
+    File mockito = getJar(Mockito.class);
+    File resources = Files.createDirectories(mDir.resolve("resources")).toFile();
+    List<File> classpath = List.of(assertj, junit, mockito, resources);
+    // and a source that only imports from AssertJ
+    Path source = mDir.resolve("src/Hello.java");
+    Files.createDirectories(source.getParent());
+    Files.writeString(source, "package a;\n\nimport static org.assertj.core.api.Assertions.assertThat;\n\nclass Hello {}\n");
+    ClasspathSlimmer slimmer = new ClasspathSlimmer(mDir.resolve("cache").toFile(),
+        Logging.getLogger(ClasspathSlimmerTest.class));
+
+    // when slimmed
+    List<File> slimmed = slimmer.slim(classpath, List.of(), List.of(source.toFile()));
+
+    // then Mockito is removed but JUnit is kept since the JUnit extensions of AssertJ implement JUnit interfaces
+    assertThat(slimmed).containsExactly(assertj, junit, resources);
+    // and the result is the same when taken from the cache
+    assertThat(slimmer.slim(classpath, List.of(), List.of(source.toFile()))).containsExactly(assertj, junit,
+        resources);
+
+    // when a compiled class references Mockito
+    Path classFile = mDir.resolve("classes/se/solrike/sonarlint/ClasspathSlimmerTest.class");
+    Files.createDirectories(classFile.getParent());
+    try (InputStream in = getClass().getResourceAsStream("ClasspathSlimmerTest.class")) {
+      Files.copy(in, classFile);
+    }
+    slimmed = slimmer.slim(classpath, List.of(mDir.resolve("classes").toFile()), List.of(source.toFile()));
+
+    // then also Mockito is kept
+    assertThat(slimmed).containsExactly(assertj, junit, mockito, resources);
+  }
+
+  File getJar(Class<?> type) throws URISyntaxException {
+    return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI());
+  }
+
+}
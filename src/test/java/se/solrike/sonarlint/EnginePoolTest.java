@@ -0,0 +1,73 @@
+package se.solrike.sonarlint;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.nio.file.Path;
+import java.util.Set;
+
+import org.gradle.api.logging.Logging;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonarsource.sonarlint.core.client.api.standalone.StandaloneSonarLintEngine;
+
+import se.solrike.sonarlint.impl.EnginePool;
+import se.solrike.sonarlint.impl.SonarlintEngineService.EngineKey;
+
+class EnginePoolTest {
+
+  @TempDir
+  Path mDir;
+
+  @Test
+  void engineIsReusedAfterRelease() {
+    // given a pool and two keys
+    EngineKey key = new EngineKey(Set.of(), null, null);
+    EngineKey otherKey = new EngineKey(Set.of(), null, "18.17.0");
+    try (EnginePool pool = createPool()) {
+
+      // when an engine is borrowed and given back
+      StandaloneSonarLintEngine engine = pool.borrow(key);
+      pool.release(key, engine);
+
+      // then the next borrow with the same key shall get the same engine
+      assertThat(pool.borrow(key)).isSameAs(engine);
+      // but a parallel borrow or another key shall get a new engine
+      assertThat(pool.borrow(key)).isNotSameAs(engine);
+      assertThat(pool.borrow(otherKey)).isNotSameAs(engine);
+      assertThat(pool.size()).isEqualTo(3);
+    }
+  }
+
+  @Test
+  void enginesAreStoppedWhenClosed() {
+    // given one idle engine and one in use
+    EngineKey key = new EngineKey(Set.of(), null, null);
+    EnginePool pool = createPool();
+    StandaloneSonarLintEngine idle = pool.borrow(key);
+    StandaloneSonarLintEngine inUse = pool.borrow(key);
+    pool.release(key, idle);
+
+    // when the idle engines are stopped only the idle one is stopped
+    assertThat(pool.stopIdleEngines(0)).isEqualTo(1);
+    verify(idle).stop();
+    verify(inUse, never()).stop();
+
+    // and when the pool is closed the others are stopped too
+    pool.close();
+    verify(inUse).stop();
+    assertThat(pool.size()).isZero();
+  }
+
+  EnginePool createPool() {
+    return new EnginePool(mDir.resolve("work"), mDir.resolve("home"), Logging.getLogger(getClass())) {
+      @Override
+      protected StandaloneSonarLintEngine createEngine(EngineKey key) {
+        return mock(StandaloneSonarLintEngine.class);
+      }
+    };
+  }
+
+}
@@ -0,0 +1,71 @@
+package se.solrike.sonarlint;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+import groovy.json.JsonSlurper;
+import se.solrike.sonarlint.impl.IssueEx;
+import se.solrike.sonarlint.impl.ReportView;
+import se.solrike.sonarlint.impl.util.HtmlReportWriter;
+
+class HtmlReportTest {
+
+  @Test
+  void ruleDescriptionIsWrittenOncePerRule() throws IOException {
+    // given many issues of two rules
+    List<IssueEx> issues = new ArrayList<>();
+    IssueEx issue1 = TestIssues.createIssueEx("java:S1220", "src/main/java/A.java", 3);
+    IssueEx issue2 = TestIssues.createIssueEx("java:S1186", "src/main/java/B.java", 3);
+    when(issue1.getMessage()).thenReturn("<b>java:S1220</b> message");
+    for (int i = 0; i < HtmlReportWriter.CHUNK_SIZE + 1; i++) {
+      issues.add(i % 2 == 0 ? issue1 : issue2);
+    }
+    StringWriter writer = new StringWriter();
+
+    // when
+    new HtmlReportWriter(writer, String::valueOf, String::valueOf).write(new ReportView(issues));
+
+    // then each description is written once and the issues are split in chunks of valid JSON
+    String html = writer.toString();
+    assertThat(html.split("Description of java:S1220", -1)).hasSize(2);
+    assertThat(html.split("Description of java:S1186", -1)).hasSize(2);
+    assertThat(html).contains("data-count=\"1001\"");
+    Matcher chunks = Pattern.compile("<script type=\"application/json\" class=\"sl-chunk\">(.*?)</script>",
+        Pattern.DOTALL).matcher(html);
+    int count = 0;
+    int chunkCount = 0;
+    while (chunks.find()) {
+      count += ((List<?>) new JsonSlurper().parseText(chunks.group(1))).size();
+      chunkCount++;
+    }
+    assertThat(chunkCount).isEqualTo(2);
+    assertThat(count).isEqualTo(issues.size());
+    // the message can't end the script element
+    assertThat(html).doesNotContain("</b> message").contains("\\u003c/b\\u003e message");
+  }
+
+  @Test
+  void ruleKeyIsEscaped() throws IOException {
+    // given a rule key with markup, e.g. from a custom plugin
+    IssueEx issue = TestIssues.createIssueEx("custom:<img src=x>", "src/main/java/A.java", 3);
+    // the description is HTML from the plugin so it is written as is
+    when(issue.getRulesDetails().get().getHtmlDescription()).thenReturn("Description");
+    StringWriter writer = new StringWriter();
+
+    // when
+    new HtmlReportWriter(writer, String::valueOf, String::valueOf).write(new ReportView(List.of(issue)));
+
+    // then the rule key shall be written as text
+    assertThat(writer.toString()).doesNotContain("<img src=x>").contains("(custom:&lt;img src=x&gt;)");
+  }
+
+}
@@ -7,6 +7,8 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.gradle.testkit.runner.BuildResult;
@@ -141,6 +143,254 @@ class IntegrationTest {
     // CHECKSTYLE:ON
   }
 
+  @Test
+  void testIncrementalAnalysis() throws IOException {
+    // given a java class that has been analysed
+    Files.writeString(mBuildFile, "\nsonarlintMain.ignoreFailures = true\n", StandardOpenOption.APPEND);
+    createJavaFile(Files.createFile(mProjectDir.resolve("src/main/java/Hello.java")));
+    runGradle(true, List.of("sonarlintMain"));
+
+    // when another class is added and sonarlintMain is run again
+    createJavaFile(Files.createFile(mProjectDir.resolve("src/main/java/Hello2.java")), "Hello2");
+    BuildResult buildResult = runGradle(true, List.of("--info", "sonarlintMain"));
+
+    // then only the new class shall be analysed
+    assertThat(buildResult.getOutput()).contains("Incremental analysis of 1 added or modified file(s)");
+    // and the issues for the first class shall still be reported
+    assertThat(buildResult.getOutput()).contains("4 SonarLint issue(s) were found.");
+
+    // CHECKSTYLE:OFF
+    System.err.println(buildResult.getOutput());
+    // CHECKSTYLE:ON
+  }
+
+  @Test
+  void testBuildCache() throws IOException {
+    // given a java class that has been analysed with the build cache enabled
+    Files.writeString(mBuildFile, "\nsonarlintMain.ignoreFailures = true\n", StandardOpenOption.APPEND);
+    Files.writeString(mProjectDir.resolve("settings.gradle"),
+        "buildCache { local { directory = new File(rootDir, 'build-cache') } }\n");
+    createJavaFile(Files.createFile(mProjectDir.resolve("src/main/java/Hello.java")));
+    runGradle(true, List.of("--build-cache", "sonarlintMain"));
+
+    // when the build directory is cleaned and sonarlintMain is run again
+    BuildResult buildResult = runGradle(true, List.of("--build-cache", "clean", "sonarlintMain"));
+
+    // then the issues shall be taken from the cache
+    assertThat(buildResult.task(":sonarlintMain").getOutcome()).isEqualTo(TaskOutcome.FROM_CACHE);
+    // and the reports shall be generated from the cached issues
+    assertThat(buildResult.task(":sonarlintMainReports").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+    assertThat(buildResult.getOutput()).contains("2 SonarLint issue(s) were found by sonarlintMain.");
+    assertThat(mProjectDir.resolve("build/my_sonarlint.xml").toFile()).exists();
+    assertThat(mProjectDir.resolve("build/reports/sonarlint/sonarlintMain.sarif").toFile()).exists();
+    assertThat(Files.readString(mProjectDir.resolve("build/reports/sonarlint/sonarlintMain.sarif")))
+        .contains("java:S1186");
+
+    // CHECKSTYLE:OFF
+    System.err.println(buildResult.getOutput());
+    // CHECKSTYLE:ON
+  }
+
+  @Test
+  void testConfigurationCache() throws IOException {
+    // given a java class that has been analysed with the configuration cache
+    Files.writeString(mBuildFile, "\nsonarlintMain.ignoreFailures = true\n", StandardOpenOption.APPEND);
+    createJavaFile(Files.createFile(mProjectDir.resolve("src/main/java/Hello.java")));
+    // not in debug mode since the configuration cache doesn't work when Gradle runs in the same JVM as the test
+    GradleRunner gradleRunner = GradleRunner.create()
+        .withArguments("--configuration-cache", "sonarlintMain")
+        .withProjectDir(mProjectDir.toFile())
+        .withPluginClasspath();
+    gradleRunner.build();
+
+    // when the reports are removed and sonarlintMain is run again
+    Files.delete(mProjectDir.resolve("build/reports/sonarlint/sonarlintMain.sarif"));
+    BuildResult buildResult = gradleRunner.build();
+
+    // then the configuration shall be taken from the cache
+    assertThat(buildResult.getOutput()).contains("Reusing configuration cache.");
+    // and the reports shall be generated again by the finalizer
+    assertThat(buildResult.task(":sonarlintMainReports").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+    assertThat(mProjectDir.resolve("build/reports/sonarlint/sonarlintMain.sarif").toFile()).exists();
+  }
+
+  @Test
+  void testProcessIsolation() throws IOException {
+    // given the analysis shall run in a worker process
+    Files.writeString(mBuildFile, "\nsonarlint {\n  processIsolation = true\n  workerMaxHeapSize = '512m'\n}\n",
+        StandardOpenOption.APPEND);
+    createJavaFile(Files.createFile(mProjectDir.resolve("src/main/java/Hello.java")));
+
+    // when sonarlintMain is run
+    BuildResult buildResult = runGradle(false, List.of("--info", "sonarlintMain"));
+
+    // then the analysis shall be done in a worker process
+    assertThat(buildResult.getOutput()).contains("Started Gradle worker daemon");
+    // and the result shall be the same as in the Gradle daemon
+    assertThat(buildResult.task(":sonarlintMain").getOutcome()).isEqualTo(TaskOutcome.FAILED);
+    assertThat(buildResult.getOutput()).contains("2 SonarLint issue(s) were found.");
+    assertThat(buildResult.getOutput()).contains("Crit. java:S1186", "Major java:S1118");
+    assertThat(mProjectDir.resolve("build/my_sonarlint.xml").toFile()).exists();
+    assertThat(mProjectDir.resolve("build/reports/sonarlint/sonarlintMain.sarif").toFile()).exists();
+
+    // CHECKSTYLE:OFF
+    System.err.println(buildResult.getOutput());
+    // CHECKSTYLE:ON
+  }
+
+  @Test
+  void testParallelism() throws IOException {
+    // given the files shall be analysed in two shards
+    Files.writeString(mBuildFile, "\nsonarlint.parallelism = 2\nsonarlintMain.ignoreFailures = true\n",
+        StandardOpenOption.APPEND);
+    createJavaFile(Files.createFile(mProjectDir.resolve("src/main/java/Hello.java")));
+    createJavaFile(Files.createFile(mProjectDir.resolve("src/main/java/Hello2.java")), "Hello2");
+
+    // when sonarlintMain is run
+    BuildResult buildResult = runGradle(true, List.of("--info", "sonarlintMain"));
+
+    // then the files shall be analysed in two shards
+    assertThat(buildResult.getOutput()).contains("Analysing 2 file(s) in 2 shards");
+    // and the issues of both shards shall be reported
+    assertThat(buildResult.getOutput()).contains("4 SonarLint issue(s) were found.");
+
+    // CHECKSTYLE:OFF
+    System.err.println(buildResult.getOutput());
+    // CHECKSTYLE:ON
+  }
+
+  @Test
+  void testAnalysisDaemon() throws IOException {
+    // given the analysis daemon is used and a java class has been analysed
+    Files.writeString(mBuildFile, "\nsonarlint.analysisDaemon = true\nsonarlintMain.ignoreFailures = true\n",
+        StandardOpenOption.APPEND);
+    createJavaFile(Files.createFile(mProjectDir.resolve("src/main/java/Hello.java")));
+    BuildResult buildResult = runGradle(true, List.of("--info", "sonarlintMain"));
+    assertThat(buildResult.getOutput()).contains("Creating sonarlint engine");
+
+    // when another class is added and sonarlintMain is run in a new build
+    createJavaFile(Files.createFile(mProjectDir.resolve("src/main/java/Hello2.java")), "Hello2");
+    buildResult = runGradle(true, List.of("--info", "sonarlintMain"));
+
+    // then the engine from the previous build shall be used
+    assertThat(buildResult.getOutput()).contains("Reusing warm sonarlint engine");
+    assertThat(buildResult.getOutput()).contains("4 SonarLint issue(s) were found.");
+
+    // CHECKSTYLE:OFF
+    System.err.println(buildResult.getOutput());
+    // CHECKSTYLE:ON
+  }
+
+  @Test
+  void testStreamIssues() throws IOException {
+    // given the issues shall be streamed to the text report
+    Files.writeString(mBuildFile,
+        "\nsonarlint.streamIssues = true\nsonarlintMain.reports { text.enabled = true }\n",
+        StandardOpenOption.APPEND);
+    createJavaFile(Files.createFile(mProjectDir.resolve("src/main/java/Hello.java")));
+    createJavaFile(Files.createFile(mProjectDir.resolve("src/main/java/Hello2.java")), "Hello2");
+
+    // when sonarlintMain is run
+    BuildResult buildResult = runGradle(false, List.of("sonarlintMain"));
+
+    // then the analysis shall be stopped since the build will fail anyway
+    assertThat(buildResult.task(":sonarlintMain").getOutcome()).isEqualTo(TaskOutcome.FAILED);
+    assertThat(buildResult.getOutput()).contains("The analysis was stopped since more than 0 issue(s) were found");
+    // and the issues found shall be in the text report
+    assertThat(mProjectDir.resolve("build/reports/sonarlint/sonarlintMain.text")).content().contains("java:S1186");
+    // and in the SARIF report together with the rule
+    assertThat(mProjectDir.resolve("build/reports/sonarlint/sonarlintMain.sarif")).content()
+        .contains("\"ruleId\":\"java:S1186\"", "\"id\":\"java:S1186\"", "RSPEC-1186");
+    // and the other reports shall still be generated
+    assertThat(mProjectDir.resolve("build/my_sonarlint.xml").toFile()).exists();
+    // but not the issues file since not all files were analysed
+    assertThat(mProjectDir.resolve("build/sonarlint/sonarlintMain/issues.ser").toFile()).doesNotExist();
+
+    // CHECKSTYLE:OFF
+    System.err.println(buildResult.getOutput());
+    // CHECKSTYLE:ON
+  }
+
+  @Test
+  void testBaseline() throws IOException {
+    // given a baseline file
+    Files.writeString(mBuildFile,
+        "\nsonarlint.baselineFile = file('sonarlint-baseline.txt')\n"
+            + "sonarlint.writeBaseline = project.hasProperty('sonarlintWriteBaseline')\n",
+        StandardOpenOption.APPEND);
+    createJavaFile(Files.createFile(mProjectDir.resolve("src/main/java/Hello.java")));
+
+    // when the baseline is written
+    BuildResult buildResult = runGradle(List.of("sonarlintMain", "-PsonarlintWriteBaseline"));
+
+    // then the build shall succeed with the issues in the baseline
+    assertThat(buildResult.getOutput()).contains("Wrote 2 issue(s) to the baseline");
+    assertThat(mProjectDir.resolve("sonarlint-baseline.txt")).content().contains("java:S1186", "java:S1118");
+
+    // when a new class is added and sonarlintMain is run again
+    createJavaFile(Files.createFile(mProjectDir.resolve("src/main/java/Hello2.java")), "Hello2");
+    buildResult = runGradle(false, List.of("sonarlintMain"));
+
+    // then only the issues of the new class shall be reported
+    assertThat(buildResult.getOutput()).contains("2 issue(s) in the baseline were not reported",
+        "2 SonarLint issue(s) were found.");
+    assertThat(mProjectDir.resolve("build/reports/sonarlint/sonarlintMain.sarif")).content()
+        .contains("Hello2.java")
+        .doesNotContain("Hello.java");
+  }
+
+  @Test
+  void testChangedSince() throws IOException, InterruptedException {
+    // given a git repository with a committed class and a new class
+    Files.writeString(mBuildFile, "\nsonarlint.changedSince = 'HEAD'\n", StandardOpenOption.APPEND);
+    createJavaFile(Files.createFile(mProjectDir.resolve("src/main/java/Hello.java")));
+    git("init", "-q");
+    git("add", ".");
+    git("-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "-q", "-m", "initial");
+    createJavaFile(Files.createFile(mProjectDir.resolve("src/main/java/Hello2.java")), "Hello2");
+
+    // when sonarlintMain is run
+    BuildResult buildResult = runGradle(false, List.of("sonarlintMain"));
+
+    // then only the new class shall be analysed
+    assertThat(buildResult.getOutput()).contains("1 source file(s) have changed since HEAD",
+        "2 SonarLint issue(s) were found.");
+    assertThat(mProjectDir.resolve("build/reports/sonarlint/sonarlintMain.sarif")).content()
+        .contains("Hello2.java")
+        .doesNotContain("Hello.java");
+  }
+
+  @Test
+  void testMetrics() throws IOException {
+    // given the metrics shall also be written for Prometheus
+    Files.writeString(mBuildFile,
+        "\nsonarlint.metricsEnabled = true\nsonarlint.metricsPrometheusDir = layout.buildDirectory.dir('prometheus')\n"
+            + "sonarlintMain.ignoreFailures = true\n",
+        StandardOpenOption.APPEND);
+    createJavaFile(Files.createFile(mProjectDir.resolve("src/main/java/Hello.java")));
+
+    // when sonarlintMain is run
+    runGradle(true, List.of("sonarlintMain"));
+
+    // then the metrics of the phases and the analysed files shall be written as JSON
+    assertThat(mProjectDir.resolve("build/reports/sonarlint/sonarlintMain-metrics.json")).content()
+        .startsWith("{\"task\":\":sonarlintMain\"")
+        .contains("\"analysis\":{\"wallMs\":", "\"engineCreation\":", "\"report.sarif\":", "\"filesAnalyzed\":1,",
+            "\"issues\":2,");
+    // and in the Prometheus text format
+    assertThat(mProjectDir.resolve("build/prometheus/sonarlint_sonarlintMain.prom")).content()
+        .contains("# TYPE sonarlint_phase_wall_seconds gauge",
+            "sonarlint_phase_wall_seconds{task=\":sonarlintMain\",phase=\"analysis\"} ",
+            "sonarlint_files_analyzed{task=\":sonarlintMain\"} 1\n", "sonarlint_issues{task=\":sonarlintMain\"} 2\n");
+  }
+
+  void git(String... args) throws IOException, InterruptedException {
+    List<String> command = new ArrayList<>(List.of("git"));
+    command.addAll(List.of(args));
+    Process process = new ProcessBuilder(command).directory(mProjectDir.toFile()).inheritIO().start();
+    assertThat(process.waitFor()).isZero();
+  }
+
   BuildResult runGradle(List<String> args) {
     return runGradle(true, args);
   }
@@ -156,10 +406,14 @@ class IntegrationTest {
   }
 
   void createJavaFile(Path javaFile) {
+    createJavaFile(javaFile, "Hello");
+  }
+
+  void createJavaFile(Path javaFile, String className) {
     try (BufferedWriter writer = new BufferedWriter(new FileWriter(javaFile.toFile()))) {
       // @formatter:off
       writer.write(""
-          + "public class Hello {\n"
+          + "public class " + className + " {\n"
           + "  public static void get() {\n"
           + "  }\n"
           + "}\n");
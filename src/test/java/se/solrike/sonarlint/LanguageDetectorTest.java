@@ -0,0 +1,72 @@
+package se.solrike.sonarlint;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonarsource.sonarlint.core.commons.Language;
+
+import se.solrike.sonarlint.impl.LanguageDetector;
+
+class LanguageDetectorTest {
+
+  @TempDir
+  Path mDir;
+
+  @Test
+  void onlyThePluginsOfTheLanguagesAreLoaded() throws IOException {
+    // given Java sources, a Kubernetes manifest, a properties file and an image
+    File java = Files.writeString(mDir.resolve("Hello.java"), "class Hello {}\n").toFile();
+    File k8s = Files.writeString(mDir.resolve("deployment.yaml"), "apiVersion: v1\nkind: Pod\n").toFile();
+    File properties = Files.writeString(mDir.resolve("app.properties"), "a=b\n").toFile();
+    File image = Files.write(mDir.resolve("logo.png"), new byte[] { (byte) 0x89, 'P', 'N', 'G', 0, 0 }).toFile();
+    // and the plugins for Java, text, XML and an unknown language
+    Path javaPlugin = createPlugin("java");
+    Path textPlugin = createPlugin("text");
+    Path xmlPlugin = createPlugin("xml");
+    LanguageDetector detector = new LanguageDetector();
+
+    // when the languages are detected for the Java source only
+    Set<Language> languages = detector.detectLanguages(List.of(java, properties, image));
+    List<Path> plugins = detector.selectPlugins(List.of(javaPlugin, textPlugin, xmlPlugin), languages);
+    Set<Language> enabledLanguages = detector.getEnabledLanguages(plugins, languages);
+
+    // then the XML plugin is not loaded
+    assertThat(languages).containsExactlyInAnyOrder(Language.JAVA, Language.SECRETS);
+    assertThat(plugins).containsExactly(javaPlugin, textPlugin);
+    assertThat(enabledLanguages).containsExactlyInAnyOrder(Language.JAVA, Language.SECRETS);
+    // and the image is not analysed but the text files are since the text plugin analyses all text files
+    assertThat(detector.isAnalysable(java, enabledLanguages)).isTrue();
+    assertThat(detector.isAnalysable(properties, enabledLanguages)).isTrue();
+    assertThat(detector.isAnalysable(image, enabledLanguages)).isFalse();
+    // and without the text plugin only the Java source is analysed
+    assertThat(detector.isAnalysable(properties, Set.of(Language.JAVA))).isFalse();
+    // and the Kubernetes manifest is detected by its content
+    assertThat(detector.detectLanguages(List.of(k8s))).contains(Language.YAML, Language.KUBERNETES);
+    // and an unknown plugin is always loaded and then all languages are enabled
+    Path customPlugin = createPlugin("custom");
+    assertThat(detector.selectPlugins(List.of(javaPlugin, customPlugin), languages)).contains(customPlugin);
+    assertThat(detector.getEnabledLanguages(List.of(javaPlugin, customPlugin), languages)).isNull();
+  }
+
+  Path createPlugin(String pluginKey) throws IOException {
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    manifest.getMainAttributes().putValue("Plugin-Key", pluginKey);
+    Path jar = mDir.resolve("sonar-" + pluginKey + "-plugin.jar");
+    // only the manifest is needed
+    new JarOutputStream(Files.newOutputStream(jar), manifest).close();
+    return jar;
+  }
+
+}
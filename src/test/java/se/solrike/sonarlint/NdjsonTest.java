@@ -0,0 +1,89 @@
+package se.solrike.sonarlint;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.gradle.api.logging.Logging;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonarsource.sonarlint.core.client.api.common.analysis.Issue;
+
+import groovy.json.JsonSlurper;
+import se.solrike.sonarlint.impl.IssueCollector;
+import se.solrike.sonarlint.impl.IssueEx;
+import se.solrike.sonarlint.impl.IssueRecord;
+import se.solrike.sonarlint.impl.ReportAction;
+import se.solrike.sonarlint.impl.util.NdjsonWriter;
+
+class NdjsonTest {
+
+  @TempDir
+  Path mDir;
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void eachIssueIsOneJsonLine() {
+    StringWriter writer = new StringWriter();
+
+    IssueEx lineIssue = TestIssues.createIssueEx("java:S1186", "src/main/java/Hello.java", 3);
+    when(lineIssue.getMessage()).thenReturn("Add a \"nested\" comment");
+
+    new NdjsonWriter(writer)
+        .write(List.of(lineIssue, TestIssues.createIssueEx("java:S1186", "src/main/java/Hello.java", null)));
+
+    String[] lines = writer.toString().split("\n");
+    assertThat(lines).hasSize(2);
+    Map<String, Object> issue = (Map<String, Object>) new JsonSlurper().parseText(lines[0]);
+    assertThat(issue).containsEntry("ruleKey", "java:S1186")
+        .containsEntry("severity", "MAJOR")
+        .containsEntry("type", "CODE_SMELL")
+        .containsEntry("path", "src/main/java/Hello.java")
+        .containsEntry("message", "Add a \"nested\" comment");
+    assertThat((Map<String, Object>) issue.get("textRange")).containsEntry("startLine", 3)
+        .containsEntry("endLineOffset", 5);
+    // file level issue
+    assertThat((Map<String, Object>) new JsonSlurper().parseText(lines[1])).doesNotContainKey("textRange");
+  }
+
+  @Test
+  void reportIsGzippedIfFileNameEndsWithGz() throws IOException {
+    File file = mDir.resolve("sonarlintMain.ndjson.gz").toFile();
+    ReportAction reportAction = new ReportAction(Map.of("ndjson", file), mDir.toFile(),
+        Logging.getLogger(getClass()));
+
+    reportAction.report(List.of(TestIssues.createIssueEx("java:S1186", "src/main/java/Hello.java", 3),
+        TestIssues.createIssueEx("java:S1186", "src/main/java/Hello.java", 4)));
+
+    try (InputStream in = new GZIPInputStream(Files.newInputStream(file.toPath()))) {
+      assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n")).hasSize(2);
+    }
+  }
+
+  @Test
+  void globalIssueFoundByEachShardIsStreamedOnce() {
+    // given a streaming collector used by two shards that both find the same global issue
+    StringWriter writer = new StringWriter();
+    IssueCollector collector = new IssueCollector(mDir, null, new NdjsonWriter(writer), null);
+    Issue globalIssue = TestIssues.createIssue("secrets:S6290", mDir, null, null);
+
+    // when the issue is found by each shard
+    collector.handle(globalIssue);
+    collector.handle(globalIssue);
+
+    // then it is only streamed and collected once and only a compact record is kept
+    assertThat(writer.toString().split("\n")).hasSize(1);
+    assertThat(collector.getIssues()).hasSize(1).allMatch(IssueRecord.class::isInstance);
+  }
+
+}
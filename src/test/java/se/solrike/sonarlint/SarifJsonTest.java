@@ -5,26 +5,122 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import org.gradle.api.logging.Logging;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.sonarsource.sonarlint.core.client.api.standalone.StandaloneRuleDetails;
 import org.sonarsource.sonarlint.core.commons.IssueSeverity;
 import org.sonarsource.sonarlint.core.commons.Language;
 import org.sonarsource.sonarlint.core.commons.RuleType;
 
+import groovy.json.JsonSlurper;
 import se.solrike.sonarlint.impl.IssueEx;
-import se.solrike.sonarlint.impl.util.SarifJsonBuilder;
+import se.solrike.sonarlint.impl.ReportAction;
+import se.solrike.sonarlint.impl.util.SarifSplitter;
+import se.solrike.sonarlint.impl.util.SarifWriter;
 
 class SarifJsonTest {
 
+  @TempDir
+  Path mDir;
+
   @Test
   void generateCorrectSarifJson() {
-    SarifJsonBuilder builder = new SarifJsonBuilder();
+    List<IssueEx> issues = createIssues();
+    StringWriter writer = new StringWriter();
+
+    new SarifWriter(writer, new File("/home/runner/work/sonarlint-gradle-plugin/sonarlint-gradle-plugin"))
+        .write(issues);
+
+    assertThat(writer.toString()).contains("java:S1220", "error", "Sonarlint.java",
+        "Some long **html-ish** text\\n\\n```\\nDo this and this\\n```", "clumsy");
+    assertThat(writer.toString()).startsWith("{\"$schema\":").contains("\"rules\":[{\"id\":\"java:S1220\"");
+    assertThat(new JsonSlurper().parseText(writer.toString())).isNotNull();
+  }
+
+  @Test
+  void streamedSarifJsonHasSameContent() {
+    List<IssueEx> issues = createIssues();
+    StringWriter writer = new StringWriter();
+    StringWriter streamWriter = new StringWriter();
+    File projectDir = new File("/home/runner/work/sonarlint-gradle-plugin/sonarlint-gradle-plugin");
+    new SarifWriter(writer, projectDir).write(issues);
+
+    // when the issues are given one by one
+    try (SarifWriter sarifWriter = new SarifWriter(streamWriter, projectDir)) {
+      issues.forEach(sarifWriter::accept);
+    }
+
+    // then the rules are after the results but the content shall be the same
+    assertThat(new JsonSlurper().parseText(streamWriter.toString()))
+        .isEqualTo(new JsonSlurper().parseText(writer.toString()));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void sarifIsSplitWithOnlyTheRulesOfEachPart() throws IOException {
+    // given three issues of two rules and max two results per file
+    List<IssueEx> issues = createIssues();
+    IssueEx other = mock(IssueEx.class);
+    when(other.getRuleKey()).thenReturn("java:S1186");
+    when(other.getSeverity()).thenReturn(IssueSeverity.MINOR);
+    when(other.getType()).thenReturn(RuleType.CODE_SMELL);
+    when(other.getMessage()).thenReturn("Add a nested comment");
+    when(other.getInputFileRelativePath()).thenReturn("src/main/java/Hello.java");
+    when(other.getRulesDetails()).thenReturn(Optional.empty());
+    issues.add(other);
+    File file = mDir.resolve("sonarlintMain.sarif").toFile();
+    // and a part left from an earlier report
+    File stalePart = mDir.resolve("sonarlintMain-3.sarif").toFile();
+    Files.writeString(stalePart.toPath(), "{}");
+    ReportAction reportAction = new ReportAction(Map.of("sarif", file), mDir.toFile(),
+        Logging.getLogger(getClass()));
+    reportAction.setSarifSplit(2, null);
+
+    // when
+    reportAction.report(issues);
 
+    // then
+    File part2 = mDir.resolve("sonarlintMain-2.sarif").toFile();
+    assertThat(SarifSplitter.getPartFile(file, 1)).isEqualTo(part2);
+    assertThat(stalePart).doesNotExist();
+    Map<String, Object> sarif1 = (Map<String, Object>) new JsonSlurper().parse(file);
+    Map<String, Object> sarif2 = (Map<String, Object>) new JsonSlurper().parse(part2);
+    assertThat(getRun(sarif1, "results")).hasSize(2);
+    assertThat(getRun(sarif2, "results")).hasSize(1);
+    assertThat(getRules(sarif1)).hasSize(1).first().extracting(r -> r.get("id")).isEqualTo("java:S1220");
+    assertThat(getRules(sarif2)).hasSize(1).first().extracting(r -> r.get("id")).isEqualTo("java:S1186");
+  }
+
+  @Test
+  void partFilesAreNumberedBeforeTheExtension() {
+    File file = new File("build/sonarlintMain.sarif.gz");
+    assertThat(SarifSplitter.getPartFile(file, 0)).isEqualTo(file);
+    assertThat(SarifSplitter.getPartFile(file, 2)).isEqualTo(new File("build/sonarlintMain-3.sarif.gz"));
+  }
+
+  @SuppressWarnings("unchecked")
+  List<Object> getRun(Map<String, Object> sarif, String name) {
+    return (List<Object>) ((Map<String, Object>) ((List<Object>) sarif.get("runs")).get(0)).get(name);
+  }
+
+  @SuppressWarnings("unchecked")
+  List<Map<String, Object>> getRules(Map<String, Object> sarif) {
+    Map<String, Object> run = (Map<String, Object>) ((List<Object>) sarif.get("runs")).get(0);
+    Map<String, Object> driver = (Map<String, Object>) ((Map<String, Object>) run.get("tool")).get("driver");
+    return (List<Map<String, Object>>) driver.get("rules");
+  }
+
+  List<IssueEx> createIssues() {
     List<IssueEx> issues = new ArrayList<>();
     IssueEx issue = mock(IssueEx.class);
     when(issue.getRuleKey()).thenReturn("java:S1220");
@@ -42,15 +138,7 @@ class SarifJsonTest {
     when(issue.getRulesDetails()).thenReturn(Optional.of(s));
     issues.add(issue);
     issues.add(issue);
-
-    StringWriter writer = new StringWriter();
-
-    builder.generateBugCollection(writer, issues,
-        new File("/home/runner/work/sonarlint-gradle-plugin/sonarlint-gradle-plugin"));
-
-    assertThat(writer.toString()).contains("java:S1220", "error", "Sonarlint.java",
-        "Some long **html-ish** text\\n\\n```\\nDo this and this\\n```", "clumsy");
-
+    return issues;
   }
 
 }
\ No newline at end of file
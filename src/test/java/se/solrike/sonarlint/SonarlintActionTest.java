@@ -0,0 +1,59 @@
+package se.solrike.sonarlint;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.sonarsource.sonarlint.core.client.api.common.analysis.Issue;
+import org.sonarsource.sonarlint.core.client.api.standalone.StandaloneRuleDetails;
+import org.sonarsource.sonarlint.core.client.api.standalone.StandaloneSonarLintEngine;
+
+import se.solrike.sonarlint.impl.IssueEx;
+import se.solrike.sonarlint.impl.ReportAction;
+import se.solrike.sonarlint.impl.SonarlintAction;
+
+class SonarlintActionTest {
+
+  @Test
+  @SuppressWarnings({ "java:S1874", "deprecation" })
+  void rulesDetailsAreLookedUpOncePerRule() {
+    // given many issues sharing two rules
+    StandaloneSonarLintEngine engine = mock(StandaloneSonarLintEngine.class);
+    StandaloneRuleDetails details1 = mock(StandaloneRuleDetails.class);
+    when(engine.getRuleDetails("java:S1220")).thenReturn(Optional.of(details1));
+    when(engine.getRuleDetails("java:S1176")).thenReturn(Optional.empty());
+    List<IssueEx> issues = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      Issue issue = mock(Issue.class);
+      when(issue.getRuleKey()).thenReturn(i % 2 == 0 ? "java:S1220" : "java:S1176");
+      issues.add(new IssueEx(i, issue));
+    }
+
+    // when the rule details are set
+    new SonarlintAction().setRulesDetails(issues, engine);
+
+    // then each rule shall be looked up once
+    verify(engine, times(1)).getRuleDetails("java:S1220");
+    verify(engine, times(1)).getRuleDetails("java:S1176");
+    assertThat(issues.get(0).getRulesDetails()).containsSame(details1);
+    assertThat(issues.get(1).getRulesDetails()).isEmpty();
+  }
+
+  @Test
+  void rulesDetailsAreOnlyNeededByDetailedReports() {
+    assertThat(ReportAction.isRulesDetailsNeeded(Set.of())).isFalse();
+    assertThat(ReportAction.isRulesDetailsNeeded(Set.of("text"))).isFalse();
+    assertThat(ReportAction.isRulesDetailsNeeded(Set.of("text", "html"))).isTrue();
+    assertThat(ReportAction.isRulesDetailsNeeded(Set.of("xml"))).isTrue();
+    assertThat(ReportAction.isRulesDetailsNeeded(Set.of("sarif"))).isTrue();
+  }
+
+}
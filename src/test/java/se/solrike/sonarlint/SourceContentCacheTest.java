@@ -0,0 +1,67 @@
+package se.solrike.sonarlint;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import se.solrike.sonarlint.impl.ClientInputFileImpl;
+import se.solrike.sonarlint.impl.SourceContentCache;
+
+class SourceContentCacheTest {
+
+  @TempDir
+  Path mDir;
+
+  @Test
+  void eachFileIsReadAndDecodedOnce() throws IOException {
+    // given a small file and a file that is large enough to be memory mapped
+    Path small = Files.writeString(mDir.resolve("Small.java"), "class Small {}\n");
+    Path large = Files.writeString(mDir.resolve("Large.java"), "// \u00e5\n" + "x".repeat(100));
+    SourceContentCache cache = new SourceContentCache(1024, 64);
+    ClientInputFileImpl smallFile = new ClientInputFileImpl(mDir, small, false, StandardCharsets.UTF_8, cache);
+    ClientInputFileImpl largeFile = new ClientInputFileImpl(mDir, large, false, StandardCharsets.UTF_8, cache);
+
+    // when the files are read by several sensors
+    for (int i = 0; i < 3; i++) {
+      assertThat(smallFile.contents()).isEqualTo("class Small {}\n");
+      try (InputStream in = smallFile.inputStream()) {
+        assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("class Small {}\n");
+      }
+      assertThat(largeFile.contents()).startsWith("// \u00e5\n").endsWith("x");
+      try (InputStream in = largeFile.inputStream()) {
+        assertThat(in.readAllBytes()).hasSize((int) Files.size(large));
+      }
+    }
+
+    // then each file is only read once and the small file is only decoded once
+    assertThat(cache.getMisses()).isEqualTo(2);
+    assertThat(cache.getBytesRead()).isEqualTo(Files.size(small));
+    assertThat(cache.getBytesMapped()).isEqualTo(Files.size(large));
+    assertThat(cache.getBytesDecoded()).isEqualTo(Files.size(small) + 3 * Files.size(large));
+  }
+
+  @Test
+  void leastRecentlyUsedFilesAreRemoved() throws IOException {
+    // given a cache that only fits one file
+    Path a = Files.writeString(mDir.resolve("A.java"), "a".repeat(40));
+    Path b = Files.writeString(mDir.resolve("B.java"), "b".repeat(40));
+    SourceContentCache cache = new SourceContentCache(100, 1024);
+
+    // when the files are read after each other
+    cache.contents(a, StandardCharsets.UTF_8);
+    cache.contents(b, StandardCharsets.UTF_8);
+    cache.contents(a, StandardCharsets.UTF_8);
+
+    // then the first file has to be read again
+    assertThat(cache.getMisses()).isEqualTo(3);
+    assertThat(cache.getBytesRead()).isEqualTo(120);
+  }
+
+}
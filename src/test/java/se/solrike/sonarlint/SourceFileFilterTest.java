@@ -0,0 +1,97 @@
+package se.solrike.sonarlint;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.gradle.api.logging.Logging;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import se.solrike.sonarlint.impl.SourceFileFilter;
+import se.solrike.sonarlint.impl.SourceFileFilter.Reason;
+
+class SourceFileFilterTest {
+
+  @TempDir
+  Path mDir;
+
+  @Test
+  void generatedMinifiedAndLargeFilesAreSkipped() throws IOException {
+    // given many ordinary files
+    List<File> files = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      files.add(createFile("src/main/java/Hello" + i + ".java", "class Hello" + i + " {}\n"));
+    }
+    // and generated, minified and large files
+    File generatedDir = createFile("build/generated/sources/annotationProcessor/java/main/A.java", "class A {}\n");
+    File generatedMarker = createFile("src/main/java/B.java",
+        "// Code generated by a tool. DO NOT EDIT.\nclass B {}\n");
+    File minifiedName = createFile("src/main/js/lib.min.js", "var a=1;\n");
+    File minifiedContent = createFile("src/main/js/bundle.js", "var a=1;".repeat(1000));
+    File large = createFile("src/main/java/Large.java", "//" + "x".repeat(10_000) + "\nclass Large {}\n");
+    files.addAll(List.of(generatedDir, generatedMarker, minifiedName, minifiedContent, large));
+    SourceFileFilter filter = new SourceFileFilter(mDir, SourceFileFilter.DEFAULT_GENERATED_SOURCE_PATTERNS, 8192);
+
+    // when filtered
+    Set<File> kept = filter.filter(files, Logging.getLogger(SourceFileFilterTest.class));
+
+    // then only the ordinary files are kept
+    assertThat(kept).hasSize(200).doesNotContain(generatedDir, generatedMarker, minifiedName, minifiedContent, large);
+    assertThat(filter.getSkippedFiles(Reason.GENERATED)).isEqualTo(2);
+    assertThat(filter.getSkippedFiles(Reason.MINIFIED)).isEqualTo(2);
+    assertThat(filter.getSkippedFiles(Reason.TOO_LARGE)).isEqualTo(1);
+    assertThat(filter.getSkippedBytes(Reason.TOO_LARGE)).isEqualTo(large.length());
+    assertThat(filter.getSummary()).startsWith("5 file(s) of ")
+        .endsWith("KB were skipped: 2 generated, 2 minified, 1 too large");
+  }
+
+  @Test
+  void generatedValueIsNotGenerated() throws IOException {
+    // given a JPA entity with a generated id
+    File entity = createFile("src/main/java/Entity.java", "package a;\n\nimport javax.persistence.*;\n\n@Entity\n"
+        + "public class Entity {\n  @Id\n  @GeneratedValue(strategy = GenerationType.IDENTITY)\n  Long id;\n}\n");
+    // and a generated class
+    File generated = createFile("src/main/java/Mapper.java",
+        "package a;\n\n@javax.annotation.processing.Generated(\"mapstruct\")\npublic class Mapper {}\n");
+    SourceFileFilter filter = new SourceFileFilter(mDir, List.of(), 8192);
+
+    // when filtered
+    Set<File> kept = filter.filter(List.of(entity, generated), Logging.getLogger(SourceFileFilterTest.class));
+
+    // then only the generated class is skipped
+    assertThat(kept).containsExactly(entity);
+  }
+
+  @Test
+  void markersInJavadocAreIgnored() throws IOException {
+    // given a hand-written class whose Javadoc and strings mention the markers
+    File handWritten = createFile("src/main/java/Tool.java", "/*\n * Copyright the authors\n */\npackage a;\n\n"
+        + "/**\n * Adds @Generated to the classes and a DO NOT EDIT header to the files it writes.\n */\n"
+        + "public class Tool {\n  static final String HEADER = \"// DO NOT EDIT\";\n}\n");
+    // and a file with the marker in its header after the license
+    File generated = createFile("src/main/java/Proto.java",
+        "/*\n * Copyright the authors\n */\n// Generated by the protocol buffer compiler.  DO NOT EDIT!\n"
+            + "package a;\n\npublic class Proto {}\n");
+    SourceFileFilter filter = new SourceFileFilter(mDir, List.of(), 8192);
+
+    // when filtered
+    Set<File> kept = filter.filter(List.of(handWritten, generated), Logging.getLogger(SourceFileFilterTest.class));
+
+    // then only the file with the header is skipped
+    assertThat(kept).containsExactly(handWritten);
+  }
+
+  File createFile(String path, String content) throws IOException {
+    Path file = mDir.resolve(path);
+    Files.createDirectories(file.getParent());
+    return Files.writeString(file, content).toFile();
+  }
+
+}
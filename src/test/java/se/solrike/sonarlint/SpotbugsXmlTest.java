@@ -17,14 +17,12 @@ import org.sonarsource.sonarlint.core.commons.IssueSeverity;
 import org.sonarsource.sonarlint.core.commons.RuleType;
 
 import se.solrike.sonarlint.impl.IssueEx;
-import se.solrike.sonarlint.impl.util.SpotbugsXmlBuilder;
+import se.solrike.sonarlint.impl.util.SpotbugsXmlWriter;
 
 class SpotbugsXmlTest {
 
   @Test
   void generateCorrectSpotbugsXml() {
-    SpotbugsXmlBuilder builder = new SpotbugsXmlBuilder();
-
     List<IssueEx> issues = new ArrayList<>();
     IssueEx issue = mock(IssueEx.class);
     when(issue.getRuleKey()).thenReturn("java:S1220");
@@ -43,10 +41,18 @@ class SpotbugsXmlTest {
 
     StringWriter writer = new StringWriter();
 
-    builder.generateBugCollection(writer, issues,
-        Set.of(new File("/home/runner/work/sonarlint-gradle-plugin/sonarlint-gradle-plugin")));
+    new SpotbugsXmlWriter(writer,
+        Set.of(new File("/home/runner/work/sonarlint-gradle-plugin/sonarlint-gradle-plugin"))).write(issues);
 
     assertThat(writer.toString()).contains("java:S1220", "SECURITY", "Sonarlint.java");
+    assertThat(writer.toString()).startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+        .contains("<![CDATA[Move this file to a named <i>package</i>.]]>",
+            "classname=\"se.solrike.sonarlint.Sonarlint\"",
+            "<Message>In class se.solrike.sonarlint.Sonarlint</Message>",
+            "<![CDATA[Some long <b>html-ish</b> text]]>");
+    // one bug pattern per rule
+    assertThat(writer.toString().split("<BugPattern ")).hasSize(2);
+    assertThat(writer.toString().split("<BugInstance ")).hasSize(3);
 
   }
 
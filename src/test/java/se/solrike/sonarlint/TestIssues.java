@@ -0,0 +1,95 @@
+package se.solrike.sonarlint;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import javax.annotation.Nullable;
+
+import org.sonarsource.sonarlint.core.client.api.common.analysis.Issue;
+import org.sonarsource.sonarlint.core.client.api.standalone.StandaloneRuleDetails;
+import org.sonarsource.sonarlint.core.commons.IssueSeverity;
+import org.sonarsource.sonarlint.core.commons.RuleType;
+import org.sonarsource.sonarlint.core.commons.TextRange;
+
+import se.solrike.sonarlint.impl.ClientInputFileImpl;
+import se.solrike.sonarlint.impl.IssueEx;
+
+/**
+ * Mocked issues shared by the tests. The message is "Message of &lt;rule key&gt;" and the rule has the name "Rule
+ * &lt;rule key&gt;" and the description "Description of &lt;rule key&gt;". Tests that need other values stub them on
+ * the returned mock.
+ *
+ * @author Lucas Persson
+ */
+final class TestIssues {
+
+  private TestIssues() {
+  }
+
+  /**
+   * An issue as found by the engine.
+   *
+   * @param ruleKey
+   *          - the rule key
+   * @param baseDir
+   *          - the project dir
+   * @param path
+   *          - path of the file relative to baseDir or null for a global issue
+   * @param textRange
+   *          - the text range or null for a file level issue
+   *
+   * @return the issue
+   */
+  static Issue createIssue(String ruleKey, Path baseDir, @Nullable String path, @Nullable TextRange textRange) {
+    Issue issue = mock(Issue.class);
+    when(issue.getRuleKey()).thenReturn(ruleKey);
+    when(issue.getSeverity()).thenReturn(IssueSeverity.MAJOR);
+    when(issue.getType()).thenReturn(RuleType.CODE_SMELL);
+    when(issue.getMessage()).thenReturn("Message of " + ruleKey);
+    when(issue.getTextRange()).thenReturn(textRange);
+    if (textRange != null) {
+      when(issue.getStartLine()).thenReturn(textRange.getStartLine());
+    }
+    if (path != null) {
+      when(issue.getInputFile())
+          .thenReturn(new ClientInputFileImpl(baseDir, baseDir.resolve(path), false, StandardCharsets.UTF_8));
+    }
+    return issue;
+  }
+
+  /**
+   * An issue as given to the reports.
+   *
+   * @param ruleKey
+   *          - the rule key
+   * @param path
+   *          - path of the file relative to the project dir
+   * @param line
+   *          - the line or null for a file level issue
+   *
+   * @return the issue
+   */
+  static IssueEx createIssueEx(String ruleKey, String path, @Nullable Integer line) {
+    IssueEx issue = mock(IssueEx.class);
+    when(issue.getRuleKey()).thenReturn(ruleKey);
+    when(issue.getSeverity()).thenReturn(IssueSeverity.MAJOR);
+    when(issue.getType()).thenReturn(RuleType.CODE_SMELL);
+    when(issue.getMessage()).thenReturn("Message of " + ruleKey);
+    when(issue.getInputFileRelativePath()).thenReturn(path);
+    // Mockito would return 0 for a file level issue
+    when(issue.getStartLine()).thenReturn(line);
+    when(issue.getStartLineOffset()).thenReturn(line != null ? 1 : null);
+    when(issue.getEndLine()).thenReturn(line);
+    when(issue.getEndLineOffset()).thenReturn(line != null ? 5 : null);
+    StandaloneRuleDetails details = mock(StandaloneRuleDetails.class);
+    when(details.getName()).thenReturn("Rule " + ruleKey);
+    when(details.getHtmlDescription()).thenReturn("Description of " + ruleKey);
+    when(issue.getRulesDetails()).thenReturn(Optional.of(details));
+    return issue;
+  }
+
+}